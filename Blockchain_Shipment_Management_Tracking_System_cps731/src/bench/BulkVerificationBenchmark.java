@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import controller.ShipmentComplianceController;
+import external.BlockchainNetwork;
+import external.OffChainStorage;
+import external.PaymentService;
+import gateway.BlockchainNetworkGateway;
+import gateway.OffChainStorageAdapter;
+import gateway.PaymentServiceAdapter;
+import model.Document;
+import model.Shipment;
+import model.SmartContract;
+import model.VerificationReport;
+
+/**
+ * ShipmentComplianceController.verifyDocuments over many documents with
+ * pools of increasing parallelism. The verification cache is cleared
+ * before every run so each document is really rehashed.
+ *
+ * Run with: java bench.BulkVerificationBenchmark [documents] [docsPerShipment] [contentBytes]
+ */
+public class BulkVerificationBenchmark {
+
+    public static void main(String[] args) {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int perShipment = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        OffChainStorageAdapter storage = new OffChainStorageAdapter(new OffChainStorage());
+        storage.connect();
+        ShipmentComplianceController controller = new ShipmentComplianceController(
+                new BlockchainNetworkGateway(new BlockchainNetwork()), storage,
+                new PaymentServiceAdapter(new PaymentService()), new SmartContract());
+
+        String padding = "x".repeat(size);
+        List<Shipment> shipments = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            if (i % perShipment == 0) {
+                shipments.add(new Shipment("S" + i, "A", "B", "bench"));
+            }
+            Document doc = new Document();
+            doc.setName("doc-" + i);
+            doc.setContent(i + padding);
+            doc.generateHash();
+            storage.uploadFile(doc);
+            shipments.get(shipments.size() - 1).addDocument(doc);
+        }
+
+        System.out.println("Documents: " + documents + " (" + size + " bytes each), cores: "
+                + Runtime.getRuntime().availableProcessors());
+        double single = 0;
+        for (int parallelism : new int[] { 1, 2, 4, 8 }) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            controller.setVerificationPool(pool);
+            storage.clearVerificationCache();
+            VerificationReport report = controller.verifyDocuments(shipments, null);
+            pool.shutdown();
+
+            if (parallelism == 1) {
+                single = report.getDocumentsPerSecond();
+            }
+            System.out.printf("parallelism %d: %,12.0f docs/s (%.2fx), %d failures%n",
+                    parallelism, report.getDocumentsPerSecond(),
+                    report.getDocumentsPerSecond() / single, report.getFailures().size());
+        }
+    }
+}
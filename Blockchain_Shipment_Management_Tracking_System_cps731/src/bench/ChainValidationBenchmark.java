@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.ChainValidationReport;
+
+/**
+ * Full-chain validation throughput: one validateBlock call per block versus
+ * validateChain on fork/join pools of increasing parallelism.
+ *
+ * Run with: java bench.ChainValidationBenchmark [transactions] [blockSize]
+ */
+public class ChainValidationBenchmark {
+
+    public static void main(String[] args) {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        BlockchainNetwork network = new BlockchainNetwork(blockSize);
+        network.connect();
+        List<String> batch = new ArrayList<>(blockSize);
+        for (int i = 0; i < transactions; i++) {
+            batch.add("STATUS#S" + (i % 100_000) + "#IN_TRANSIT");
+            if (batch.size() == blockSize) {
+                network.commitBlock(batch);
+                batch.clear();
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Blocks: " + network.getBlocks().size() + " of " + blockSize + " entries, cores: " + cores);
+
+        network.validateChain(); // warm-up
+        long start = System.nanoTime();
+        int valid = 0;
+        for (Block block : network.getBlocks()) {
+            valid += network.validateBlock(block.getHash()) ? 1 : 0;
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("validateBlock loop:        %10.0f blocks/s (%d valid)%n", valid * 1e9 / nanos, valid);
+
+        for (int parallelism = 1; parallelism <= Math.max(1, cores); parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            ChainValidationReport report = network.validateChain(pool, null);
+            System.out.printf("validateChain, %2d threads: %10.0f blocks/s (%s)%n",
+                    parallelism, report.getBlocksPerSecond(), report.isValid() ? "valid" : "INVALID");
+            pool.shutdown();
+        }
+    }
+}
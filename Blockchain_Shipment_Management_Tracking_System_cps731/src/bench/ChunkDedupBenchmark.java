@@ -0,0 +1,58 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import external.BlobStore;
+import external.ChunkStore;
+
+/**
+ * Stores a set of near-identical documents (one template, a few fields
+ * changed per copy) through a ChunkStore and reports how many bytes were
+ * actually written compared with storing each document as a whole blob.
+ *
+ * Run with: java bench.ChunkDedupBenchmark [documents] [documentBytes]
+ */
+public class ChunkDedupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 256 * 1024;
+
+        Random random = new Random(42);
+        StringBuilder template = new StringBuilder(size);
+        while (template.length() < size) {
+            template.append("Item ").append(random.nextInt(100_000))
+                    .append(" qty ").append(random.nextInt(500)).append('\n');
+        }
+
+        Path root = TempDirs.create("chunk-dedup-bench");
+        try {
+            ChunkStore chunks = new ChunkStore(new BlobStore(root));
+            long start = System.nanoTime();
+            for (int i = 0; i < documents; i++) {
+                StringBuilder doc = new StringBuilder(template);
+                // every copy gets its own header and a couple of edited lines
+                doc.insert(0, "INVOICE " + i + " issued to consignee " + random.nextInt() + '\n');
+                for (int edit = 0; edit < 3; edit++) {
+                    int at = random.nextInt(doc.length());
+                    doc.insert(at, "amended line " + i + '/' + edit + '\n');
+                }
+                chunks.putString(doc.toString());
+            }
+            long elapsed = System.nanoTime() - start;
+
+            System.out.println("Documents: " + documents + " x ~" + size + " bytes");
+            System.out.printf("logical bytes:   %,14d%n", chunks.getLogicalBytes());
+            System.out.printf("written bytes:   %,14d%n", chunks.getStoredBytes());
+            System.out.printf("storage ratio:   %14.3f%n", chunks.getStorageRatio());
+            System.out.printf("chunks written:  %,14d  reused: %,d%n",
+                    chunks.getChunksStored(), chunks.getChunksReused());
+            System.out.printf("throughput:      %14.1f MB/s%n",
+                    chunks.getLogicalBytes() / 1e6 / (elapsed / 1e9));
+        } finally {
+            TempDirs.delete(root);
+        }
+    }
+}
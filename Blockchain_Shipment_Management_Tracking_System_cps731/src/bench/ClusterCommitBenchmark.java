@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.CountDownLatch;
+
+import external.BlockchainCluster;
+import external.ClusterTransport;
+import gateway.BlockchainNetworkGateway;
+
+/**
+ * Commit latency percentiles and throughput of a replicated ledger cluster
+ * as the node count grows, over a transport with 100-500 us latency and
+ * 1% message loss.
+ *
+ * Run with: java bench.ClusterCommitBenchmark [threads] [txPerThread]
+ */
+public class ClusterCommitBenchmark {
+
+    private static final int[] NODE_COUNTS = { 1, 3, 5, 7, 9 };
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        System.out.println("Writers: " + threads + ", transactions each: " + perThread + ", cores: "
+                + Runtime.getRuntime().availableProcessors());
+        run(3, threads, perThread / 10); // warm-up
+        System.out.println("nodes       tx/s     p50 us     p95 us     p99 us   timeouts   dropped msgs");
+        for (int nodes : NODE_COUNTS) {
+            run(nodes, threads, perThread);
+        }
+    }
+
+    private static void run(int nodes, int threads, int perThread) throws Exception {
+        BlockchainCluster cluster = new BlockchainCluster(nodes, BlockchainCluster.DEFAULT_BLOCK_SIZE,
+                new ClusterTransport(100, 500, 0.01));
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(cluster);
+        gateway.connect();
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    gateway.sendTransaction("STATUS#S" + writer + "-" + i + "#IN_TRANSIT");
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%5d %10.0f %10d %10d %10d %10d %14d%n", nodes,
+                cluster.getCommittedCount() * 1e9 / elapsed,
+                cluster.getCommitLatencyMicros(50), cluster.getCommitLatencyMicros(95),
+                cluster.getCommitLatencyMicros(99), cluster.getTimeoutCount(),
+                cluster.getTransport().getDroppedCount());
+        gateway.disconnect();
+        cluster.close();
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import external.BlockchainNetwork;
+
+/**
+ * Shipment lookups on a persistent ledger right after opening it: with the
+ * in-memory shipment index (rebuilt from every entry on open) versus Bloom
+ * lookup mode at several false-positive rates.
+ *
+ * Run with: java bench.ColdLookupBenchmark [transactions] [blockSize] [lookups]
+ */
+public class ColdLookupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int shipments = transactions / 5;
+
+        Path dir = TempDirs.create("cold-lookup-bench");
+        try {
+            run(dir, transactions, blockSize, lookups, shipments);
+        } finally {
+            TempDirs.delete(dir);
+        }
+    }
+
+    private static void run(Path dir, int transactions, int blockSize, int lookups, int shipments)
+            throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, blockSize);
+        network.connect();
+        List<String> batch = new ArrayList<>(blockSize);
+        for (int i = 0; i < transactions; i++) {
+            batch.add("STATUS#S" + (i % shipments) + "#IN_TRANSIT");
+            if (batch.size() == blockSize) {
+                network.commitBlock(batch);
+                batch.clear();
+            }
+        }
+        network.commitBlock(batch);
+        int blocks = network.getBlocks().size();
+        network.close();
+        System.out.println("Transactions: " + transactions + ", blocks: " + blocks + ", lookups: " + lookups);
+
+        long start = System.nanoTime();
+        BlockchainNetwork indexed = BlockchainNetwork.open(dir, blockSize);
+        indexed.connect();
+        long openNanos = System.nanoTime() - start;
+        long queryNanos = lookups(indexed, shipments, lookups);
+        System.out.printf("shipment index:  open %8.1f ms, %8.3f ms/lookup%n", openNanos / 1e6, queryNanos / 1e6 / lookups);
+        indexed.close();
+
+        for (double rate : new double[] { 0.1, 0.01, 0.001 }) {
+            // the first open at a new rate rebuilds the filters; time the next one
+            BlockchainNetwork.openCold(dir, blockSize, rate).close();
+
+            start = System.nanoTime();
+            BlockchainNetwork cold = BlockchainNetwork.openCold(dir, blockSize, rate);
+            cold.connect();
+            openNanos = System.nanoTime() - start;
+            queryNanos = lookups(cold, shipments, lookups);
+            System.out.printf("bloom %-6s     open %8.1f ms, %8.3f ms/lookup, %.1f blocks read, %.1f skipped%n",
+                    rate, openNanos / 1e6, queryNanos / 1e6 / lookups,
+                    (double) cold.getBloomBlocksRead() / lookups, (double) cold.getBloomBlocksSkipped() / lookups);
+            cold.close();
+        }
+    }
+
+    private static long lookups(BlockchainNetwork network, int shipments, int lookups) {
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            network.queryLedger("S" + (i * 7919L % shipments));
+        }
+        return System.nanoTime() - start;
+    }
+}
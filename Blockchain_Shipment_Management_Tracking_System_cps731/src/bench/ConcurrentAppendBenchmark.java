@@ -0,0 +1,126 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import external.BlockchainNetwork;
+import external.ConcurrentLedger;
+
+/**
+ * Append throughput at 1, 4, 16 and 64 writer threads: the lock-free
+ * ConcurrentLedger against a synchronized ArrayList, and
+ * BlockchainNetwork.storeTransaction on the lock-free path against the
+ * same call made under the network's lock (one lock round per entry, as
+ * before). On the lock-free path a store returns once its entry is
+ * published; indexing and sealing run in batched passes on the common
+ * pool, so a run ends with a getLedgerSize() that integrates the rest.
+ *
+ * Run with: java bench.ConcurrentAppendBenchmark [entriesPerRun] [rounds]
+ */
+public class ConcurrentAppendBenchmark {
+
+    private interface Writer {
+        void append(String entry);
+
+        /** Called once all writers are done; the run is timed up to its return. */
+        default void finish() {
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int[] threadCounts = {1, 4, 16, 64};
+
+        System.out.println("Entries per run: " + entries + ", best of " + rounds
+                + ", cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %16s %16s %16s %16s%n", "threads",
+                "sync list", "lock-free list", "network locked", "network lock-free");
+        for (int threads : threadCounts) {
+            double syncList = best(rounds, threads, entries, () -> {
+                List<String> list = new ArrayList<>();
+                return entry -> {
+                    synchronized (list) {
+                        list.add(entry);
+                    }
+                };
+            });
+            double lockFree = best(rounds, threads, entries, () -> {
+                ConcurrentLedger ledger = new ConcurrentLedger();
+                return entry -> ledger.append(entry, 0);
+            });
+            double networkLocked = best(rounds, threads, entries, () -> {
+                BlockchainNetwork network = new BlockchainNetwork();
+                network.connect();
+                return entry -> {
+                    synchronized (network) {
+                        network.storeTransaction(entry);
+                    }
+                };
+            });
+            double networkLockFree = best(rounds, threads, entries, () -> {
+                BlockchainNetwork network = new BlockchainNetwork();
+                network.connect();
+                return new Writer() {
+                    @Override
+                    public void append(String entry) {
+                        network.storeTransaction(entry);
+                    }
+
+                    @Override
+                    public void finish() {
+                        network.getLedgerSize(); // integrates what no pass has reached yet
+                    }
+                };
+            });
+            System.out.printf("%-8d %14.0f/s %14.0f/s %14.0f/s %14.0f/s%n",
+                    threads, syncList, lockFree, networkLocked, networkLockFree);
+        }
+    }
+
+    private interface WriterFactory {
+        Writer create();
+    }
+
+    private static double best(int rounds, int threads, int entries, WriterFactory factory)
+            throws InterruptedException {
+        double best = 0;
+        for (int r = 0; r < rounds; r++) {
+            best = Math.max(best, run(threads, entries / threads, factory.create()));
+        }
+        return best;
+    }
+
+    /** Appends per second with threads writers appending perThread entries each. */
+    private static double run(int threads, int perThread, Writer writer) throws InterruptedException {
+        String[][] data = new String[threads][perThread];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                data[t][i] = "STATUS#S" + t + "-" + (i % 1000) + "#IN_TRANSIT";
+            }
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            String[] mine = data[t];
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (String entry : mine) {
+                        writer.append(entry);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        writer.finish();
+        return (double) threads * perThread * 1e9 / (System.nanoTime() - begin);
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import model.Document;
+
+/**
+ * Document.generateHash()/verifyHash() on the shared Sha256 helpers versus
+ * the old per-call MessageDigest.getInstance + String.format hex code.
+ *
+ * Run with: java bench.DocumentHashBenchmark [contentBytes] [iterations]
+ */
+public class DocumentHashBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_048;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append("BILL OF LADING #").append(sb.length()).append(' ');
+        }
+        String content = sb.substring(0, size);
+
+        Document doc = new Document();
+        doc.setContent(content);
+
+        // warm-up
+        for (int i = 0; i < iterations / 4; i++) {
+            doc.generateHash();
+            doc.verifyHash();
+            legacyHash(content);
+        }
+
+        long start = System.nanoTime();
+        int ok = 0;
+        for (int i = 0; i < iterations; i++) {
+            doc.generateHash();
+            if (doc.verifyHash()) {
+                ok++;
+            }
+        }
+        long current = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String expected = legacyHash(content);
+        for (int i = 0; i < iterations; i++) {
+            legacyHash(content);
+            if (expected.equals(legacyHash(content))) {
+                ok++;
+            }
+        }
+        long legacy = System.nanoTime() - start;
+
+        System.out.println("Content: " + size + " chars, iterations: " + iterations);
+        System.out.printf("Sha256 helpers:  %8.0f ns per generate+verify%n", (double) current / iterations);
+        System.out.printf("legacy code:     %8.0f ns per generate+verify%n", (double) legacy / iterations);
+        System.out.printf("speed-up:        %8.2fx  (checksum %d)%n", (double) legacy / current, ok);
+    }
+
+    /** Document.generateHash() as it was before the Sha256 helpers. */
+    private static String legacyHash(String content) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] digest = md.digest(content.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
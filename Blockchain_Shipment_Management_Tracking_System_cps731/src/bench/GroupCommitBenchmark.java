@@ -0,0 +1,79 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import external.BlockchainNetwork;
+import gateway.BlockchainNetworkGateway;
+
+/**
+ * Commit throughput of a persistent ledger with one block (and one fsync)
+ * per transaction versus the gateway's group-commit mode.
+ *
+ * Run with: java bench.GroupCommitBenchmark [threads] [txPerThread]
+ */
+public class GroupCommitBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.println("Writers: " + threads + ", transactions each: " + perThread);
+        report("direct (block per tx)", run(threads, perThread, 0, 0));
+        report("group commit 64 / 2 ms", run(threads, perThread, 64, 2));
+        report("group commit 256 / 5 ms", run(threads, perThread, 256, 5));
+    }
+
+    private static double[] run(int threads, int perThread, int batch, long lingerMs)
+            throws IOException, InterruptedException {
+        Path dir = TempDirs.create("group-commit-bench");
+        try {
+            return run(dir, threads, perThread, batch, lingerMs);
+        } finally {
+            TempDirs.delete(dir);
+        }
+    }
+
+    private static double[] run(Path dir, int threads, int perThread, int batch, long lingerMs)
+            throws IOException, InterruptedException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 1);
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(network);
+        gateway.connect();
+        if (batch > 0) {
+            gateway.enableGroupCommit(batch, lingerMs);
+        }
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] worstNanos = new long[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    long s = System.nanoTime();
+                    gateway.sendTransaction("STATUS#S" + writer + "-" + i + "#IN_TRANSIT");
+                    worstNanos[writer] = Math.max(worstNanos[writer], System.nanoTime() - s);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        gateway.disconnect();
+        network.close();
+
+        long worst = 0;
+        for (long w : worstNanos) {
+            worst = Math.max(worst, w);
+        }
+        double txPerSec = threads * (double) perThread / (elapsed / 1e9);
+        return new double[] { txPerSec, worst / 1e6, network.getBlocks().size() };
+    }
+
+    private static void report(String label, double[] r) {
+        System.out.printf("%-26s %10.0f tx/s   worst latency %7.2f ms   blocks %6.0f%n",
+                label, r[0], r[1], r[2]);
+    }
+}
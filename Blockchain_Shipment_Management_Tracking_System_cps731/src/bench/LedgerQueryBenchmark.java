@@ -0,0 +1,77 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import external.BlockchainNetwork;
+
+/**
+ * Compares BlockchainNetwork.queryLedger (shipment index) with the old
+ * full-ledger substring scan.
+ *
+ * Run with: java bench.LedgerQueryBenchmark [entries] [shipments]
+ */
+public class LedgerQueryBenchmark {
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int shipments = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int lookups = 2_000;
+
+        BlockchainNetwork network = new BlockchainNetwork();
+        network.connect();
+        for (int i = 0; i < entries; i++) {
+            String id = "S" + (i % shipments);
+            switch (i % 3) {
+                case 0:
+                    network.storeTransaction("CREATE#" + id);
+                    break;
+                case 1:
+                    network.storeTransaction("STATUS#" + id + "#IN_TRANSIT");
+                    break;
+                default:
+                    network.storeTransaction("INSURANCE_CLAIM: " + id + " | damaged");
+            }
+        }
+        List<String> ledger = network.getLedgerSnapshot();
+
+        System.out.println("Ledger entries: " + entries + ", shipments: " + shipments);
+
+        // warm up both paths before measuring
+        for (int i = 0; i < 200; i++) {
+            network.queryLedger("S" + i);
+            scan(ledger, "S" + i);
+        }
+
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            found += network.queryLedger("S" + (i * 7919 % shipments)).size();
+        }
+        long indexed = System.nanoTime() - start;
+
+        int scanLookups = Math.max(1, lookups / 100);
+        start = System.nanoTime();
+        for (int i = 0; i < scanLookups; i++) {
+            found += scan(ledger, "S" + (i * 7919 % shipments)).size();
+        }
+        long scanned = System.nanoTime() - start;
+
+        double indexedUs = indexed / 1_000.0 / lookups;
+        double scannedUs = scanned / 1_000.0 / scanLookups;
+        System.out.printf("index lookup: %10.2f us/op%n", indexedUs);
+        System.out.printf("linear scan:  %10.2f us/op%n", scannedUs);
+        System.out.printf("speed-up:     %10.1fx  (checksum %d)%n", scannedUs / indexedUs, found);
+    }
+
+    /** The lookup queryLedger used to do: contains() over every entry. */
+    private static List<String> scan(List<String> ledger, String shipmentId) {
+        List<String> matches = new ArrayList<>();
+        for (String entry : ledger) {
+            if (entry != null && entry.contains(shipmentId)) {
+                matches.add(entry);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import controller.ShipmentProjector;
+import external.BlockchainNetwork;
+import gateway.BlockchainNetworkGateway;
+
+/**
+ * Cold-start cost of rebuilding the shipment registry from the ledger:
+ * a full replay from genesis versus resuming from a checkpoint taken at
+ * 90% of the ledger.
+ *
+ * Run with: java bench.LedgerReplayBenchmark [transactions] [shipments]
+ */
+public class LedgerReplayBenchmark {
+
+    private static final String[] STATUSES = { "PICKED_UP", "IN_TRANSIT", "AT_CUSTOMS", "OUT_FOR_DELIVERY" };
+
+    public static void main(String[] args) {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int shipments = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        BlockchainNetwork network = new BlockchainNetwork(4_096);
+        network.connect();
+        List<String> batch = new ArrayList<>(4_096);
+        for (int i = 0; i < transactions; i++) {
+            int shipment = i % shipments;
+            batch.add(i < shipments
+                    ? "CREATE#S" + shipment
+                    : "STATUS#S" + shipment + "#" + STATUSES[(i / shipments) % STATUSES.length]);
+            if (batch.size() == 4_096) {
+                network.commitBlock(batch);
+                batch.clear();
+            }
+        }
+        network.commitBlock(batch);
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(network);
+        gateway.connect();
+
+        System.out.println("Transactions: " + transactions + ", shipments: " + shipments + ", cores: "
+                + Runtime.getRuntime().availableProcessors());
+
+        new ShipmentProjector(gateway).rebuild(); // warm-up
+        System.gc();
+
+        long start = System.nanoTime();
+        ShipmentProjector full = new ShipmentProjector(gateway, ShipmentProjector.DEFAULT_PAGE_SIZE,
+                transactions * 9L / 10);
+        int rebuilt = full.rebuild().size();
+        long fullNanos = System.nanoTime() - start;
+        System.gc();
+
+        start = System.nanoTime();
+        ShipmentProjector resumed = new ShipmentProjector(gateway);
+        resumed.restore(full.getCheckpoint());
+        int fromCheckpoint = resumed.rebuild().size();
+        long resumedNanos = System.nanoTime() - start;
+
+        System.out.printf("from genesis:    %8.1f ms (%,.0f tx/s), %d shipments%n",
+                fullNanos / 1e6, transactions * 1e9 / fullNanos, rebuilt);
+        System.out.printf("from checkpoint: %8.1f ms (checkpoint at %d), %d shipments%n",
+                resumedNanos / 1e6, full.getCheckpoint().getSequence(), fromCheckpoint);
+    }
+}
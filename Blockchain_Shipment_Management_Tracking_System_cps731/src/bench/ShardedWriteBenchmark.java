@@ -0,0 +1,75 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import external.BlockchainNetwork;
+import gateway.ShardedLedgerGateway;
+
+/**
+ * Write throughput through the gateway with 1, 2, 4 and 8 persistent
+ * ledger shards. Each transaction is sealed and synced as its own block,
+ * so a single ledger is bound by one fsync at a time; shards sync
+ * independently.
+ *
+ * Run with: java bench.ShardedWriteBenchmark [threads] [txPerThread]
+ */
+public class ShardedWriteBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.println("Writers: " + threads + ", transactions each: " + perThread);
+        for (int shardCount : new int[] {1, 2, 4, 8}) {
+            System.out.printf("%d shard(s): %8.0f tx/s%n", shardCount, run(shardCount, threads, perThread));
+        }
+    }
+
+    private static double run(int shardCount, int threads, int perThread)
+            throws IOException, InterruptedException {
+        Path dir = TempDirs.create("shard-bench");
+        try {
+            return run(dir, shardCount, threads, perThread);
+        } finally {
+            TempDirs.delete(dir);
+        }
+    }
+
+    private static double run(Path dir, int shardCount, int threads, int perThread)
+            throws IOException, InterruptedException {
+        List<BlockchainNetwork> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(BlockchainNetwork.open(dir.resolve("shard-" + i), 1));
+        }
+        ShardedLedgerGateway gateway = new ShardedLedgerGateway(shards);
+        gateway.connect();
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    gateway.sendTransaction("STATUS#S" + writer + "-" + i + "#IN_TRANSIT");
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        gateway.checkpoint();
+        if (!gateway.validateCheckpoints()) {
+            throw new IllegalStateException("checkpoint chain does not validate");
+        }
+        gateway.disconnect();
+        for (BlockchainNetwork shard : shards) {
+            shard.close();
+        }
+        return (double) threads * perThread * 1e9 / elapsed;
+    }
+}
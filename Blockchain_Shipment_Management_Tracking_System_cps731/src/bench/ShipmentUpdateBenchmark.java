@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import controller.ShipmentLifecycleController;
+import external.BlockchainNetwork;
+import external.OffChainStorage;
+import external.PaymentService;
+import gateway.BlockchainNetworkGateway;
+import gateway.OffChainStorageAdapter;
+import gateway.PaymentServiceAdapter;
+import model.Shipment;
+import model.SmartContract;
+
+/**
+ * Status-update throughput of ShipmentLifecycleController with 1, 2, 4, ...
+ * writers (up to the core count, or the given maximum) updating random
+ * shipments of a shared registry.
+ *
+ * Run with: java bench.ShipmentUpdateBenchmark [maxWriters] [updatesPerWriter] [shipments]
+ */
+public class ShipmentUpdateBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxWriters = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int perWriter = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int shipments = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        System.out.println("Updates per writer: " + perWriter + ", shipments: " + shipments);
+        double single = 0;
+        for (int writers = 1; writers <= maxWriters; writers *= 2) {
+            double perSec = run(writers, perWriter, shipments);
+            if (writers == 1) {
+                single = perSec;
+            }
+            System.out.printf("%2d writers: %10.0f updates/s (%.2fx)%n", writers, perSec, perSec / single);
+        }
+    }
+
+    private static double run(int writers, int perWriter, int shipments) throws InterruptedException {
+        ShipmentLifecycleController controller = new ShipmentLifecycleController(
+                new BlockchainNetworkGateway(new BlockchainNetwork()),
+                new OffChainStorageAdapter(new OffChainStorage()),
+                new PaymentServiceAdapter(new PaymentService()),
+                new SmartContract());
+        for (int i = 0; i < shipments; i++) {
+            controller.createShipment(null, "S" + i, "A", "B", "bench");
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int t = 0; t < writers; t++) {
+            int writer = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    Random random = new Random(writer);
+                    for (int i = 0; i < perWriter; i++) {
+                        Shipment s = controller.findShipmentById("S" + random.nextInt(shipments));
+                        controller.updateShipmentStatus(s, "T" + writer + "_" + i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return writers * (double) perWriter * 1e9 / (System.nanoTime() - begin);
+    }
+}
@@ -0,0 +1,28 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Scratch directories for the benchmarks that write to disk. */
+final class TempDirs {
+
+    private TempDirs() {
+    }
+
+    static Path create(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    /** Delete root and everything below it. */
+    static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
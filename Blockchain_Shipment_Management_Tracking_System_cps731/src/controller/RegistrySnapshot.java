@@ -0,0 +1,413 @@
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import gateway.LedgerGateway;
+import model.Document;
+import model.Event;
+import model.Shipment;
+
+/**
+ * Point-in-time copy of the shipment registry, with a compact binary file
+ * format.
+ *
+ * capture() copies one shipment at a time under that shipment's lock and
+ * reads the ledger size while still holding it. Since every ledger write
+ * for a shipment happens under its lock, that size splits the ledger
+ * exactly: the copy reflects the shipment's entries before it and none
+ * after. Writers of other shipments are never blocked, and a restart
+ * replays each shipment's ledger tail from its own sequence number. On a
+ * sharded ledger the size read is that of the shipment's own shard, and
+ * the snapshot keeps one sequence number per shard.
+ *
+ * File layout (big-endian, lengths and indexes as unsigned varints):
+ *
+ *   header : magic "SHPS", version, ledger sequence (long), shipment count,
+ *            string table offset (long)
+ *   shards : count, then the sequence number of each shard (version 2;
+ *            a version 1 file is a single ledger at the header's sequence)
+ *   body   : one record per shipment; every string is an index into the
+ *            string table (0 = null), dates are millis + 1 (0 = null)
+ *   strings: count, then length + UTF-8 bytes of each distinct string
+ *
+ * Repeated strings (statuses, event messages, locations, document names)
+ * are stored once and share one String instance after loading. The file
+ * is written to a temp file and renamed, and read through a memory map
+ * that is released again before read() returns.
+ */
+public class RegistrySnapshot {
+
+    private static final int MAGIC = 0x53485053; // "SHPS"
+    private static final int VERSION = 2;
+    private static final int TABLE_OFFSET_POSITION = 20;
+
+    private final long[] shardSequences;
+    private final long sequence;
+    private final Map<String, Shipment> shipments;
+    private final Map<String, Long> shipmentSequences;
+
+    /** A snapshot of a single ledger. */
+    public RegistrySnapshot(long sequence, Map<String, Shipment> shipments, Map<String, Long> shipmentSequences) {
+        this(new long[] {sequence}, shipments, shipmentSequences);
+    }
+
+    public RegistrySnapshot(long[] shardSequences, Map<String, Shipment> shipments,
+            Map<String, Long> shipmentSequences) {
+        this.shardSequences = shardSequences.clone();
+        long total = 0;
+        for (long shardSequence : shardSequences) {
+            total += shardSequence;
+        }
+        this.sequence = total;
+        this.shipments = Collections.unmodifiableMap(shipments);
+        this.shipmentSequences = Collections.unmodifiableMap(shipmentSequences);
+    }
+
+    /**
+     * Copy the registry without pausing writers: each shipment is copied
+     * under its own lock, together with the ledger size at that moment.
+     */
+    public static RegistrySnapshot capture(Map<String, Shipment> registry, LongSupplier ledgerSize) {
+        long start = ledgerSize.getAsLong();
+        long lowest = start;
+        Map<String, Shipment> copies = new LinkedHashMap<>();
+        Map<String, Long> sequences = new HashMap<>();
+        for (Shipment live : registry.values()) {
+            long[] at = new long[1];
+            Shipment copy = live.withLock(() -> {
+                at[0] = ledgerSize.getAsLong();
+                return live.copy();
+            });
+            copies.put(copy.getShipmentID(), copy);
+            sequences.put(copy.getShipmentID(), at[0]);
+            lowest = Math.min(lowest, at[0]);
+        }
+        return new RegistrySnapshot(lowest, copies, sequences);
+    }
+
+    /**
+     * Like capture(registry, ledgerSize), reading for each shipment the
+     * size of the shard that holds it.
+     */
+    public static RegistrySnapshot capture(Map<String, Shipment> registry, LedgerGateway ledger) {
+        long[] lowest = new long[ledger.getShardCount()];
+        for (int shard = 0; shard < lowest.length; shard++) {
+            lowest[shard] = ledger.getLedgerSize(shard);
+        }
+        Map<String, Shipment> copies = new LinkedHashMap<>();
+        Map<String, Long> sequences = new HashMap<>();
+        for (Shipment live : registry.values()) {
+            int shard = ledger.shardOf(live.getShipmentID());
+            long[] at = new long[1];
+            Shipment copy = live.withLock(() -> {
+                at[0] = ledger.getLedgerSize(shard);
+                return live.copy();
+            });
+            copies.put(copy.getShipmentID(), copy);
+            sequences.put(copy.getShipmentID(), at[0]);
+            lowest[shard] = Math.min(lowest[shard], at[0]);
+        }
+        return new RegistrySnapshot(lowest, copies, sequences);
+    }
+
+    /**
+     * Ledger sequence number from which every shipment's tail must be
+     * replayed; on several shards, the sum of getShardSequences().
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Per shard, the sequence number from which its tail must be replayed. */
+    public long[] getShardSequences() {
+        return shardSequences.clone();
+    }
+
+    public Map<String, Shipment> getShipments() {
+        return shipments;
+    }
+
+    /** Per shipment, the ledger size its copy reflects. */
+    public Map<String, Long> getShipmentSequences() {
+        return shipmentSequences;
+    }
+
+    /** As a projector checkpoint, so the ledger tail can be replayed on top. */
+    public ShipmentProjector.Checkpoint toCheckpoint() {
+        return new ShipmentProjector.Checkpoint(shardSequences, shipments, shipmentSequences);
+    }
+
+    // --- writing ---
+
+    /** Write the snapshot to file, replacing it atomically. */
+    public void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(Channels.newOutputStream(channel));
+            out.data.writeInt(MAGIC);
+            out.data.writeInt(VERSION);
+            out.data.writeLong(sequence);
+            out.data.writeInt(shipments.size());
+            out.data.writeLong(0L); // string table offset, patched below
+            out.varint(shardSequences.length);
+            for (long shardSequence : shardSequences) {
+                out.varint(shardSequence);
+            }
+
+            for (Shipment s : shipments.values()) {
+                out.string(s.getShipmentID());
+                out.string(s.getOrigin());
+                out.string(s.getDestination());
+                out.string(s.getDescription());
+                out.string(s.getStatus());
+                out.date(s.getDispatchDate());
+                out.date(s.getExpectedDeliveryDate());
+                out.date(s.getActualDeliveryDate());
+                out.varint(shipmentSequences.getOrDefault(s.getShipmentID(), sequence));
+
+                List<Event> history = s.getHistory();
+                out.varint(history.size());
+                for (Event e : history) {
+                    out.date(e.getTimestamp());
+                    out.string(e.getMessage());
+                }
+                List<Document> documents = s.getDocuments();
+                out.varint(documents.size());
+                for (Document d : documents) {
+                    out.varint(d.getDocumentID());
+                    out.string(d.getName());
+                    out.string(d.getHashValue());
+                    out.string(d.getFilePath());
+                    out.date(d.getTimestamp());
+                }
+            }
+
+            long tableOffset = out.data.size();
+            out.varint(out.strings.size());
+            for (String value : out.strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.varint(bytes.length);
+                out.data.write(bytes);
+            }
+            out.data.flush();
+
+            ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, tableOffset);
+            channel.write(offset, TABLE_OFFSET_POSITION);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Buffered record writer with the string table being built. */
+    private static final class Writer {
+        final DataOutputStream data;
+        final Map<String, Integer> index = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+
+        Writer(OutputStream out) {
+            this.data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        }
+
+        void string(String value) throws IOException {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            Integer ref = index.get(value);
+            if (ref == null) {
+                strings.add(value);
+                ref = strings.size();
+                index.put(value, ref);
+            }
+            varint(ref);
+        }
+
+        void date(Date date) throws IOException {
+            varint(date == null ? 0 : date.getTime() + 1);
+        }
+
+        void varint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                data.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            data.writeByte((int) value);
+        }
+    }
+
+    // --- reading ---
+
+    /**
+     * Load a snapshot written by write(). Documents come back as metadata
+     * (name, hash, file path, timestamp); their content stays off-chain.
+     *
+     * @throws IOException if the file is missing, truncated or not a
+     *                     registry snapshot
+     */
+    public static RegistrySnapshot read(Path file) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(buf, file);
+        } finally {
+            unmap(buf);
+        }
+    }
+
+    /** Parse a whole snapshot file; every value is copied out of buf. */
+    private static RegistrySnapshot read(ByteBuffer buf, Path file) throws IOException {
+        int version = buf.limit() < 28 ? 0 : buf.getInt(4);
+        if (buf.limit() < 28 || buf.getInt(0) != MAGIC || (version != 1 && version != VERSION)) {
+            throw new IOException("Not a registry snapshot: " + file);
+        }
+        long sequence = buf.getLong(8);
+        int count = buf.getInt(16);
+        long tableOffset = buf.getLong(TABLE_OFFSET_POSITION);
+        if (count < 0 || tableOffset < 28 || tableOffset > buf.limit()) {
+            throw new IOException("Truncated registry snapshot: " + file);
+        }
+
+        buf.position((int) tableOffset);
+        String[] strings = new String[count(buf) + 1];
+        for (int i = 1; i < strings.length; i++) {
+            int length = count(buf);
+            ByteBuffer bytes = buf.slice();
+            bytes.limit(length);
+            strings[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+            buf.position(buf.position() + length);
+        }
+
+        // records must end where the string table starts
+        buf.limit((int) tableOffset).position(28);
+        long[] shardSequences = {sequence};
+        if (version >= 2) {
+            shardSequences = new long[count(buf)];
+            for (int i = 0; i < shardSequences.length; i++) {
+                shardSequences[i] = varint(buf);
+            }
+        }
+        if (count > buf.remaining()) {
+            throw new IOException("Truncated registry snapshot: " + file);
+        }
+        Map<String, Shipment> shipments = new LinkedHashMap<>(count * 4 / 3 + 1);
+        Map<String, Long> sequences = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            Shipment s = new Shipment(string(buf, strings), string(buf, strings),
+                    string(buf, strings), string(buf, strings));
+            s.setStatus(string(buf, strings));
+            s.setDispatchDate(date(buf));
+            s.setExpectedDeliveryDate(date(buf));
+            s.setActualDeliveryDate(date(buf));
+            sequences.put(s.getShipmentID(), varint(buf));
+
+            int events = count(buf);
+            List<Event> history = new ArrayList<>(events);
+            for (int e = 0; e < events; e++) {
+                history.add(new Event(date(buf), string(buf, strings)));
+            }
+            s.getHistory().clear();
+            s.getHistory().addAll(history);
+
+            int docs = count(buf);
+            List<Document> documents = new ArrayList<>(docs);
+            for (int d = 0; d < docs; d++) {
+                int id = (int) varint(buf);
+                documents.add(new Document(id, string(buf, strings), string(buf, strings),
+                        string(buf, strings), null, date(buf)));
+            }
+            s.getDocuments().addAll(documents);
+            shipments.put(s.getShipmentID(), s);
+        }
+        return new RegistrySnapshot(shardSequences, shipments, sequences);
+    }
+
+    private static String string(ByteBuffer buf, String[] strings) throws IOException {
+        long ref = varint(buf);
+        if (ref < 0 || ref >= strings.length) {
+            throw new IOException("Bad string reference " + ref);
+        }
+        return strings[(int) ref];
+    }
+
+    private static Date date(ByteBuffer buf) throws IOException {
+        long value = varint(buf);
+        return value == 0 ? null : new Date(value - 1);
+    }
+
+    /**
+     * A length or element count; each counted item takes at least one byte,
+     * so a count beyond the remaining bytes means the file is cut short.
+     */
+    private static int count(ByteBuffer buf) throws IOException {
+        long value = varint(buf);
+        if (value < 0 || value > buf.remaining()) {
+            throw new IOException("Truncated registry snapshot");
+        }
+        return (int) value;
+    }
+
+    private static long varint(ByteBuffer buf) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buf.hasRemaining()) {
+                throw new IOException("Truncated registry snapshot");
+            }
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad varint in registry snapshot");
+    }
+
+    /**
+     * Release the mapping now instead of whenever the buffer is collected,
+     * so the next snapshot can replace the file (some platforms refuse to
+     * while it is mapped). Falls back to the collector if the JDK's
+     * unmapping hook is not accessible.
+     */
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buf);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // released when the buffer is garbage collected
+        }
+    }
+}
@@ -1,25 +1,45 @@
 package controller;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-
-import gateway.BlockchainNetworkGateway;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import external.MerkleProof;
+import external.Transaction;
+import gateway.AsyncExecutors;
+import gateway.LedgerGateway;
 import gateway.OffChainStorageAdapter;
 import gateway.PaymentServiceAdapter;
 import model.Document;
 import model.Event;
+import model.LedgerProof;
 import model.Report;
 import model.Shipment;
 import model.SmartContract;
+import model.VerificationReport;
 
 public class ShipmentComplianceController {
 
-    private final BlockchainNetworkGateway blockchainGateway;
+    private final LedgerGateway blockchainGateway;
     private final OffChainStorageAdapter offChainAdapter;
     private final PaymentServiceAdapter paymentAdapter;
     private final SmartContract smartContract;
+    private volatile ForkJoinPool verificationPool = ForkJoinPool.commonPool();
+
+    // documents verified per fork/join leaf task
+    private static final int VERIFY_BATCH = 512;
 
-    public ShipmentComplianceController(BlockchainNetworkGateway blockchainGateway, 
+    /** Progress of a bulk verification; called from pool threads, possibly concurrently. */
+    public interface ProgressListener {
+        void onProgress(long verified, long total);
+    }
+
+    public ShipmentComplianceController(LedgerGateway blockchainGateway, 
             OffChainStorageAdapter offChainAdapter, PaymentServiceAdapter paymentAdapter,
             SmartContract smartContract) {
 
@@ -56,10 +76,27 @@ public class ShipmentComplianceController {
                     .append("\n");
         }
 
-        // Simulate querying blockchain
-        blockchainGateway.queryLedger("AuditTrail#" + shipment.getShipmentID());
+        // Attach a Merkle inclusion proof for every sealed ledger entry of the
+        // shipment, with its block header, so the trail can be checked offline.
+        // Nothing is sealed here: pending entries are listed as unproven.
+        String shipmentId = shipment.getShipmentID();
+        List<LedgerProof> proofs = new ArrayList<>();
+        for (MerkleProof proof : blockchainGateway.getInclusionProofs(shipmentId)) {
+            proofs.add(new LedgerProof(proof, blockchainGateway.getBlockHeader(proof.getBlockHash())));
+        }
+        for (String pending : blockchainGateway.getPendingEntries(shipmentId)) {
+            proofs.add(new LedgerProof(pending));
+        }
+        if (!proofs.isEmpty()) {
+            sb.append("\nLedger proofs (leaf = SHA-256(0x00 || entry), ")
+                    .append("node = SHA-256(0x01 || left || right), ")
+                    .append("block hash = SHA-256(header)):\n");
+            for (LedgerProof proof : proofs) {
+                sb.append(proof).append("\n");
+            }
+        }
 
-        return new Report("Audit Trail - Shipment " + shipment.getShipmentID(), sb.toString(), new Date());
+        return new Report("Audit Trail - Shipment " + shipment.getShipmentID(), sb.toString(), new Date(), proofs);
     }
 
     public String logDispute(Shipment shipment, String description) {
@@ -71,17 +108,19 @@ public class ShipmentComplianceController {
         }
 
         // Smart contract validation
-        if (!smartContract.canRaiseDispute(shipment)) {
-            return "Smart contract rejected dispute for shipment " + shipment.getShipmentID();
-        }
+        return shipment.withLock(() -> {
+            if (!smartContract.canRaiseDispute(shipment)) {
+                return "Smart contract rejected dispute for shipment " + shipment.getShipmentID();
+            }
 
-        shipment.addHistoryEvent("Dispute raised: " + description);
+            shipment.addHistoryEvent("Dispute raised: " + description);
 
-        // Blockchain log
-        blockchainGateway.connect();
-        blockchainGateway.sendTransaction("DISPUTE#" + shipment.getShipmentID());
+            // Blockchain log
+            blockchainGateway.connect();
+            blockchainGateway.sendTransaction(Transaction.dispute(shipment.getShipmentID()));
 
-        return "Dispute filed for shipment " + shipment.getShipmentID();
+            return "Dispute filed for shipment " + shipment.getShipmentID();
+        });
     }
 
     public String verifyDocument(Shipment shipment, String documentName) {
@@ -106,21 +145,130 @@ public class ShipmentComplianceController {
         return "Document not found: " + documentName;
     }
 
+    /**
+     * Verify every document of the given shipments (e.g. all of
+     * ShipmentLifecycleController.getAllShipments().values()) in parallel
+     * on the verification pool. Documents are split into batches of fixed
+     * size; listener, if not null, is told after each batch.
+     *
+     * @return the failures in shipment and document order
+     */
+    public VerificationReport verifyDocuments(Collection<Shipment> shipments, ProgressListener listener) {
+        long start = System.nanoTime();
+        List<Shipment> owners = new ArrayList<>();
+        List<Document> documents = new ArrayList<>();
+        if (shipments != null) {
+            for (Shipment shipment : shipments) {
+                if (shipment == null) {
+                    continue;
+                }
+                // documents are copy-on-write, so this is a stable snapshot
+                for (Document doc : shipment.getDocuments()) {
+                    owners.add(shipment);
+                    documents.add(doc);
+                }
+            }
+        }
+
+        offChainAdapter.connect();
+        List<VerificationReport.Failure> failures = verificationPool.invoke(
+                new VerifyTask(owners, documents, 0, documents.size(), new AtomicLong(), listener));
+        return new VerificationReport(documents.size(), failures, System.nanoTime() - start);
+    }
+
+    /** Pool used by verifyDocuments (the common pool by default). */
+    public void setVerificationPool(ForkJoinPool pool) {
+        this.verificationPool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    private VerificationReport.Failure verifyOne(Shipment shipment, Document doc) {
+        VerificationReport.Reason reason;
+        if (doc.getHashValue() == null || doc.getHashValue().isEmpty()) {
+            reason = VerificationReport.Reason.NO_HASH;
+        } else if (offChainAdapter.verifyIntegrity(doc)) {
+            return null;
+        } else if (offChainAdapter.retrieveFile(doc.getHashValue()) == null) {
+            reason = VerificationReport.Reason.NOT_STORED;
+        } else {
+            reason = VerificationReport.Reason.HASH_MISMATCH;
+        }
+        return new VerificationReport.Failure(shipment.getShipmentID(), doc.getName(), doc.getHashValue(), reason);
+    }
+
+    /** Verifies documents [from, to) by halving until a range fits one batch. */
+    private final class VerifyTask extends RecursiveTask<List<VerificationReport.Failure>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Shipment> owners;
+        private final List<Document> documents;
+        private final int from;
+        private final int to;
+        private final AtomicLong done;
+        private final ProgressListener listener;
+
+        VerifyTask(List<Shipment> owners, List<Document> documents, int from, int to,
+                AtomicLong done, ProgressListener listener) {
+            this.owners = owners;
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+            this.done = done;
+            this.listener = listener;
+        }
+
+        @Override
+        protected List<VerificationReport.Failure> compute() {
+            if (to - from > VERIFY_BATCH) {
+                int mid = (from + to) >>> 1;
+                VerifyTask left = new VerifyTask(owners, documents, from, mid, done, listener);
+                left.fork();
+                List<VerificationReport.Failure> right =
+                        new VerifyTask(owners, documents, mid, to, done, listener).compute();
+                List<VerificationReport.Failure> failures = left.join();
+                if (failures.isEmpty()) {
+                    return right;
+                }
+                failures.addAll(right);
+                return failures;
+            }
+
+            List<VerificationReport.Failure> failures = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                VerificationReport.Failure failure = verifyOne(owners.get(i), documents.get(i));
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+            long verified = done.addAndGet(to - from);
+            if (listener != null) {
+                listener.onProgress(verified, documents.size());
+            }
+            return failures;
+        }
+    }
+
     public String approveClearance(Shipment shipment, String decision) {
         if (!decision.equals("APPROVE") && !decision.equals("REJECT")) {
             return "Invalid decision. Must be APPROVE or REJECT.";
         }
 
-        boolean allowed = smartContract.validateCustomsClearance(shipment, decision);
-        if (!allowed) {
+        if (shipment == null) {
             return "Smart contract rejected clearance.";
         }
 
-        shipment.addHistoryEvent("Customs clearance: " + decision);
+        return shipment.withLock(() -> {
+            boolean allowed = smartContract.validateCustomsClearance(shipment, decision);
+            if (!allowed) {
+                return "Smart contract rejected clearance.";
+            }
+
+            shipment.addHistoryEvent("Customs clearance: " + decision);
 
-        blockchainGateway.sendTransaction("CLEARANCE#" + shipment.getShipmentID() + "#" + decision);
+            blockchainGateway.sendTransaction(Transaction.clearance(shipment.getShipmentID(), decision));
 
-        return "Clearance " + decision + " recorded for shipment " + shipment.getShipmentID();
+            return "Clearance " + decision + " recorded for shipment " + shipment.getShipmentID();
+        });
     }
 
     public Report generateComplianceSummary(String filter) {
@@ -134,13 +282,26 @@ public class ShipmentComplianceController {
     }
 
     public String checkInsuranceClaim(Shipment shipment) {
-        // ask smart contract if claim should be triggered automatically
-        if (smartContract.triggerInsuranceClaim(shipment)) {
-            Event e = smartContract.generateInsuranceClaimEvent(shipment);
-            blockchainGateway.sendTransaction("INSURANCE_CLAIM: " + shipment.getShipmentID() + " | " + e.getMessage());
-            return "Insurance claim AUTO-TRIGGERED for shipment " + shipment.getShipmentID();
+        if (shipment == null) {
+            return "No insurance claim needed.";
         }
-        return "No insurance claim needed.";
+
+        // ask smart contract if claim should be triggered automatically
+        return shipment.withLock(() -> {
+            if (smartContract.triggerInsuranceClaim(shipment)) {
+                Event e = smartContract.generateInsuranceClaimEvent(shipment);
+                blockchainGateway.sendTransaction(Transaction.insuranceClaim(shipment.getShipmentID(), e.getMessage()));
+                return "Insurance claim AUTO-TRIGGERED for shipment " + shipment.getShipmentID();
+            }
+            return "No insurance claim needed.";
+        });
     }
 
+    /**
+     * Async version of checkInsuranceClaim, run on the shared async
+     * executor so callers such as the UI thread never wait on the ledger.
+     */
+    public CompletableFuture<String> checkInsuranceClaimAsync(Shipment shipment) {
+        return CompletableFuture.supplyAsync(() -> checkInsuranceClaim(shipment), AsyncExecutors.defaultExecutor());
+    }
 }
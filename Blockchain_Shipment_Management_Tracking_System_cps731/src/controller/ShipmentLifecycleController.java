@@ -1,10 +1,22 @@
 package controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-
-import gateway.BlockchainNetworkGateway;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import external.Transaction;
+import gateway.AsyncExecutors;
+import gateway.LedgerGateway;
 import gateway.OffChainStorageAdapter;
 import gateway.PaymentServiceAdapter;
 import model.Document;
@@ -14,21 +26,136 @@ import model.SmartContract;
 
 public class ShipmentLifecycleController {
 
-    private final BlockchainNetworkGateway blockchainGateway;
+    private final LedgerGateway blockchainGateway;
     private final OffChainStorageAdapter offChainAdapter;
     private final PaymentServiceAdapter paymentAdapter; 
     private final SmartContract smartContract;
+    private final ShipmentProjector projector;
+    private ScheduledExecutorService snapshotScheduler;
 
-    // In-memory store of shipments keyed by ID
-    private final Map<String, Shipment> shipments = new HashMap<>();
+    // In-memory store of shipments keyed by ID. Concurrent so lookups never
+    // block; mutations of one shipment are serialized by Shipment.withLock.
+    private final Map<String, Shipment> shipments = new ConcurrentHashMap<>();
 
-    public ShipmentLifecycleController(BlockchainNetworkGateway blockchainGateway,
+    public ShipmentLifecycleController(LedgerGateway blockchainGateway,
             OffChainStorageAdapter offChainAdapter, PaymentServiceAdapter paymentAdapter,
             SmartContract smartContract) {
         this.blockchainGateway = blockchainGateway;
         this.offChainAdapter = offChainAdapter;
         this.paymentAdapter = paymentAdapter;
         this.smartContract = smartContract;
+        this.projector = new ShipmentProjector(blockchainGateway);
+    }
+
+    /**
+     * Rebuild the registry from the ledger, e.g. after a restart. Shipments
+     * already in the registry are kept as they are. With persisted
+     * checkpoints, a projector that has not replayed anything yet starts
+     * from the latest checkpoint file and replays only the ledger tail.
+     *
+     * @return the number of shipments added
+     */
+    public int rebuildFromLedger() {
+        blockchainGateway.connect();
+        if (projector.getSequence() == 0) {
+            projector.restorePersistedCheckpoint();
+        }
+        int added = 0;
+        for (Map.Entry<String, Shipment> e : projector.rebuild().entrySet()) {
+            if (shipments.putIfAbsent(e.getKey(), e.getValue()) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Write a point-in-time snapshot of the registry to file. Shipments are
+     * copied one at a time under their own lock, so writers are never
+     * paused as a whole.
+     */
+    public RegistrySnapshot snapshot(Path file) throws IOException {
+        blockchainGateway.connect();
+        RegistrySnapshot snapshot = RegistrySnapshot.capture(shipments, blockchainGateway);
+        snapshot.write(file);
+        return snapshot;
+    }
+
+    /** snapshot() on a background thread. */
+    public CompletableFuture<RegistrySnapshot> snapshotAsync(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return snapshot(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, AsyncExecutors.defaultExecutor());
+    }
+
+    /**
+     * Write a snapshot to file every periodMillis on a background thread.
+     * A failed snapshot is passed to onFailure and the schedule carries on;
+     * the previous snapshot file is left intact.
+     */
+    public synchronized void startPeriodicSnapshots(Path file, long periodMillis,
+            Consumer<? super Exception> onFailure) {
+        stopPeriodicSnapshots();
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "registry-snapshots");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(file);
+            } catch (IOException | RuntimeException e) {
+                onFailure.accept(e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPeriodicSnapshots() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            snapshotScheduler = null;
+        }
+    }
+
+    /**
+     * Restart path: load the snapshot in file, then replay the ledger tail
+     * written after it. Documents still in off-chain storage are linked to
+     * their stored versions.
+     *
+     * @return the number of shipments added to the registry
+     */
+    public int restoreFromSnapshot(Path file) throws IOException {
+        RegistrySnapshot snapshot = RegistrySnapshot.read(file);
+        offChainAdapter.connect();
+        for (Shipment shipment : snapshot.getShipments().values()) {
+            List<Document> documents = shipment.getDocuments();
+            for (int i = 0; i < documents.size(); i++) {
+                Document stored = offChainAdapter.retrieveFile(documents.get(i).getHashValue());
+                if (stored != null) {
+                    documents.set(i, stored);
+                }
+            }
+        }
+        projector.restore(snapshot.toCheckpoint());
+        return rebuildFromLedger();
+    }
+
+    /**
+     * Persist the projector's checkpoints to file, so rebuildFromLedger()
+     * after a restart continues from the latest one instead of replaying
+     * the ledger from genesis. Failures are passed to onFailure.
+     */
+    public void persistCheckpoints(Path file, Consumer<? super Exception> onFailure) {
+        projector.persistCheckpoints(file, onFailure);
+    }
+
+    /** Projector used by rebuildFromLedger (for checkpoints and stats). */
+    public ShipmentProjector getProjector() {
+        return projector;
     }
 
     /**
@@ -41,17 +168,22 @@ public class ShipmentLifecycleController {
             String description) {
 
         Shipment shipment = new Shipment(shipmentID, origin, destination, description);
-        shipment.setStatus("CREATED");
-        shipment.addHistoryEvent("Shipment created by shipper " +
-                (shipper != null ? shipper.getUsername() : "system"));
 
-        shipments.put(shipmentID, shipment);
+        // Hold the new shipment's lock until CREATE# is on the ledger, so an
+        // update that finds it in the registry cannot overtake it.
+        return shipment.withLock(() -> {
+            shipment.setStatus("CREATED");
+            shipment.addHistoryEvent("Shipment created by shipper " +
+                    (shipper != null ? shipper.getUsername() : "system"));
 
-        // Simulate writing a transaction to the blockchain
-        blockchainGateway.connect();
-        blockchainGateway.sendTransaction("CREATE#" + shipmentID);
+            shipments.put(shipmentID, shipment);
+
+            // Simulate writing a transaction to the blockchain
+            blockchainGateway.connect();
+            blockchainGateway.sendTransaction(Transaction.create(shipmentID));
 
-        return shipment;
+            return shipment;
+        });
     }
 
     /** Used by MainUI: look up a shipment in memory by ID. */
@@ -69,7 +201,10 @@ public class ShipmentLifecycleController {
         if (newStatus == null || newStatus.isBlank()) {
             return "New status cannot be empty.";
         }
+        return shipment.withLock(() -> applyStatusUpdate(shipment, newStatus));
+    }
 
+    private String applyStatusUpdate(Shipment shipment, String newStatus) {
         // Smart-contract rule check
         if (!smartContract.canUpdateStatus(shipment, newStatus)) {
             return "Smart contract rejected status change for shipment " +
@@ -81,19 +216,21 @@ public class ShipmentLifecycleController {
 
         // Simulate blockchain event
         blockchainGateway.connect();
-        blockchainGateway.sendTransaction("STATUS#" + shipment.getShipmentID() +
-                "#" + newStatus);
+        blockchainGateway.sendTransaction(Transaction.status(shipment.getShipmentID(), newStatus));
 
         return "Shipment " + shipment.getShipmentID() +
                 " status updated to " + newStatus;
     }
 
-    /** Used by MainUI: create & upload a document for a shipment. */
+    /**
+     * Used by MainUI: create & upload a document for a shipment. The upload
+     * runs while the shipment records the document and is waited for after
+     * the shipment's lock is released; its failure is rethrown unwrapped.
+     */
     public Document uploadDocument(Shipment shipment, String documentName, String content) {
         if (shipment == null) {
             return null;
         }
-
         Document doc = new Document();
         doc.setName(documentName);
         doc.setContent(content);
@@ -101,11 +238,41 @@ public class ShipmentLifecycleController {
         doc.setTimestamp(new java.util.Date());
 
         offChainAdapter.connect();
-        offChainAdapter.uploadFile(doc);
+        CompletableFuture<String> upload = offChainAdapter.uploadFileAsync(doc);
 
-        shipment.addDocument(doc);
-        shipment.addHistoryEvent("Document uploaded: " + documentName);
+        shipment.withLock(() -> {
+            shipment.addDocument(doc);
+            shipment.addHistoryEvent("Document uploaded: " + documentName);
+            return null;
+        });
 
+        AsyncExecutors.await(upload);
+        return doc;
+    }
+
+    /**
+     * Upload a document whose content is streamed, for files too large to
+     * hold as a String. The upload runs before the shipment is locked, so a
+     * slow transfer does not block other updates to it.
+     *
+     * @return the stored document, or null if the upload failed
+     */
+    public Document uploadDocument(Shipment shipment, String documentName, InputStream content) {
+        if (shipment == null || content == null) {
+            return null;
+        }
+
+        offChainAdapter.connect();
+        Document doc = offChainAdapter.uploadStream(documentName, content);
+        if (doc == null) {
+            return null;
+        }
+
+        shipment.withLock(() -> {
+            shipment.addDocument(doc);
+            shipment.addHistoryEvent("Document uploaded: " + documentName);
+            return null;
+        });
         return doc;
     }
 
@@ -114,49 +281,76 @@ public class ShipmentLifecycleController {
         return Collections.unmodifiableMap(shipments);
     }
 
-    /** Buyer confirms that the shipment has been delivered. */
+    /**
+     * Buyer confirms that the shipment has been delivered. The state change
+     * is made under the shipment's lock; the ledger write and the payment
+     * run while it is held but are waited for after it is released, so a
+     * slow ledger or payment service does not block other updates.
+     */
     public String confirmDelivery(Shipment shipment) {
         if (shipment == null) {
             return "Shipment not found.";
         }
+        Delivery delivery = shipment.withLock(() -> startDelivery(shipment));
+        if (delivery == null) {
+            return "Smart contract rejected delivery confirmation.";
+        }
+
+        Boolean paid = delivery.payment == null ? null : AsyncExecutors.await(delivery.payment);
+        AsyncExecutors.await(delivery.ledgerWrite);
+
+        if (paid == null) {
+            return "Shipment " + shipment.getShipmentID()
+                    + " marked as DELIVERED. Payment not permitted by smart contract.";
+        }
+        if (paid) {
+            shipment.withLock(() -> {
+                Document receipt = paymentAdapter.generateReceipt();
+                shipment.addDocument(receipt);
+                shipment.addHistoryEvent("Payment released. Receipt generated.");
+                return null;
+            });
+            return "Shipment " + shipment.getShipmentID()
+                    + " marked as DELIVERED. Payment released and receipt generated.";
+        }
+        return "Shipment " + shipment.getShipmentID()
+                + " marked as DELIVERED, but payment FAILED.";
+    }
 
+    /** Marks the shipment delivered and starts the async work; null if the contract refuses. */
+    private Delivery startDelivery(Shipment shipment) {
         // Smart Contract validation: can the status move to DELIVERED?
         if (!smartContract.canUpdateStatus(shipment, "DELIVERED")) {
-            return "Smart contract rejected delivery confirmation.";
+            return null;
         }
 
         // Step 1 — Update shipment state
         shipment.setStatus("DELIVERED");
         shipment.addHistoryEvent("Delivery confirmed by buyer.");
 
-        // Emit blockchain event
+        // Emit blockchain event; the payment below runs while it commits
         blockchainGateway.connect();
-        blockchainGateway.sendTransaction("DELIVERED#" + shipment.getShipmentID());
+        CompletableFuture<Boolean> ledgerWrite =
+                blockchainGateway.sendTransactionAsync(Transaction.delivered(shipment.getShipmentID()));
 
         // Step 2 — Check SmartContract for payment permission
+        CompletableFuture<Boolean> payment = null;
         if (smartContract.canTriggerPayment(shipment)) {
-
             paymentAdapter.connect();
-
             // Example amount = 100.00f (you may calculate differently)
-            boolean paid = paymentAdapter.processPayment(shipment, 100.00f);
-
-            if (paid) {
-                Document receipt = paymentAdapter.generateReceipt();
-                shipment.addDocument(receipt);
-                shipment.addHistoryEvent("Payment released. Receipt generated.");
-
-                return "Shipment " + shipment.getShipmentID()
-                        + " marked as DELIVERED. Payment released and receipt generated.";
-            }
-
-            return "Shipment " + shipment.getShipmentID()
-                    + " marked as DELIVERED, but payment FAILED.";
+            payment = paymentAdapter.processPaymentAsync(shipment, 100.00f);
         }
-
-        return "Shipment " + shipment.getShipmentID()
-                + " marked as DELIVERED. Payment not permitted by smart contract.";
+        return new Delivery(ledgerWrite, payment);
     }
 
+    /** Async work started by a delivery confirmation; payment is null if not permitted. */
+    private static final class Delivery {
+        final CompletableFuture<Boolean> ledgerWrite;
+        final CompletableFuture<Boolean> payment;
 
+        Delivery(CompletableFuture<Boolean> ledgerWrite, CompletableFuture<Boolean> payment) {
+            this.ledgerWrite = ledgerWrite;
+            this.payment = payment;
+        }
+    }
 }
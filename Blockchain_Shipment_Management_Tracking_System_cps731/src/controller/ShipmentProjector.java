@@ -0,0 +1,470 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import external.LedgerRecord;
+import external.ShipmentIndex;
+import gateway.LedgerGateway;
+import model.Event;
+import model.Shipment;
+
+/**
+ * Rebuilds shipment state by replaying the ledger (event sourcing), so the
+ * registry survives a restart of the process.
+ *
+ * The ledger is read in pages, shard by shard; a single ledger is one
+ * shard. Each page is grouped by shipment ID and the groups are applied in
+ * parallel on a ForkJoinPool; a shipment's entries all live on one shard
+ * and stay in ledger order. The projector's sequence number is the number
+ * of entries replayed, summed over the shards. Every checkpointInterval entries the projection is
+ * checkpointed, and a later replay (or a new projector given restore())
+ * continues from the latest checkpoint instead of from genesis.
+ *
+ * Checkpoints are copy-on-write: taking one copies the ID -> Shipment map,
+ * not the shipments; a shipment is copied the first time it changes after
+ * the checkpoint.
+ *
+ * Checkpoints live in memory unless persistCheckpoints() names a file:
+ * then each one is also written there as a RegistrySnapshot, and
+ * restorePersistedCheckpoint() continues from it after a restart, so only
+ * the ledger tail written since is replayed.
+ *
+ * A checkpoint may also carry a per-shipment sequence number (as taken by
+ * RegistrySnapshot.capture), on the shipment's own shard: entries of that
+ * shipment below it are already reflected in its state and are not
+ * applied again.
+ *
+ * Only what the ledger records can be recovered: ID, status, delivery date
+ * and a history derived from the entries, each event stamped with its
+ * entry's commit time, so replaying the same ledger twice gives the same
+ * history. Origin, destination, description and documents
+ * are not on the ledger.
+ */
+public class ShipmentProjector {
+
+    public static final int DEFAULT_PAGE_SIZE = 64 * 1024;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+
+    // shipment groups applied per fork/join leaf task
+    private static final int APPLY_BATCH = 64;
+
+    private final LedgerGateway gateway;
+    private final int pageSize;
+    private final long checkpointInterval;
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private final Map<String, Shipment> state = new ConcurrentHashMap<>();
+    // shipments copied since the last checkpoint, safe to change in place
+    private final Set<String> owned = ConcurrentHashMap.newKeySet();
+    private long[] sequences; // next entry to replay, per shard
+    private Checkpoint checkpoint;
+    private Map<String, Long> shipmentSequences = Collections.emptyMap();
+    private Path checkpointFile;
+    private Consumer<? super Exception> checkpointFailures;
+
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public ShipmentProjector(LedgerGateway gateway) {
+        this(gateway, DEFAULT_PAGE_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public ShipmentProjector(LedgerGateway gateway, int pageSize, long checkpointInterval) {
+        if (pageSize < 1 || checkpointInterval < 1) {
+            throw new IllegalArgumentException("pageSize and checkpointInterval must be positive");
+        }
+        this.gateway = gateway;
+        this.pageSize = pageSize;
+        this.checkpointInterval = checkpointInterval;
+        reset();
+    }
+
+    /**
+     * Replay everything appended since the last call (or since the restored
+     * checkpoint) and return the projected shipments. The returned shipments
+     * are copies the caller owns; later replays never touch them. When
+     * checkpoints are persisted, the result is checkpointed too.
+     */
+    public synchronized Map<String, Shipment> rebuild() {
+        catchUp();
+        if (checkpointFile != null && position() > checkpoint.getSequence()) {
+            takeCheckpoint();
+        }
+        Map<String, Shipment> result = new HashMap<>(state.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Shipment> e : state.entrySet()) {
+            result.put(e.getKey(), e.getValue().copy());
+        }
+        return result;
+    }
+
+    /**
+     * Replay ledger entries from the current sequence number to the end of
+     * every shard, checkpointing along the way.
+     *
+     * @return the number of entries replayed
+     */
+    public synchronized long catchUp() {
+        long[] ends = new long[gateway.getShardCount()];
+        boolean sameLedger = ends.length == sequences.length;
+        for (int shard = 0; shard < ends.length; shard++) {
+            ends[shard] = gateway.getLedgerSize(shard);
+            sameLedger &= shard >= sequences.length || ends[shard] >= sequences[shard];
+        }
+        if (!sameLedger) {
+            // a shard is shorter than our projection, or the shards differ:
+            // not the same ledger
+            reset();
+        }
+        long start = position();
+        for (int shard = 0; shard < ends.length; shard++) {
+            while (sequences[shard] < ends[shard]) {
+                List<LedgerRecord> page = gateway.readLedgerRecords(shard, sequences[shard],
+                        (int) Math.min(pageSize, ends[shard] - sequences[shard]));
+                if (page.isEmpty()) {
+                    break;
+                }
+                applyPage(page, sequences[shard]);
+                sequences[shard] += page.size();
+                if (position() - checkpoint.getSequence() >= checkpointInterval) {
+                    takeCheckpoint();
+                }
+            }
+        }
+        return position() - start;
+    }
+
+    /** Entries replayed so far, summed over the shards. */
+    private long position() {
+        long position = 0;
+        for (long sequence : sequences) {
+            position += sequence;
+        }
+        return position;
+    }
+
+    /**
+     * Checkpoint the projection as of the current sequence number, and write
+     * it to the checkpoint file if there is one. A failed write is passed to
+     * the failure listener; the checkpoint still holds in memory.
+     */
+    public synchronized Checkpoint takeCheckpoint() {
+        checkpoint = new Checkpoint(sequences, new HashMap<>(state), shipmentSequences);
+        owned.clear();
+        if (checkpointFile != null) {
+            try {
+                new RegistrySnapshot(checkpoint.getShardSequences(), checkpoint.getShipments(),
+                        checkpoint.getShipmentSequences()).write(checkpointFile);
+            } catch (IOException | RuntimeException e) {
+                checkpointFailures.accept(e);
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Also write every checkpoint to file, replacing the previous one, so a
+     * restarted projector can continue from it. Failed writes and reads are
+     * passed to onFailure. A null file keeps checkpoints in memory only.
+     */
+    public synchronized void persistCheckpoints(Path file, Consumer<? super Exception> onFailure) {
+        this.checkpointFile = file;
+        this.checkpointFailures = onFailure;
+    }
+
+    /**
+     * Continue from the checkpoint last written to the checkpoint file. A
+     * file that cannot be read is passed to the failure listener and the
+     * projection is left as it is.
+     *
+     * @return true if a persisted checkpoint was restored
+     */
+    public synchronized boolean restorePersistedCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return false;
+        }
+        try {
+            restore(RegistrySnapshot.read(checkpointFile).toCheckpoint());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            checkpointFailures.accept(e);
+            return false;
+        }
+    }
+
+    /** Continue from a checkpoint, e.g. one loaded at startup. */
+    public synchronized void restore(Checkpoint from) {
+        state.clear();
+        state.putAll(from.getShipments());
+        owned.clear();
+        sequences = from.getShardSequences();
+        shipmentSequences = from.getShipmentSequences();
+        checkpoint = from;
+    }
+
+    /** Forget everything and replay from genesis next time. */
+    public synchronized void reset() {
+        restore(new Checkpoint(new long[gateway.getShardCount()], Collections.emptyMap(),
+                Collections.emptyMap()));
+    }
+
+    public synchronized Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Sequence number of the next ledger entry to replay; on several shards,
+     * the number of entries replayed summed over them.
+     */
+    public synchronized long getSequence() {
+        return position();
+    }
+
+    /** Entries that changed a shipment. */
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /** Entries skipped: unknown format, or for a shipment never created. */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /** Pool used to apply shipment groups (the common pool by default). */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    // --- replay ---
+
+    private void applyPage(List<LedgerRecord> page, long firstSequence) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < page.size(); i++) {
+            String id = ShipmentIndex.extractShipmentId(page.get(i).getEntry());
+            if (id == null) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            groups.computeIfAbsent(id, k -> new ArrayList<>(4)).add(i);
+        }
+        List<Map.Entry<String, List<Integer>>> work = new ArrayList<>(groups.entrySet());
+        pool.invoke(new ApplyTask(work, 0, work.size(), page, firstSequence));
+    }
+
+    private void applyGroup(String id, List<Integer> offsets, List<LedgerRecord> page, long firstSequence) {
+        // history is copy-on-write, so its new events are added in one go
+        List<Event> events = new ArrayList<>(offsets.size());
+        Shipment shipment = null;
+        long applyFrom = shipmentSequences.getOrDefault(id, 0L);
+        for (int offset : offsets) {
+            if (firstSequence + offset < applyFrom) {
+                continue; // already in the restored state
+            }
+            LedgerRecord record = page.get(offset);
+            Shipment changed = apply(id, record.getEntry(), new Date(record.getTimestamp()), events);
+            if (changed != null) {
+                shipment = changed;
+            }
+        }
+        if (shipment != null) {
+            shipment.getHistory().addAll(events);
+        }
+    }
+
+    /** Apply one entry, adding its history event to events; returns the changed shipment. */
+    private Shipment apply(String id, String entry, Date when, List<Event> events) {
+        String type = typeOf(entry);
+        Shipment shipment = state.get(id);
+
+        if ("CREATE".equals(type)) {
+            if (shipment != null) {
+                skipped.incrementAndGet(); // duplicate create: first one wins
+                return null;
+            }
+            shipment = new Shipment(id, null, null, null);
+            shipment.setDispatchDate(when);
+            shipment.getHistory().clear();
+            events.add(new Event(when, "Shipment created"));
+            state.put(id, shipment);
+            owned.add(id);
+            applied.incrementAndGet();
+            return shipment;
+        }
+        if (shipment == null || type == null) {
+            skipped.incrementAndGet();
+            return null;
+        }
+
+        shipment = writable(id, shipment);
+        switch (type) {
+            case "STATUS": {
+                String status = field(entry, 2);
+                if (status == null) {
+                    skipped.incrementAndGet();
+                    return shipment;
+                }
+                shipment.setStatus(status);
+                events.add(new Event(when, "Status updated to: " + status));
+                break;
+            }
+            case "DELIVERED":
+                shipment.setStatus("DELIVERED");
+                shipment.setActualDeliveryDate(when);
+                events.add(new Event(when, "Delivery confirmed by buyer."));
+                break;
+            case "CLEARANCE":
+                events.add(new Event(when, "Customs clearance: " + field(entry, 2)));
+                break;
+            case "DISPUTE":
+                events.add(new Event(when, "Dispute raised"));
+                break;
+            case "INSURANCE_CLAIM": {
+                int bar = entry.indexOf(" | ");
+                events.add(new Event(when, "Insurance claim: " + (bar < 0 ? "" : entry.substring(bar + 3))));
+                break;
+            }
+            default:
+                skipped.incrementAndGet();
+                return shipment;
+        }
+        applied.incrementAndGet();
+        return shipment;
+    }
+
+    /** The shipment to change in place, copied first if a checkpoint shares it. */
+    private Shipment writable(String id, Shipment shipment) {
+        if (owned.contains(id)) {
+            return shipment;
+        }
+        Shipment copy = shipment.copy();
+        state.put(id, copy);
+        owned.add(id);
+        return copy;
+    }
+
+    /** Entry type: the text before the first '#' or ": ". */
+    private static String typeOf(String entry) {
+        int hash = entry.indexOf('#');
+        int colon = entry.indexOf(": ");
+        int end = hash > 0 && (colon < 0 || hash < colon) ? hash : colon;
+        return end > 0 ? entry.substring(0, end) : null;
+    }
+
+    /** The index-th '#'-separated field of a TYPE#id#... entry, or null. */
+    private static String field(String entry, int index) {
+        String[] parts = entry.split("#", index + 2);
+        return parts.length > index ? parts[index] : null;
+    }
+
+    /** Applies groups [from, to) by halving until a range fits one batch. */
+    private final class ApplyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map.Entry<String, List<Integer>>> groups;
+        private final int from;
+        private final int to;
+        private final List<LedgerRecord> page;
+        private final long firstSequence;
+
+        ApplyTask(List<Map.Entry<String, List<Integer>>> groups, int from, int to,
+                List<LedgerRecord> page, long firstSequence) {
+            this.groups = groups;
+            this.from = from;
+            this.to = to;
+            this.page = page;
+            this.firstSequence = firstSequence;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > APPLY_BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ApplyTask(groups, from, mid, page, firstSequence),
+                        new ApplyTask(groups, mid, to, page, firstSequence));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Map.Entry<String, List<Integer>> group = groups.get(i);
+                applyGroup(group.getKey(), group.getValue(), page, firstSequence);
+            }
+        }
+    }
+
+    /**
+     * Projected shipments as of a ledger sequence number per shard. The
+     * shipments in a checkpoint are never changed by the projector
+     * afterwards.
+     */
+    public static class Checkpoint {
+
+        private final long[] shardSequences;
+        private final long sequence;
+        private final Map<String, Shipment> shipments;
+        private final Map<String, Long> shipmentSequences;
+
+        public Checkpoint(long sequence, Map<String, Shipment> shipments) {
+            this(sequence, shipments, Collections.emptyMap());
+        }
+
+        /**
+         * A checkpoint of a single ledger.
+         *
+         * @param shipmentSequences per shipment, the ledger size its state
+         *                          reflects when that is beyond sequence
+         */
+        public Checkpoint(long sequence, Map<String, Shipment> shipments, Map<String, Long> shipmentSequences) {
+            this(new long[] {sequence}, shipments, shipmentSequences);
+        }
+
+        /**
+         * @param shardSequences    per shard, the number of its entries reflected
+         * @param shipmentSequences per shipment, the size of its shard its
+         *                          state reflects when that is beyond the
+         *                          shard's sequence
+         */
+        public Checkpoint(long[] shardSequences, Map<String, Shipment> shipments,
+                Map<String, Long> shipmentSequences) {
+            this.shardSequences = shardSequences.clone();
+            long total = 0;
+            for (long shardSequence : shardSequences) {
+                total += shardSequence;
+            }
+            this.sequence = total;
+            this.shipments = Collections.unmodifiableMap(shipments);
+            this.shipmentSequences = Collections.unmodifiableMap(shipmentSequences);
+        }
+
+        /** Number of ledger entries the checkpoint reflects, summed over the shards. */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /** Number of entries of each shard the checkpoint reflects. */
+        public long[] getShardSequences() {
+            return shardSequences.clone();
+        }
+
+        public Map<String, Shipment> getShipments() {
+            return shipments;
+        }
+
+        public Map<String, Long> getShipmentSequences() {
+            return shipmentSequences;
+        }
+    }
+}
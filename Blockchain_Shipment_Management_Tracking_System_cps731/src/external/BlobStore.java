@@ -0,0 +1,225 @@
+package external;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import model.Sha256;
+
+/**
+ * File-backed, content-addressed blob store for off-chain document content.
+ *
+ * A blob lives at root/sha256/ab/cd/<hash>, where hash is the SHA-256 of its
+ * bytes and ab/cd are the first two byte pairs of the hash (keeps
+ * directories small). Blobs are written to a temp file next to their final
+ * place, forced to disk and renamed, so readers never see a half-written
+ * blob. Storing the same bytes twice writes them once.
+ *
+ * Streams are stored and verified chunk by chunk through one fixed-size
+ * buffer, so memory use is bounded by the chunk size, not the blob size.
+ */
+public class BlobStore {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final int chunkSize;
+
+    public BlobStore(Path root) throws IOException {
+        this(root, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BlobStore(Path root, int chunkSize) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.root = root;
+        this.chunkSize = chunkSize;
+        Files.createDirectories(root.resolve("sha256"));
+    }
+
+    /**
+     * Store content and return its SHA-256 (hex), which is also its key.
+     */
+    public String put(byte[] content) {
+        String hash = Sha256.toHex(Sha256.digest(content));
+        put(hash, ByteBuffer.wrap(content));
+        return hash;
+    }
+
+    /**
+     * Store content under a hash the caller already computed.
+     *
+     * @return true if the blob was written, false if it was already stored
+     */
+    boolean put(String hash, ByteBuffer content) {
+        Path target = pathFor(hash);
+        if (Files.exists(target)) {
+            return false; // same bytes already stored
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+                out.force(true);
+            }
+            moveIntoPlace(temp, target);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store blob " + hash, e);
+        }
+    }
+
+    /**
+     * Store everything read from in, hashing each chunk as it is written to
+     * a temp file. The key is only known at the end, so the temp file lives
+     * in the store root and is renamed into place once the hash is final.
+     *
+     * @return the SHA-256 (hex) of the streamed bytes, which is its key
+     */
+    public String put(ReadableByteChannel in) {
+        MessageDigest md = Sha256.digester();
+        ByteBuffer buf = ByteBuffer.allocateDirect(chunkSize);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(root, "upload", ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (in.read(buf) >= 0) {
+                    buf.flip();
+                    md.update(buf.duplicate());
+                    while (buf.hasRemaining()) {
+                        out.write(buf);
+                    }
+                    buf.clear();
+                }
+                out.force(true);
+            }
+            String hash = Sha256.toHex(md.digest());
+            Path target = pathFor(hash);
+            if (Files.exists(target)) {
+                Files.delete(temp); // same bytes already stored
+            } else {
+                Files.createDirectories(target.getParent());
+                moveIntoPlace(temp, target);
+            }
+            return hash;
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Could not store streamed blob", e);
+        }
+    }
+
+    /**
+     * True if the blob's bytes still hash to expectedHex, re-reading the
+     * file chunk by chunk.
+     */
+    public boolean verify(String hash, String expectedHex) {
+        Path path = pathFor(hash);
+        if (expectedHex == null || !Files.exists(path)) {
+            return false;
+        }
+        MessageDigest md = Sha256.digester();
+        ByteBuffer buf = ByteBuffer.allocateDirect(chunkSize);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (in.read(buf) >= 0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read blob " + hash, e);
+        }
+        return expectedHex.equals(Sha256.toHex(md.digest()));
+    }
+
+    /** Size of the blob in bytes, or -1 if missing. */
+    public long size(String hash) {
+        try {
+            Path path = pathFor(hash);
+            return Files.exists(path) ? Files.size(path) : -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Store a string as UTF-8 and return its key. */
+    public String putString(String content) {
+        return put(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Bytes of the blob, or null if there is no blob with that key. */
+    public byte[] get(String hash) {
+        Path path = pathFor(hash);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read blob " + hash, e);
+        }
+    }
+
+    /** Blob decoded as UTF-8, or null if missing. */
+    public String getString(String hash) {
+        byte[] bytes = get(hash);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String hash) {
+        return Files.exists(pathFor(hash));
+    }
+
+    /** Where the blob with this key lives: root/sha256/ab/cd/hash. */
+    public Path pathFor(String hash) {
+        if (hash == null || hash.length() < 4) {
+            throw new IllegalArgumentException("Not a blob hash: " + hash);
+        }
+        return root.resolve("sha256").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // best effort clean-up of a failed upload
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // another writer stored the same blob first; identical bytes, keep theirs
+            Files.deleteIfExists(temp);
+            if (!Files.exists(target)) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package external;
+
+import java.nio.ByteBuffer;
+
+import model.Sha256;
+
+/**
+ * Header of a sealed ledger block.
+ *
+ * A block covers a contiguous range of ledger entries
+ * [firstSequence, firstSequence + transactionCount), commits to them through
+ * their Merkle root and links to the previous block through its hash.
+ * The block hash only covers this header, so sealing a new block never
+ * rehashes the chain behind it.
+ */
+public class Block {
+
+    /** previousHash of the first block in the chain. */
+    public static final String GENESIS_HASH =
+            "0000000000000000000000000000000000000000000000000000000000000000";
+
+    private static final int ENCODED_BYTES = 4 + 4 + 4 + 8 + 32 + 32;
+
+    private final int height;
+    private final int firstSequence;
+    private final int transactionCount;
+    private final String previousHash;
+    private final String merkleRoot;
+    private final long timestamp;
+    private final String hash;
+
+    public Block(int height, int firstSequence, int transactionCount,
+            String previousHash, String merkleRoot, long timestamp) {
+        this.height = height;
+        this.firstSequence = firstSequence;
+        this.transactionCount = transactionCount;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.timestamp = timestamp;
+        this.hash = computeHash(height, firstSequence, transactionCount, previousHash, merkleRoot, timestamp);
+    }
+
+    /** SHA-256 over the header fields. */
+    public static String computeHash(int height, int firstSequence, int transactionCount,
+            String previousHash, String merkleRoot, long timestamp) {
+        String header = height + "|" + firstSequence + "|" + transactionCount + "|"
+                + previousHash + "|" + merkleRoot + "|" + timestamp;
+        return Sha256.hashHex(header);
+    }
+
+    /** Fixed-size binary form of the header, used by the durable block log. */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(ENCODED_BYTES);
+        buf.putInt(height).putInt(firstSequence).putInt(transactionCount).putLong(timestamp);
+        buf.put(Sha256.fromHex(previousHash)).put(Sha256.fromHex(merkleRoot));
+        return buf.array();
+    }
+
+    /** Rebuild a header written by toBytes(); its hash is recomputed. */
+    public static Block fromBytes(ByteBuffer buf) {
+        int height = buf.getInt();
+        int firstSequence = buf.getInt();
+        int transactionCount = buf.getInt();
+        long timestamp = buf.getLong();
+        byte[] previous = new byte[32];
+        byte[] root = new byte[32];
+        buf.get(previous).get(root);
+        return new Block(height, firstSequence, transactionCount,
+                Sha256.toHex(previous), Sha256.toHex(root), timestamp);
+    }
+
+    /** True if the stored hash still matches the header fields. */
+    public boolean hasValidHash() {
+        return hash.equals(computeHash(height, firstSequence, transactionCount, previousHash, merkleRoot, timestamp));
+    }
+
+    // --- getters ---
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFirstSequence() {
+        return firstSequence;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public String getPreviousHash() {
+        return previousHash;
+    }
+
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Block #" + height + " [" + transactionCount + " tx] " + hash;
+    }
+}
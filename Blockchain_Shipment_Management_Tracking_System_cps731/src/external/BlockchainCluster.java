@@ -0,0 +1,393 @@
+package external;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several BlockchainNetwork nodes in one JVM, kept identical by
+ * leader-based log replication over a ClusterTransport.
+ *
+ * The cluster object is itself node 0, the leader, so a
+ * BlockchainNetworkGateway can target it like a single network. Every
+ * entry the leader appends and every block it seals goes into a
+ * replication log that is shipped to the followers in order; followers
+ * take the leader's commit times and seal with its timestamp, so all nodes
+ * end up with the same block hashes and time index. storeTransaction and
+ * commitBlock return only once a majority of nodes (the leader included)
+ * hold the write, and fail after the commit timeout otherwise. A write
+ * that timed out is not rolled back: it stays on the leader and keeps
+ * replicating, so its outcome is unknown rather than failed (see
+ * CommitResult and commitTransaction). Lost messages are retransmitted and
+ * followers drop duplicates, so nodes converge despite loss and reordering.
+ *
+ * The leader is fixed: there is no election, and reads are served by the
+ * leader. Blocks sealed directly with sealBlock() replicate
+ * asynchronously.
+ */
+public class BlockchainCluster extends BlockchainNetwork {
+
+    public static final long DEFAULT_COMMIT_TIMEOUT_MILLIS = 5_000;
+
+    /** Outcome of a replicated write. */
+    public enum CommitResult {
+        /** A majority of nodes hold the write. */
+        COMMITTED,
+        /**
+         * The leader appended the write, but no majority confirmed it within
+         * the commit timeout. It stays on the leader's ledger and is still
+         * replicated, so it may commit later; sending it again would record
+         * it twice.
+         */
+        UNKNOWN,
+        /** Nothing was written, e.g. because the cluster is not connected. */
+        REJECTED
+    }
+
+    private static final int MAX_BATCH = 1_024;
+    private static final int TRIM_THRESHOLD = 4_096;
+    private static final int LATENCY_SAMPLES = 1 << 16;
+
+    private final ClusterTransport transport;
+    private final Peer[] peers;
+    private final Object replication = new Object();
+    private final long retransmitNanos;
+
+    // guarded by replication
+    private final List<Object> log = new ArrayList<>(); // LedgerRecord or Long seal timestamp
+    private long logBase = 0;
+    private long commitIndex = 0;
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long committed = 0;
+    private long timeouts = 0;
+
+    private volatile long commitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COMMIT_TIMEOUT_MILLIS);
+
+    /** Cluster of nodes without simulated latency or loss. */
+    public BlockchainCluster(int nodes) {
+        this(nodes, DEFAULT_BLOCK_SIZE, new ClusterTransport());
+    }
+
+    /**
+     * @param nodes     number of nodes including the leader
+     * @param blockSize entries per block, as for BlockchainNetwork
+     * @param transport link between the nodes; shut down by close()
+     */
+    public BlockchainCluster(int nodes, int blockSize, ClusterTransport transport) {
+        super(blockSize);
+        if (nodes < 1) {
+            throw new IllegalArgumentException("a cluster needs at least one node");
+        }
+        this.transport = transport;
+        this.peers = new Peer[nodes - 1];
+        for (int i = 0; i < peers.length; i++) {
+            peers[i] = new Peer(i + 1, new BlockchainNetwork(blockSize));
+        }
+        long retransmitMicros = Math.max(2_000, 2 * transport.getMaxRoundTripMicros());
+        this.retransmitNanos = TimeUnit.MICROSECONDS.toNanos(retransmitMicros);
+        if (peers.length > 0) {
+            transport.schedulePeriodic(0, this::retransmit, Math.max(1, retransmitMicros / 2_000));
+        }
+    }
+
+    @Override
+    public boolean connect() {
+        for (Peer peer : peers) {
+            peer.replica.connect();
+        }
+        return super.connect();
+    }
+
+    /** Append an entry and wait until a majority of nodes hold it. */
+    public CommitResult commitTransaction(String data) {
+        long start = System.nanoTime();
+        long index;
+        synchronized (this) {
+            if (!super.storeTransaction(data)) {
+                return CommitResult.REJECTED;
+            }
+            index = logEnd();
+        }
+        return awaitCommit(index, start) ? CommitResult.COMMITTED : CommitResult.UNKNOWN;
+    }
+
+    /**
+     * True if commitTransaction(data) is COMMITTED. false covers both
+     * REJECTED and UNKNOWN; callers that must tell them apart use
+     * commitTransaction.
+     */
+    @Override
+    public boolean storeTransaction(String data) {
+        return commitTransaction(data) == CommitResult.COMMITTED;
+    }
+
+    /**
+     * Commit a batch as one block and wait until a majority of nodes hold
+     * it. null if nothing was committed or, as for CommitResult.UNKNOWN, if
+     * no majority confirmed the block in time; the block then stays on the
+     * leader and may still commit.
+     */
+    @Override
+    public Block commitBlock(List<String> transactions) {
+        long start = System.nanoTime();
+        Block block;
+        long index;
+        synchronized (this) {
+            block = super.commitBlock(transactions);
+            if (block == null) {
+                return null;
+            }
+            index = logEnd();
+        }
+        return awaitCommit(index, start) ? block : null;
+    }
+
+    @Override
+    void onAppend(long sequence, String entry, long commitTime) {
+        synchronized (replication) {
+            log.add(new LedgerRecord(sequence, commitTime, entry));
+            advance();
+        }
+    }
+
+    @Override
+    void onSeal(Block block) {
+        synchronized (replication) {
+            log.add(block.getTimestamp());
+            advance();
+        }
+    }
+
+    /** After the log grew: commit it if the leader alone is a majority, and ship it. */
+    private void advance() {
+        updateCommitIndex();
+        for (Peer peer : peers) {
+            if (peer.sentAt == 0) {
+                sendAppend(peer);
+            }
+        }
+    }
+
+    private long logEnd() {
+        synchronized (replication) {
+            return logBase + log.size();
+        }
+    }
+
+    private boolean awaitCommit(long index, long startNanos) {
+        long deadline = startNanos + commitTimeoutNanos;
+        synchronized (replication) {
+            while (commitIndex < index) {
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0) {
+                    timeouts++;
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(replication, wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            latencies[(int) (committed++ % LATENCY_SAMPLES)] = (System.nanoTime() - startNanos) / 1_000;
+        }
+        return true;
+    }
+
+    // --- leader side of replication (all under the replication lock) ---
+
+    private void sendAppend(Peer peer) {
+        long end = logBase + log.size();
+        if (peer.nextIndex >= end) {
+            peer.sentAt = 0;
+            return;
+        }
+        long from = peer.nextIndex;
+        int start = (int) (from - logBase);
+        List<Object> batch = new ArrayList<>(log.subList(start, Math.min(log.size(), start + MAX_BATCH)));
+        peer.sentAt = System.nanoTime();
+        transport.send(0, peer.id, () -> peer.receive(from, batch));
+    }
+
+    private void onAck(Peer peer, long applied) {
+        synchronized (replication) {
+            // a stale ack never lowers matchIndex; after a gap the follower
+            // reports its real position, which is matchIndex
+            peer.matchIndex = Math.max(peer.matchIndex, applied);
+            peer.nextIndex = peer.matchIndex;
+            sendAppend(peer);
+            updateCommitIndex();
+            trimLog();
+        }
+    }
+
+    private void retransmit() {
+        synchronized (replication) {
+            long now = System.nanoTime();
+            for (Peer peer : peers) {
+                if (peer.sentAt != 0 && now - peer.sentAt > retransmitNanos) {
+                    peer.nextIndex = peer.matchIndex;
+                    sendAppend(peer);
+                }
+            }
+        }
+    }
+
+    /** Highest log index held by a majority of nodes. */
+    private void updateCommitIndex() {
+        long[] match = new long[peers.length + 1];
+        match[0] = logBase + log.size();
+        for (int i = 0; i < peers.length; i++) {
+            match[i + 1] = peers[i].matchIndex;
+        }
+        Arrays.sort(match);
+        long majority = match[match.length - (match.length / 2 + 1)];
+        if (majority > commitIndex) {
+            commitIndex = majority;
+            replication.notifyAll();
+        }
+    }
+
+    /** Drop the log prefix every follower already holds. */
+    private void trimLog() {
+        long min = logBase + log.size();
+        for (Peer peer : peers) {
+            min = Math.min(min, peer.matchIndex);
+        }
+        if (min - logBase >= TRIM_THRESHOLD) {
+            log.subList(0, (int) (min - logBase)).clear();
+            logBase = min;
+        }
+    }
+
+    /** A follower node and the leader's view of its progress. */
+    private final class Peer {
+        final int id;
+        final BlockchainNetwork replica;
+        // leader state, guarded by replication
+        long nextIndex;
+        long matchIndex;
+        long sentAt; // nanoTime of the unacknowledged send, 0 if none
+        // follower state, guarded by this
+        private long applied;
+
+        Peer(int id, BlockchainNetwork replica) {
+            this.id = id;
+            this.replica = replica;
+        }
+
+        /** Runs on the follower: apply what is new, ignore duplicates, report progress. */
+        void receive(long from, List<Object> batch) {
+            long ack;
+            synchronized (this) {
+                if (from <= applied) {
+                    for (int i = (int) (applied - from); i < batch.size(); i++) {
+                        Object op = batch.get(i);
+                        if (op instanceof LedgerRecord) {
+                            LedgerRecord record = (LedgerRecord) op;
+                            replica.appendReplicated(record.getEntry(), record.getTimestamp());
+                        } else {
+                            replica.sealReplicated((Long) op);
+                        }
+                        applied++;
+                    }
+                }
+                ack = applied;
+            }
+            transport.send(id, 0, () -> onAck(this, ack));
+        }
+    }
+
+    // --- cluster view and stats ---
+
+    public int getNodeCount() {
+        return peers.length + 1;
+    }
+
+    /** Node by id; 0 is the leader (this cluster). */
+    public BlockchainNetwork getNode(int id) {
+        return id == 0 ? this : peers[id - 1].replica;
+    }
+
+    public ClusterTransport getTransport() {
+        return transport;
+    }
+
+    public void setCommitTimeoutMillis(long millis) {
+        this.commitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /** Number of replication log records (entries and seals) held by a majority. */
+    public long getCommitIndex() {
+        synchronized (replication) {
+            return commitIndex;
+        }
+    }
+
+    /** Writes that returned successfully. */
+    public long getCommittedCount() {
+        synchronized (replication) {
+            return committed;
+        }
+    }
+
+    /** Writes that gave up waiting for a majority. */
+    public long getTimeoutCount() {
+        synchronized (replication) {
+            return timeouts;
+        }
+    }
+
+    /**
+     * Commit latency in microseconds at the given percentile (0-100),
+     * over the most recent writes; 0 if none have committed.
+     */
+    public long getCommitLatencyMicros(double percentile) {
+        long[] sample;
+        synchronized (replication) {
+            sample = Arrays.copyOf(latencies, (int) Math.min(committed, LATENCY_SAMPLES));
+        }
+        if (sample.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sample);
+        int rank = (int) Math.ceil(percentile / 100.0 * sample.length) - 1;
+        return sample[Math.max(0, Math.min(sample.length - 1, rank))];
+    }
+
+    /**
+     * Wait until every follower holds the whole replication log, e.g. to
+     * compare nodes in tests. Isolated followers never catch up.
+     *
+     * @return false if that did not happen within timeoutMillis
+     */
+    public boolean awaitReplication(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            synchronized (replication) {
+                long end = logBase + log.size();
+                boolean done = true;
+                for (Peer peer : peers) {
+                    done &= peer.matchIndex >= end;
+                }
+                if (done) {
+                    return true;
+                }
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /** Close the leader's logs and stop the transport. */
+    @Override
+    public void close() throws IOException {
+        transport.shutdown();
+        super.close();
+    }
+}
@@ -1,19 +1,202 @@
 package external;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import model.Sha256;
 
 /**
  * Very simple in-memory blockchain stub.
- * It just keeps a list of String "entries" that represent transactions/blocks.
+ * Transactions are kept as String entries in ledger order and batched into
+ * hash-chained blocks: every blockSize entries the pending ones are sealed
+ * into a Block carrying their Merkle root and the hash of the previous block.
+ * Entries live on the heap by default, or in SegmentLogs when opened with
+ * open(directory, blockSize) so the ledger survives a restart.
+ * The shipment index is brought up to date lazily, by the first shipment
+ * lookup after entries were appended, so opening a persistent ledger reads
+ * block headers only and never decodes the entries.
+ * Every entry gets a commit time that never goes backwards along the
+ * ledger, and each block keeps the min/max commit time of its entries as a
+ * sparse time index for queryLedgerByTimeRange.
+ * Opened in Bloom lookup mode, a persistent network keeps a Bloom filter of
+ * the shipment IDs in each sealed block instead of the in-memory shipment
+ * index, and shipment lookups read only the blocks whose filter might
+ * match. Each stored filter records the false-positive rate it was built
+ * at; filters built at another rate are rebuilt on open.
+ * Ledger access is synchronized so a background committer (see the
+ * gateway's group-commit mode) can write while controllers read.
+ * On the heap ledger storeTransaction never takes the lock: a writer
+ * appends to a ConcurrentLedger and returns as soon as its entry is
+ * published there (it only waits for writers that claimed earlier slots to
+ * fill them). Indexing and sealing happen asynchronously, in batched
+ * passes under the lock on the common fork/join pool. Every read under the
+ * lock first integrates whatever is published but not yet indexed, so a
+ * writer still reads its own writes and readers see every store that
+ * returned before them.
  * This is enough to support the controllers + gateway and to demonstrate the
  * design patterns in your project.
  */
 public class BlockchainNetwork {
 
-    private final List<String> ledger = new ArrayList<>();
-    private boolean connected = false;
+    public static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static final byte BLOOM_HAS_UNINDEXED = 1;
+
+    // blocks checked per fork/join leaf task in validateChain
+    private static final int VALIDATE_BATCH = 256;
+    // entries read per lock acquisition by a time-range stream
+    private static final int SCAN_CHUNK = 256;
+
+    /** Progress of a chain validation; called from pool threads, possibly concurrently. */
+    public interface ProgressListener {
+        void onProgress(long validated, long total);
+    }
+
+    private final List<String> ledger;
+    private final ConcurrentLedger heapLedger; // null for a persistent ledger
+    private final ShipmentIndex shipmentIndex; // null in Bloom lookup mode
+    private int indexedCount = 0; // entries added to shipmentIndex so far
+    private final List<Block> blocks = new ArrayList<>();
+    private final Map<String, Block> blocksByHash = new HashMap<>();
+    private final int blockSize;
+    private final SegmentLog transactionLog;
+    private final SegmentLog blockLog;
+    private final LogBackedLedger logLedger;
+    private final SegmentLog bloomLog;
+    private final double bloomFalsePositiveRate; // 0 = no Bloom filters
+    private final List<BloomFilter> blockBlooms = new ArrayList<>();
+    private final BitSet blocksWithUnindexed = new BitSet(); // entries without a shipment ID
+    private long bloomBlocksRead = 0;
+    private long bloomBlocksSkipped = 0;
+    private long[] entryTimes = new long[1024]; // commit time per entry, heap ledger only
+    private long[] blockMinTimes = new long[64];
+    private long[] blockMaxTimes = new long[64];
+    private long lastCommitTime = 0;
+    private String ledgerFingerprint; // see fingerprint()
+    private int sealedCount = 0;
+    private volatile int ledgerSize = 0; // entries indexed and visible to readers
+    private final AtomicInteger integrationRequests = new AtomicInteger();
+    private volatile Throwable integrationFailure; // set when an integration pass throws
+    private volatile boolean connected = false;
+
+    public BlockchainNetwork() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /** @param blockSize number of pending entries that triggers sealing a block */
+    public BlockchainNetwork(int blockSize) {
+        this(blockSize, null, null);
+    }
+
+    /**
+     * Network whose entries and block headers are persisted in segment logs.
+     * Existing records are picked up: block headers are decoded; entries are
+     * only indexed when the first shipment lookup needs them.
+     */
+    public BlockchainNetwork(int blockSize, SegmentLog transactionLog, SegmentLog blockLog) {
+        this(blockSize, transactionLog, blockLog, null, 0.0, false);
+    }
+
+    /**
+     * Persistent network that also keeps a Bloom filter of shipment IDs per
+     * block in bloomLog, built at the given false-positive rate; filters
+     * missing for existing blocks, or built at another rate, are rebuilt
+     * from their entries.
+     *
+     * @param bloomLookups true to skip the in-memory shipment index and
+     *                     answer shipment lookups through the filters
+     */
+    public BlockchainNetwork(int blockSize, SegmentLog transactionLog, SegmentLog blockLog,
+            SegmentLog bloomLog, double falsePositiveRate, boolean bloomLookups) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1");
+        }
+        if ((transactionLog == null) != (blockLog == null)) {
+            throw new IllegalArgumentException("transaction and block logs go together");
+        }
+        this.blockSize = blockSize;
+        this.transactionLog = transactionLog;
+        this.blockLog = blockLog;
+        if (bloomLog != null && (transactionLog == null || falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0)) {
+            throw new IllegalArgumentException("Bloom filters need a persistent ledger and a rate in (0, 1)");
+        }
+        if (bloomLookups && bloomLog == null) {
+            throw new IllegalArgumentException("Bloom lookups need a Bloom filter log");
+        }
+        this.logLedger = transactionLog == null ? null : new LogBackedLedger(transactionLog);
+        this.heapLedger = transactionLog == null ? new ConcurrentLedger() : null;
+        this.ledger = transactionLog == null ? heapLedger : logLedger;
+        this.bloomLog = bloomLog;
+        this.bloomFalsePositiveRate = bloomLog == null ? 0.0 : falsePositiveRate;
+        this.shipmentIndex = bloomLookups ? null : new ShipmentIndex();
+
+        if (transactionLog != null) {
+            for (long i = 0; i < blockLog.size(); i++) {
+                Block block = Block.fromBytes(blockLog.read(i));
+                blocks.add(block);
+                blocksByHash.put(block.getHash(), block);
+            }
+            Block latest = latestBlock();
+            sealedCount = latest == null ? 0 : latest.getFirstSequence() + latest.getTransactionCount();
+            ledgerSize = ledger.size();
+            for (Block block : blocks) {
+                indexBlockTimes(block);
+            }
+            if (bloomLog != null) {
+                loadBlooms();
+            }
+            lastCommitTime = ledgerSize == 0 ? 0 : commitTimeAt(ledgerSize - 1);
+        }
+    }
+
+    /**
+     * Open a durable network stored under directory
+     * (directory/transactions and directory/blocks). Startup maps the logs
+     * and decodes block headers only, whatever the ledger's size.
+     */
+    public static BlockchainNetwork open(Path directory, int blockSize) throws IOException {
+        SegmentLog transactions = SegmentLog.open(directory.resolve("transactions"));
+        SegmentLog blockHeaders = SegmentLog.open(directory.resolve("blocks"));
+        return new BlockchainNetwork(blockSize, transactions, blockHeaders);
+    }
+
+    /**
+     * Open a durable network in Bloom lookup mode: no shipment index is
+     * kept at all, and shipment lookups read only the blocks whose Bloom
+     * filter (built at falsePositiveRate) might contain the shipment ID.
+     * Pending entries are always scanned. The filters live in
+     * directory/blooms, which only this mode creates; blocks sealed while
+     * the network was opened without it get theirs here.
+     */
+    public static BlockchainNetwork openCold(Path directory, int blockSize, double falsePositiveRate)
+            throws IOException {
+        SegmentLog transactions = SegmentLog.open(directory.resolve("transactions"));
+        SegmentLog blockHeaders = SegmentLog.open(directory.resolve("blocks"));
+        SegmentLog blooms = SegmentLog.open(directory.resolve("blooms"));
+        return new BlockchainNetwork(blockSize, transactions, blockHeaders, blooms, falsePositiveRate, true);
+    }
 
     /** Connect to the (simulated) blockchain network. */
     public boolean connect() {
@@ -31,51 +214,988 @@ public class BlockchainNetwork {
     }
 
     /**
-     * Store a new transaction/block entry on the ledger.
+     * Store a new transaction entry on the ledger.
+     * Once blockSize entries are pending they are sealed into a new block.
+     * Safe from any number of threads; on the heap ledger the append takes
+     * no lock and the entry is indexed asynchronously (see the class
+     * comment), while every later read still sees it.
      * In reality this would include consensus, validation, etc.
+     *
+     * @throws IllegalStateException if an earlier integration pass failed
      */
     public boolean storeTransaction(String data) {
         if (!connected) {
             return false;
         }
-        ledger.add(data);
+        if (heapLedger == null || Thread.holdsLock(this)) {
+            synchronized (this) {
+                append(data);
+                if (ledgerSize - sealedCount >= blockSize) {
+                    sealBlock();
+                }
+            }
+            return true;
+        }
+        checkIntegration();
+        int sequence = heapLedger.append(data, System.currentTimeMillis());
+        // readers integrate up to the published watermark, so once it covers
+        // this entry every later read sees it
+        heapLedger.awaitPublished(sequence);
+        if (integrationRequests.getAndIncrement() == 0) {
+            ForkJoinPool.commonPool().execute(this::drainIntegrationRequests);
+        }
         return true;
     }
 
     /**
-     * Basic "block validation" stub.
-     * For now we just check that we're connected and the hash string is not empty.
+     * Integration passes for lock-free writers, run off their threads until
+     * no writer has asked for another one. A writer that asks while a pass
+     * is running gets one more pass after it, which covers its entry.
+     */
+    private void drainIntegrationRequests() {
+        int missed = 1;
+        try {
+            do {
+                integrateAllPublished();
+                missed = integrationRequests.addAndGet(-missed);
+            } while (missed != 0);
+        } catch (RuntimeException | Error e) {
+            // recorded in integrationFailure; later stores and reads throw it
+        } finally {
+            if (missed != 0) {
+                integrationRequests.addAndGet(-missed);
+            }
+        }
+    }
+
+    /**
+     * Append a batch of entries and seal them as one block, so the whole
+     * batch costs a single seal (and a single fsync on a persistent ledger).
+     * Entries that were already pending go into the same block; on the heap
+     * ledger the batch takes consecutive sequence numbers, so entries stored
+     * concurrently land before or after it, never inside.
+     *
+     * @return the new block, or null if not connected or the batch is empty
+     */
+    public synchronized Block commitBlock(List<String> transactions) {
+        if (!connected || transactions.isEmpty()) {
+            return null;
+        }
+        if (heapLedger == null) {
+            for (String data : transactions) {
+                append(data);
+            }
+        } else {
+            appendToHeap(transactions, Math.max(lastCommitTime, System.currentTimeMillis()));
+        }
+        // not sealBlock(): catching up could pull later stores into the batch's block
+        return seal(System.currentTimeMillis());
+    }
+
+    private void append(String data) {
+        append(data, Math.max(lastCommitTime, System.currentTimeMillis()));
+    }
+
+    private void append(String data, long commitTime) {
+        if (logLedger != null) {
+            logLedger.add(data, commitTime);
+            integrate(data, commitTime);
+        } else {
+            appendToHeap(List.of(data), commitTime);
+        }
+    }
+
+    /**
+     * Append entries to the heap ledger under the lock and integrate them.
+     * Entries lock-free writers published ahead of them are integrated (and
+     * sealed) first, as an integration pass would; entries published after
+     * them are left to the next pass or read.
+     */
+    private void appendToHeap(List<String> entries, long commitTime) {
+        checkIntegration();
+        int first = heapLedger.appendAll(entries, commitTime);
+        int end = first + entries.size();
+        heapLedger.awaitPublished(end - 1);
+        integratePublished(first, true);
+        integratePublished(end, false);
+    }
+
+    /**
+     * Integrate every published entry. If it fails, entries past the
+     * failure can never be integrated in order, so the failure is kept and
+     * every later store and read throws it.
      */
-    public boolean validateBlock(String blockHash) {
+    private void integrateAllPublished() {
+        synchronized (this) {
+            try {
+                integratePublished(heapLedger.size(), true);
+            } catch (RuntimeException | Error e) {
+                integrationFailure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Bring the heap ledger's index up to everything published, for a read
+     * under the lock: stores that returned before the read are visible to
+     * it even if no integration pass has reached them yet.
+     */
+    private void catchUp() {
+        if (heapLedger != null && ledgerSize < heapLedger.size()) {
+            checkIntegration();
+            integrateAllPublished();
+        }
+    }
+
+    /**
+     * Index the heap ledger's published entries in order up to end,
+     * clamping their commit times so they never go backwards.
+     *
+     * @param sealFullBlocks seal whenever blockSize entries are pending, as
+     *                       storeTransaction does
+     */
+    private void integratePublished(int end, boolean sealFullBlocks) {
+        while (ledgerSize < end) {
+            int position = ledgerSize;
+            integrate(heapLedger.get(position), Math.max(lastCommitTime, heapLedger.timeAt(position)));
+            if (sealFullBlocks && ledgerSize - sealedCount >= blockSize) {
+                seal(System.currentTimeMillis());
+            }
+        }
+    }
+
+    /** Fail instead of reading past entries a failed integration pass left behind. */
+    private void checkIntegration() {
+        Throwable failure = integrationFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Ledger integration failed", failure);
+        }
+    }
+
+    /** Index the entry appended at position ledgerSize and make it visible. */
+    private void integrate(String data, long commitTime) {
+        int position = ledgerSize;
+        if (logLedger == null) {
+            if (position == entryTimes.length) {
+                entryTimes = Arrays.copyOf(entryTimes, position * 2);
+            }
+            entryTimes[position] = commitTime;
+        }
+        lastCommitTime = Math.max(lastCommitTime, commitTime);
+        onAppend(position, data, commitTime);
+        ledgerSize = position + 1;
+    }
+
+    private long commitTimeAt(int position) {
+        if (logLedger == null) {
+            return entryTimes[position];
+        }
+        long time = logLedger.timestampAt(position);
+        if (time == 0) {
+            // written before entries carried a commit time: use the block's
+            Block latest = latestBlock();
+            if (position < sealedCount) {
+                time = blockContaining(position).getTimestamp();
+            } else if (latest != null) {
+                time = latest.getTimestamp();
+            }
+        }
+        return time;
+    }
+
+    private void indexBlockTimes(Block block) {
+        int height = block.getHeight();
+        if (height == blockMinTimes.length) {
+            blockMinTimes = Arrays.copyOf(blockMinTimes, height * 2);
+            blockMaxTimes = Arrays.copyOf(blockMaxTimes, height * 2);
+        }
+        int first = block.getFirstSequence();
+        blockMinTimes[height] = commitTimeAt(first);
+        blockMaxTimes[height] = commitTimeAt(first + block.getTransactionCount() - 1);
+    }
+
+    /**
+     * Seal all pending entries into a new block.
+     * Only the new block's Merkle root and header are hashed; earlier blocks
+     * are linked through their stored hash and never rehashed.
+     *
+     * @return the new block, or null if nothing was pending
+     */
+    public synchronized Block sealBlock() {
+        catchUp();
+        return seal(System.currentTimeMillis());
+    }
+
+    private Block seal(long timestamp) {
+        int count = ledgerSize - sealedCount;
+        if (count == 0) {
+            return null;
+        }
+        Block previous = latestBlock();
+        String merkleRoot = Sha256.toHex(MerkleTree.root(ledger.subList(sealedCount, ledgerSize)));
+        Block block = new Block(blocks.size(), sealedCount, count,
+                previous == null ? Block.GENESIS_HASH : previous.getHash(),
+                merkleRoot, timestamp);
+
+        if (transactionLog != null) {
+            // entries must be durable before the header that commits to them
+            transactionLog.sync();
+            blockLog.append(block.toBytes());
+            blockLog.sync();
+        }
+
+        blocks.add(block);
+        blocksByHash.put(block.getHash(), block);
+        indexBlockTimes(block);
+        if (bloomLog != null) {
+            // written after the header; lost ones are rebuilt on open
+            appendBloom(block);
+        }
+        sealedCount = ledgerSize;
+        onSeal(block);
+        return block;
+    }
+
+    // --- Bloom filters ---
+
+    /**
+     * Decode stored filters and rebuild any the log is missing (e.g. lost in
+     * a crash or sealed without filters) or that were built at another
+     * false-positive rate. Those are dropped from the log with everything
+     * after them and appended again.
+     */
+    private void loadBlooms() {
+        long stored = Math.min(bloomLog.size(), blocks.size());
+        for (int h = 0; h < stored; h++) {
+            ByteBuffer record = bloomLog.read(h);
+            byte flags = record.get();
+            if (record.getDouble() != bloomFalsePositiveRate) {
+                stored = h;
+                break;
+            }
+            if (flags == BLOOM_HAS_UNINDEXED) {
+                blocksWithUnindexed.set(h);
+            }
+            blockBlooms.add(BloomFilter.readFrom(record));
+        }
+        if (stored < bloomLog.size()) {
+            bloomLog.truncate(stored);
+        }
+        for (int h = (int) stored; h < blocks.size(); h++) {
+            appendBloom(blocks.get(h));
+        }
+    }
+
+    private void appendBloom(Block block) {
+        Set<String> ids = new HashSet<>();
+        boolean unindexed = false;
+        int first = block.getFirstSequence();
+        for (int p = first; p < first + block.getTransactionCount(); p++) {
+            String id = ShipmentIndex.extractShipmentId(ledger.get(p));
+            if (id == null) {
+                unindexed = true;
+            } else {
+                ids.add(id);
+            }
+        }
+        BloomFilter bloom = BloomFilter.of(ids, bloomFalsePositiveRate);
+        if (unindexed) {
+            blocksWithUnindexed.set(block.getHeight());
+        }
+        blockBlooms.add(bloom);
+        // [byte flags][double false-positive rate][filter]
+        ByteBuffer record = ByteBuffer.allocate(1 + 8 + bloom.byteSize());
+        record.put(unindexed ? BLOOM_HAS_UNINDEXED : 0).putDouble(bloomFalsePositiveRate);
+        bloom.writeTo(record);
+        bloomLog.append(record.flip());
+    }
+
+    /**
+     * Positions of entries matching match, reading only blocks whose Bloom
+     * filter might contain key (or that hold entries without a shipment ID)
+     * plus the pending entries. A null key reads only the latter.
+     */
+    private int[] scanPositions(String key, Predicate<String> match) {
+        int[] positions = new int[16];
+        int n = 0;
+        for (int h = 0; h < blocks.size(); h++) {
+            if (!blocksWithUnindexed.get(h) && (key == null || !blockBlooms.get(h).mightContain(key))) {
+                bloomBlocksSkipped++;
+                continue;
+            }
+            bloomBlocksRead++;
+            Block block = blocks.get(h);
+            int first = block.getFirstSequence();
+            for (int p = first; p < first + block.getTransactionCount(); p++) {
+                if (match.test(ledger.get(p))) {
+                    if (n == positions.length) {
+                        positions = Arrays.copyOf(positions, n * 2);
+                    }
+                    positions[n++] = p;
+                }
+            }
+        }
+        for (int p = sealedCount; p < ledgerSize; p++) {
+            if (match.test(ledger.get(p))) {
+                if (n == positions.length) {
+                    positions = Arrays.copyOf(positions, n * 2);
+                }
+                positions[n++] = p;
+            }
+        }
+        return Arrays.copyOf(positions, n);
+    }
+
+    /** True if shipment lookups go through per-block Bloom filters instead of the index. */
+    public boolean isBloomLookup() {
+        return shipmentIndex == null;
+    }
+
+    /** False-positive rate new Bloom filters are built for; 0 if there are none. */
+    public double getBloomFalsePositiveRate() {
+        return bloomFalsePositiveRate;
+    }
+
+    /** Blocks read by Bloom-filtered lookups so far. */
+    public synchronized long getBloomBlocksRead() {
+        return bloomBlocksRead;
+    }
+
+    /** Blocks Bloom-filtered lookups ruled out without reading them. */
+    public synchronized long getBloomBlocksSkipped() {
+        return bloomBlocksSkipped;
+    }
+
+    // --- replication (see BlockchainCluster) ---
+
+    /** Called under the lock after each entry is appended. */
+    void onAppend(long sequence, String entry, long commitTime) {
+    }
+
+    /** Called under the lock after each block is sealed. */
+    void onSeal(Block block) {
+    }
+
+    /** Append an entry shipped by a leader, with the leader's commit time; replicas seal only when told to. */
+    synchronized void appendReplicated(String entry, long commitTime) {
+        append(entry, commitTime);
+    }
+
+    /** Seal the pending entries with the leader's timestamp, so the block hashes match. */
+    synchronized Block sealReplicated(long timestamp) {
+        return seal(timestamp);
+    }
+
+    /**
+     * Validate a sealed block by its hash:
+     * - the header still hashes to blockHash,
+     * - the Merkle root matches the block's ledger entries,
+     * - it links to the hash of the block before it.
+     */
+    public synchronized boolean validateBlock(String blockHash) {
+        catchUp();
         if (!connected) {
             return false;
         }
-        return blockHash != null && !blockHash.trim().isEmpty();
+        if (blockHash == null || blockHash.trim().isEmpty()) {
+            return false;
+        }
+        Block block = blocksByHash.get(blockHash);
+        if (block == null || !block.hasValidHash()) {
+            return false;
+        }
+
+        int first = block.getFirstSequence();
+        String root = Sha256.toHex(MerkleTree.root(ledger.subList(first, first + block.getTransactionCount())));
+        if (!root.equals(block.getMerkleRoot())) {
+            return false;
+        }
+
+        String expectedPrevious = block.getHeight() == 0
+                ? Block.GENESIS_HASH
+                : blocks.get(block.getHeight() - 1).getHash();
+        return expectedPrevious.equals(block.getPreviousHash());
+    }
+
+    /** Validate the whole chain on the common fork/join pool. */
+    public ChainValidationReport validateChain() {
+        return validateChain(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Validate every sealed block. The chain is split into ranges whose
+     * header hashes and Merkle roots are checked in parallel on pool; the
+     * links between blocks (previous hash, height, entry range) are checked
+     * in a final sequential pass. Once a block fails, blocks above it are
+     * skipped, while lower ones are still checked so the report names the
+     * earliest failure.
+     *
+     * Writers are only held up while the block list is copied; blocks
+     * sealed after that are not part of the run.
+     *
+     * @param listener optional, told how many blocks have been checked
+     * @return the report, or null if not connected
+     */
+    public ChainValidationReport validateChain(ForkJoinPool pool, ProgressListener listener) {
+        long start = System.nanoTime();
+        Block[] chain;
+        List<String> entries;
+        synchronized (this) {
+            if (!connected) {
+                return null;
+            }
+            catchUp();
+            chain = blocks.toArray(new Block[0]);
+            // both ledgers can be read below their size without the lock
+            entries = ledger;
+        }
+
+        AtomicInteger firstFailure = new AtomicInteger(chain.length);
+        ChainValidationReport.Reason[] reasons = new ChainValidationReport.Reason[chain.length];
+        AtomicLong checked = new AtomicLong();
+        if (chain.length > 0) {
+            pool.invoke(new ValidateTask(chain, entries, 0, chain.length, firstFailure, reasons, checked, listener));
+        }
+
+        int failed = firstFailure.get();
+        for (int h = 0; h < failed; h++) {
+            Block block = chain[h];
+            Block previous = h == 0 ? null : chain[h - 1];
+            boolean linked = block.getHeight() == h
+                    && block.getPreviousHash().equals(previous == null ? Block.GENESIS_HASH : previous.getHash())
+                    && block.getFirstSequence() == (previous == null ? 0
+                            : previous.getFirstSequence() + previous.getTransactionCount());
+            if (!linked) {
+                failed = h;
+                reasons[h] = ChainValidationReport.Reason.LINK;
+            }
+        }
+        return new ChainValidationReport(chain.length, checked.get(), failed == chain.length ? -1 : failed,
+                failed == chain.length ? null : reasons[failed], System.nanoTime() - start);
+    }
+
+    /** Checks header hashes and Merkle roots of chain[from, to). */
+    private static final class ValidateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Block[] chain;
+        private final List<String> entries;
+        private final int from;
+        private final int to;
+        private final AtomicInteger firstFailure;
+        private final ChainValidationReport.Reason[] reasons;
+        private final AtomicLong checked;
+        private final ProgressListener listener;
+
+        ValidateTask(Block[] chain, List<String> entries, int from, int to, AtomicInteger firstFailure,
+                ChainValidationReport.Reason[] reasons, AtomicLong checked, ProgressListener listener) {
+            this.chain = chain;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.firstFailure = firstFailure;
+            this.reasons = reasons;
+            this.checked = checked;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (from >= firstFailure.get()) {
+                return; // everything here is above a known failure
+            }
+            if (to - from > VALIDATE_BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ValidateTask(chain, entries, from, mid, firstFailure, reasons, checked, listener),
+                        new ValidateTask(chain, entries, mid, to, firstFailure, reasons, checked, listener));
+                return;
+            }
+            int count = 0;
+            for (int h = from; h < to && h < firstFailure.get(); h++) {
+                ChainValidationReport.Reason reason = check(chain[h]);
+                count++;
+                if (reason != null) {
+                    reasons[h] = reason;
+                    firstFailure.accumulateAndGet(h, Math::min);
+                    break;
+                }
+            }
+            long done = checked.addAndGet(count);
+            if (listener != null) {
+                listener.onProgress(done, chain.length);
+            }
+        }
+
+        private ChainValidationReport.Reason check(Block block) {
+            if (!block.hasValidHash()) {
+                return ChainValidationReport.Reason.HEADER_HASH;
+            }
+            int first = block.getFirstSequence();
+            int count = block.getTransactionCount();
+            if (first < 0 || count < 1 || first + count > entries.size()) {
+                return ChainValidationReport.Reason.LINK;
+            }
+            String root = Sha256.toHex(MerkleTree.root(range(entries, first, count)));
+            return root.equals(block.getMerkleRoot()) ? null : ChainValidationReport.Reason.MERKLE_ROOT;
+        }
+    }
+
+    /** Read-only view of entries[from, from + count) without modification checks. */
+    private static List<String> range(List<String> entries, int from, int count) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return entries.get(from + index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
     }
 
     /**
      * Helper used by the gateway / controllers:
-     * return all ledger entries that contain the given shipmentId.
+     * return all ledger entries for the given shipmentId, in ledger order.
+     * Uses the shipment index, so the cost is O(matches); only entries in an
+     * unrecognised format still fall back to a substring check. In Bloom
+     * lookup mode only blocks that might hold the shipment are read.
      */
-    public List<String> queryLedger(String shipmentId) {
-        if (!connected) {
+    public synchronized List<String> queryLedger(String shipmentId) {
+        catchUp();
+        if (!connected || shipmentId == null || shipmentId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int[] positions = shipmentPositions(shipmentId);
+        List<String> matches = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            matches.add(ledger.get(pos));
+        }
+        return matches;
+    }
+
+    /** Like queryLedger, with each entry's sequence number and commit time. */
+    public synchronized List<LedgerRecord> queryLedgerRecords(String shipmentId) {
+        catchUp();
+        if (!connected || shipmentId == null || shipmentId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int[] positions = shipmentPositions(shipmentId);
+        List<LedgerRecord> matches = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            matches.add(new LedgerRecord(pos, commitTimeAt(pos), ledger.get(pos)));
+        }
+        return matches;
+    }
+
+    /** Ascending positions of the entries queryLedger returns. */
+    private int[] shipmentPositions(String shipmentId) {
+        ShipmentIndex shipmentIndex = index();
+        if (shipmentIndex == null) {
+            return scanPositions(shipmentId, entry -> {
+                String id = ShipmentIndex.extractShipmentId(entry);
+                return id == null ? entry.contains(shipmentId) : id.equals(shipmentId);
+            });
+        }
+
+        int[] unindexed = shipmentIndex.unindexedPositions();
+        int kept = 0;
+        for (int pos : unindexed) {
+            String entry = ledger.get(pos);
+            if (entry != null && entry.contains(shipmentId)) {
+                unindexed[kept++] = pos;
+            }
+        }
+        return ShipmentIndex.merge(shipmentIndex.positionsFor(shipmentId),
+                Arrays.copyOf(unindexed, kept));
+    }
+
+    /**
+     * Entries committed in [fromMillis, toMillis), in ledger order, optionally
+     * only those of one transaction type (null for all entries).
+     *
+     * The start is found by binary search over the blocks' max commit
+     * times, so earlier blocks are never read. The stream is lazy: entries
+     * are read a chunk at a time under the lock as it is consumed, up to the
+     * ledger size at the time of the call, and reading stops at the first
+     * entry committed at or after toMillis.
+     */
+    public Stream<LedgerRecord> queryLedgerByTimeRange(long fromMillis, long toMillis, Transaction.Type typeFilter) {
+        int start;
+        int end;
+        synchronized (this) {
+            if (!connected || fromMillis >= toMillis) {
+                return Stream.empty();
+            }
+            catchUp();
+            end = ledgerSize;
+            start = firstPositionAtOrAfter(fromMillis, end);
+        }
+        Iterator<LedgerRecord> records = new TimeRangeIterator(start, end, toMillis, typeFilter);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /** First position whose commit time is >= time (end if none). */
+    private int firstPositionAtOrAfter(long time, int end) {
+        int lo = 0;
+        int hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blockMaxTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int position = lo < blocks.size() ? blocks.get(lo).getFirstSequence() : sealedCount;
+        // at most one block (or the pending entries) to scan
+        while (position < end && commitTimeAt(position) < time) {
+            position++;
+        }
+        return position;
+    }
+
+    /** Reads [next, end) a chunk at a time until a commit time reaches toMillis. */
+    private final class TimeRangeIterator implements Iterator<LedgerRecord> {
+
+        private final int end;
+        private final long toMillis;
+        private final Transaction.Type typeFilter;
+        private final List<LedgerRecord> buffer = new ArrayList<>();
+        private int next;
+        private int buffered;
+        private boolean finished;
+
+        TimeRangeIterator(int start, int end, long toMillis, Transaction.Type typeFilter) {
+            this.next = start;
+            this.end = end;
+            this.toMillis = toMillis;
+            this.typeFilter = typeFilter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (buffered == buffer.size() && !finished) {
+                fill();
+            }
+            return buffered < buffer.size();
+        }
+
+        @Override
+        public LedgerRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffer.get(buffered++);
+        }
+
+        private void fill() {
+            buffer.clear();
+            buffered = 0;
+            synchronized (BlockchainNetwork.this) {
+                int stop = Math.min(end, next + SCAN_CHUNK);
+                // next block boundary at or after next
+                int block = blocks.size();
+                if (next < sealedCount) {
+                    block = blockContaining(next).getHeight();
+                    if (blocks.get(block).getFirstSequence() < next) {
+                        block++;
+                    }
+                }
+                for (; next < stop; next++) {
+                    if (block < blocks.size() && next == blocks.get(block).getFirstSequence()) {
+                        if (blockMinTimes[block] >= toMillis) {
+                            break; // the whole block is past the range
+                        }
+                        block++;
+                    }
+                    long time = commitTimeAt(next);
+                    if (time >= toMillis) {
+                        break;
+                    }
+                    String entry = ledger.get(next);
+                    if (typeFilter == null || typeFilter.matches(entry)) {
+                        buffer.add(new LedgerRecord(next, time, entry));
+                    }
+                }
+                if (next < stop) {
+                    finished = true;
+                }
+            }
+            if (next >= end) {
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * Merkle inclusion proof for the most recent sealed ledger entry equal
+     * to transaction. Pending entries have no block header to prove against
+     * yet; reading never seals them (see sealBlock).
+     *
+     * @return the proof, or null if the transaction is not in a sealed block
+     */
+    public synchronized MerkleProof getMerkleProof(String transaction) {
+        catchUp();
+        if (!connected || transaction == null) {
+            return null;
+        }
+        int position = lastSealedPositionOf(transaction);
+        if (position < 0) {
+            return null;
+        }
+        Block block = blockContaining(position);
+        byte[][][] levels = blockLevels(block);
+        return MerkleTree.proof(levels, position - block.getFirstSequence(), transaction,
+                block.getHash(), block.getMerkleRoot());
+    }
+
+    /**
+     * Inclusion proofs for every sealed ledger entry of a shipment, in
+     * ledger order; pending entries are left out. Each block's tree is
+     * built once, however many of its entries match.
+     */
+    public synchronized List<MerkleProof> getMerkleProofs(String shipmentId) {
+        catchUp();
+        if (!connected || shipmentId == null || shipmentId.isEmpty()) {
             return Collections.emptyList();
         }
-        if (shipmentId == null || shipmentId.isEmpty()) {
+        ShipmentIndex shipmentIndex = index();
+        int[] positions = shipmentIndex != null
+                ? shipmentIndex.positionsFor(shipmentId)
+                : scanPositions(shipmentId, entry -> shipmentId.equals(ShipmentIndex.extractShipmentId(entry)));
+        List<MerkleProof> proofs = new ArrayList<>(positions.length);
+        Block block = null;
+        byte[][][] levels = null;
+        for (int pos : positions) {
+            if (pos >= sealedCount) {
+                break;
+            }
+            if (block == null || pos >= block.getFirstSequence() + block.getTransactionCount()) {
+                block = blockContaining(pos);
+                levels = blockLevels(block);
+            }
+            proofs.add(MerkleTree.proof(levels, pos - block.getFirstSequence(), ledger.get(pos),
+                    block.getHash(), block.getMerkleRoot()));
+        }
+        return proofs;
+    }
+
+    /**
+     * Ledger entries of a shipment that are not in a sealed block yet, in
+     * ledger order. They have no inclusion proof until the next seal.
+     */
+    public synchronized List<String> getPendingEntries(String shipmentId) {
+        catchUp();
+        if (!connected || shipmentId == null || shipmentId.isEmpty()) {
             return Collections.emptyList();
         }
+        List<String> pending = new ArrayList<>();
+        for (int p = sealedCount; p < ledgerSize; p++) {
+            String entry = ledger.get(p);
+            if (shipmentId.equals(ShipmentIndex.extractShipmentId(entry))) {
+                pending.add(entry);
+            }
+        }
+        return pending;
+    }
 
-        List<String> matches = new ArrayList<>();
-        for (String entry : ledger) {
-            if (entry != null && entry.contains(shipmentId)) {
-                matches.add(entry);
+    /** Header of a sealed block, or null if no block has that hash. */
+    public synchronized Block getBlock(String blockHash) {
+        catchUp();
+        return blockHash == null ? null : blocksByHash.get(blockHash);
+    }
+
+    private int lastSealedPositionOf(String transaction) {
+        ShipmentIndex shipmentIndex = index();
+        if (shipmentIndex == null) {
+            int[] matches = scanPositions(ShipmentIndex.extractShipmentId(transaction), transaction::equals);
+            for (int i = matches.length - 1; i >= 0; i--) {
+                if (matches[i] < sealedCount) {
+                    return matches[i];
+                }
             }
+            return -1;
         }
-        return matches;
+        int[] candidates = shipmentIndex.positionsFor(ShipmentIndex.extractShipmentId(transaction));
+        if (candidates.length == 0) {
+            candidates = shipmentIndex.unindexedPositions();
+        }
+        for (int i = candidates.length - 1; i >= 0; i--) {
+            if (candidates[i] < sealedCount && transaction.equals(ledger.get(candidates[i]))) {
+                return candidates[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The shipment index, first extended over entries appended since the
+     * last lookup; null in Bloom lookup mode.
+     */
+    private ShipmentIndex index() {
+        if (shipmentIndex != null) {
+            for (; indexedCount < ledgerSize; indexedCount++) {
+                shipmentIndex.add(ledger.get(indexedCount), indexedCount);
+            }
+        }
+        return shipmentIndex;
+    }
+
+    /** Binary search for the sealed block whose range covers position. */
+    private Block blockContaining(int position) {
+        int lo = 0;
+        int hi = blocks.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blocks.get(mid).getFirstSequence() <= position) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return blocks.get(lo);
+    }
+
+    private byte[][][] blockLevels(Block block) {
+        int first = block.getFirstSequence();
+        return MerkleTree.levels(ledger.subList(first, first + block.getTransactionCount()));
+    }
+
+    /**
+     * Up to maxCount entries starting at sequence number from, in ledger
+     * order; empty once from reaches the end. Used to replay the ledger
+     * page by page without copying all of it.
+     */
+    public synchronized List<String> readLedger(long from, int maxCount) {
+        catchUp();
+        if (!connected || from < 0 || from >= ledgerSize || maxCount <= 0) {
+            return Collections.emptyList();
+        }
+        int start = (int) from;
+        int end = (int) Math.min(ledgerSize, from + maxCount);
+        return new ArrayList<>(ledger.subList(start, end));
+    }
+
+    /** Number of entries on the ledger, sealed or pending. */
+    public synchronized long getLedgerSize() {
+        catchUp();
+        return ledgerSize;
     }
 
-    /** Expose a copy of the whole ledger (read-only). */
-    public List<String> getLedgerSnapshot() {
-        return new ArrayList<>(ledger);
+    /**
+     * Cursor over the ledger as it is now, reading pageSize records at a
+     * time from sequence number from. Returns null if not connected.
+     */
+    public synchronized LedgerCursor openCursor(long from, int pageSize) {
+        catchUp();
+        if (!connected) {
+            return null;
+        }
+        if (from < 0 || from > ledgerSize) {
+            throw new IllegalArgumentException("No ledger position " + from + " (size " + ledgerSize + ")");
+        }
+        return new LedgerCursor(this, from, ledgerSize, pageSize, fingerprint());
+    }
+
+    /** Cursor over the whole ledger as it is now. */
+    public LedgerCursor openCursor(int pageSize) {
+        return openCursor(0, pageSize);
+    }
+
+    /**
+     * Resume the view a cursor's getResumeToken() was taken from.
+     * Returns null if not connected.
+     *
+     * @throws IllegalArgumentException if the token is not for this ledger
+     */
+    public synchronized LedgerCursor resumeCursor(String token) {
+        catchUp();
+        if (!connected) {
+            return null;
+        }
+        return LedgerCursor.resume(this, token, ledgerSize, fingerprint());
+    }
+
+    /**
+     * Identifies this ledger in cursor tokens: a hash of its first entry and
+     * that entry's commit time, which never change once appended (sealed or
+     * not). Empty for an empty ledger.
+     */
+    private String fingerprint() {
+        if (ledgerFingerprint == null && ledgerSize > 0) {
+            ledgerFingerprint = Sha256.hashHex(commitTimeAt(0) + "|" + ledger.get(0)).substring(0, 16);
+        }
+        return ledgerFingerprint == null ? "" : ledgerFingerprint;
+    }
+
+    /** Like readLedger, with each entry's sequence number and commit time. */
+    public synchronized List<LedgerRecord> readLedgerRecords(long from, int maxCount) {
+        catchUp();
+        if (!connected || from < 0 || from >= ledgerSize || maxCount <= 0) {
+            return Collections.emptyList();
+        }
+        int start = (int) from;
+        int end = (int) Math.min(ledgerSize, from + maxCount);
+        List<LedgerRecord> records = new ArrayList<>(Math.max(0, end - start));
+        for (int p = start; p < end; p++) {
+            records.add(new LedgerRecord(p, commitTimeAt(p), ledger.get(p)));
+        }
+        return records;
+    }
+
+    /**
+     * Expose a copy of the whole ledger (read-only). This materializes every
+     * entry at once; exports should page through openCursor instead.
+     */
+    public synchronized List<String> getLedgerSnapshot() {
+        catchUp();
+        return new ArrayList<>(ledger.subList(0, ledgerSize));
+    }
+
+    /** Copy of the sealed blocks in chain order (read-only). */
+    public synchronized List<Block> getBlocks() {
+        catchUp();
+        return Collections.unmodifiableList(new ArrayList<>(blocks));
+    }
+
+    /** Most recently sealed block, or null if none has been sealed yet. */
+    public synchronized Block getLatestBlock() {
+        catchUp();
+        return latestBlock();
+    }
+
+    private Block latestBlock() {
+        return blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+    }
+
+    /** Number of entries not yet sealed into a block. */
+    public synchronized int getPendingCount() {
+        catchUp();
+        return ledgerSize - sealedCount;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /** True if entries are persisted in segment logs. */
+    public boolean isPersistent() {
+        return transactionLog != null;
+    }
+
+    /** Flush and close the segment logs of a persistent network. */
+    public synchronized void close() throws IOException {
+        if (transactionLog != null) {
+            transactionLog.close();
+            blockLog.close();
+        }
+        if (bloomLog != null) {
+            bloomLog.close();
+        }
     }
 }
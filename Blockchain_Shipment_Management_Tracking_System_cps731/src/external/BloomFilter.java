@@ -0,0 +1,109 @@
+package external;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import model.StringHash;
+
+/**
+ * Fixed-size Bloom filter over strings, sized for an expected number of
+ * keys and a target false-positive rate.
+ *
+ * Keys are hashed once (StringHash.hash64) and the k bit positions are
+ * derived by double hashing. mightContain never returns false for a key
+ * that was added.
+ */
+public final class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashes;
+
+    private BloomFilter(long[] bits, int numBits, int numHashes) {
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Empty filter for expectedKeys keys at the given false-positive rate,
+     * e.g. 0.01 for 1%.
+     */
+    public static BloomFilter create(int expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("falsePositiveRate must be in (0, 1)");
+        }
+        int n = Math.max(1, expectedKeys);
+        int m = (int) Math.max(64, Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int k = (int) Math.max(1, Math.min(30, Math.round((double) m / n * LN2)));
+        return new BloomFilter(new long[(m + 63) >>> 6], m, k);
+    }
+
+    /** Filter holding keys. */
+    public static BloomFilter of(Collection<String> keys, double falsePositiveRate) {
+        BloomFilter filter = create(keys.size(), falsePositiveRate);
+        for (String key : keys) {
+            filter.add(key);
+        }
+        return filter;
+    }
+
+    public void add(String key) {
+        long hash = StringHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = StringHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /** Encoded size in bytes. */
+    public int byteSize() {
+        return 8 + bits.length * 8;
+    }
+
+    /** [int numBits][int numHashes][long words] */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(numBits).putInt(numHashes);
+        for (long word : bits) {
+            out.putLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(ByteBuffer in) {
+        int m = in.getInt();
+        int k = in.getInt();
+        if (m < 1 || k < 1 || k > 30) {
+            throw new IllegalArgumentException("Corrupt Bloom filter header");
+        }
+        long[] bits = new long[(m + 63) >>> 6];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.getLong();
+        }
+        return new BloomFilter(bits, m, k);
+    }
+}
@@ -0,0 +1,75 @@
+package external;
+
+/**
+ * Result of a full-chain validation: how many blocks were checked and the
+ * earliest block that failed, if any.
+ */
+public class ChainValidationReport {
+
+    /** Why a block failed validation. */
+    public enum Reason {
+        /** The header no longer hashes to the block's hash. */
+        HEADER_HASH,
+        /** The Merkle root does not match the block's ledger entries. */
+        MERKLE_ROOT,
+        /** Wrong previous hash, height or entry range for its position. */
+        LINK
+    }
+
+    private final int blockCount;
+    private final long blocksChecked;
+    private final int failedHeight;
+    private final Reason reason;
+    private final long elapsedNanos;
+
+    public ChainValidationReport(int blockCount, long blocksChecked, int failedHeight, Reason reason,
+            long elapsedNanos) {
+        this.blockCount = blockCount;
+        this.blocksChecked = blocksChecked;
+        this.failedHeight = failedHeight;
+        this.reason = reason;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Sealed blocks on the chain when validation started. */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /** Blocks whose hash and Merkle root were checked before stopping. */
+    public long getBlocksChecked() {
+        return blocksChecked;
+    }
+
+    public boolean isValid() {
+        return reason == null;
+    }
+
+    /** Height of the earliest invalid block, or -1 if the chain is valid. */
+    public int getFailedHeight() {
+        return failedHeight;
+    }
+
+    /** Why the block at getFailedHeight() failed, or null. */
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Blocks checked per second over the whole run. */
+    public double getBlocksPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : blocksChecked * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (isValid()) {
+            return "Chain valid: " + blockCount + " blocks checked.";
+        }
+        return "Chain invalid at block " + failedHeight + " (" + reason + "), "
+                + blocksChecked + " of " + blockCount + " blocks checked.";
+    }
+}
@@ -0,0 +1,79 @@
+package external;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The recipe for a chunked document: the SHA-256 and length of the whole
+ * content plus the hashes of its chunks, in order.
+ *
+ * Encoded as UTF-8 text and stored as a blob of its own:
+ *
+ *   chunked sha256 <content hash> <length>
+ *   <chunk hash>
+ *   ...
+ */
+public class ChunkManifest {
+
+    private static final String HEADER = "chunked sha256 ";
+
+    private final String key;
+    private final String contentHash;
+    private final long length;
+    private final List<String> chunkHashes;
+
+    ChunkManifest(String key, String contentHash, long length, List<String> chunkHashes) {
+        this.key = key;
+        this.contentHash = contentHash;
+        this.length = length;
+        this.chunkHashes = Collections.unmodifiableList(chunkHashes);
+    }
+
+    /** Hash of the encoded manifest, i.e. its key in the blob store. */
+    public String getKey() {
+        return key;
+    }
+
+    /** SHA-256 of the reassembled content. */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public List<String> getChunkHashes() {
+        return chunkHashes;
+    }
+
+    static byte[] encode(String contentHash, long length, List<String> chunkHashes) {
+        StringBuilder sb = new StringBuilder(HEADER.length() + 80 + chunkHashes.size() * 65);
+        sb.append(HEADER).append(contentHash).append(' ').append(length).append('\n');
+        for (String chunk : chunkHashes) {
+            sb.append(chunk).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** @throws IllegalArgumentException if the bytes are not a manifest */
+    static ChunkManifest decode(String key, byte[] bytes) {
+        String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\n");
+        if (lines.length == 0 || !lines[0].startsWith(HEADER)) {
+            throw new IllegalArgumentException("Not a chunk manifest: " + key);
+        }
+        String[] header = lines[0].substring(HEADER.length()).split(" ");
+        if (header.length != 2) {
+            throw new IllegalArgumentException("Malformed chunk manifest: " + key);
+        }
+        List<String> chunks = new ArrayList<>(lines.length - 1);
+        for (int i = 1; i < lines.length; i++) {
+            if (!lines[i].isEmpty()) {
+                chunks.add(lines[i]);
+            }
+        }
+        return new ChunkManifest(key, header[0], Long.parseLong(header[1]), chunks);
+    }
+}
@@ -0,0 +1,276 @@
+package external;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Sha256;
+
+/**
+ * Deduplicating layer over a BlobStore: content is cut into chunks at
+ * content-defined boundaries, each distinct chunk is stored once as a blob
+ * and a ChunkManifest blob lists the chunks of a document.
+ *
+ * Boundaries come from a gear rolling hash (FastCDC style): a cut is made
+ * where the top bits of the hash are zero, so it depends only on the last
+ * 64 bytes. An edit early in a document moves at most the chunks around it
+ * and the rest still match chunks already stored. Chunks are kept between
+ * minSize and maxSize bytes and average about avgSize.
+ *
+ * Content is read from a channel through one maxSize buffer, so memory use
+ * is bounded by the largest chunk.
+ */
+public class ChunkStore {
+
+    public static final int DEFAULT_MIN_SIZE = 2 * 1024;
+    public static final int DEFAULT_AVG_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // fixed splitmix64 sequence so boundaries are the same on every JVM
+        long seed = 0x5348495050494E47L;
+        for (int i = 0; i < GEAR.length; i++) {
+            long z = (seed += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final BlobStore blobs;
+    private final int minSize;
+    private final int maxSize;
+    private final long boundaryMask;
+
+    private final AtomicLong logicalBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong chunksStored = new AtomicLong();
+    private final AtomicLong chunksReused = new AtomicLong();
+
+    public ChunkStore(BlobStore blobs) {
+        this(blobs, DEFAULT_MIN_SIZE, DEFAULT_AVG_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /** @param avgSize target average chunk size; rounded down to a power of two */
+    public ChunkStore(BlobStore blobs, int minSize, int avgSize, int maxSize) {
+        if (minSize < 1 || avgSize < 2 || maxSize < minSize || avgSize > maxSize) {
+            throw new IllegalArgumentException("Need 0 < minSize <= avgSize <= maxSize");
+        }
+        this.blobs = blobs;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(avgSize);
+        this.boundaryMask = -1L << (64 - bits);
+    }
+
+    /**
+     * Chunk and store everything read from in, then store its manifest.
+     * The caller does not close in.
+     */
+    public ChunkManifest put(ReadableByteChannel in) {
+        // chunks are hashed with the thread's digester, so the content needs its own
+        MessageDigest content = Sha256.newDigester();
+        List<String> chunks = new ArrayList<>();
+        byte[] buf = new byte[maxSize];
+        int length = 0;
+        long total = 0;
+        boolean eof = false;
+        try {
+            while (true) {
+                while (!eof && length < maxSize) {
+                    int n = in.read(ByteBuffer.wrap(buf, length, maxSize - length));
+                    if (n < 0) {
+                        eof = true;
+                    } else {
+                        length += n;
+                    }
+                }
+                if (length == 0) {
+                    break;
+                }
+                int cut = boundary(buf, length);
+                content.update(buf, 0, cut);
+                chunks.add(putChunk(buf, cut));
+                total += cut;
+                System.arraycopy(buf, cut, buf, 0, length - cut);
+                length -= cut;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read content to chunk", e);
+        }
+
+        String contentHash = Sha256.toHex(content.digest());
+        byte[] manifest = ChunkManifest.encode(contentHash, total, chunks);
+        String key = Sha256.toHex(Sha256.digest(manifest));
+        blobs.put(key, ByteBuffer.wrap(manifest));
+        logicalBytes.addAndGet(total);
+        return new ChunkManifest(key, contentHash, total, chunks);
+    }
+
+    /** Chunk and store a string as UTF-8. */
+    public ChunkManifest putString(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return put(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    /** The manifest stored under key, or null if there is none. */
+    public ChunkManifest manifest(String key) {
+        byte[] bytes = blobs.get(key);
+        return bytes == null ? null : ChunkManifest.decode(key, bytes);
+    }
+
+    /**
+     * The reassembled content as a stream; chunks are opened one at a time
+     * as the stream reaches them.
+     */
+    public InputStream open(String key) {
+        ChunkManifest manifest = requireManifest(key);
+        Iterator<String> chunks = manifest.getChunkHashes().iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(blobs.pathFor(chunks.next()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /** The reassembled content, or null if there is no manifest under key. */
+    public byte[] get(String key) {
+        ChunkManifest manifest = manifest(key);
+        if (manifest == null) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(manifest.getLength(), Integer.MAX_VALUE));
+        for (String chunk : manifest.getChunkHashes()) {
+            byte[] bytes = readChunk(chunk);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    /** The reassembled content decoded as UTF-8. */
+    public String getString(String key) {
+        byte[] bytes = get(key);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * True if the chunks listed under key still reassemble to content
+     * hashing to expectedHex. Reads one chunk at a time.
+     */
+    public boolean verify(String key, String expectedHex) {
+        ChunkManifest manifest = expectedHex == null ? null : manifest(key);
+        if (manifest == null) {
+            return false;
+        }
+        MessageDigest md = Sha256.digester();
+        for (String chunk : manifest.getChunkHashes()) {
+            if (!blobs.contains(chunk)) {
+                return false;
+            }
+            md.update(readChunk(chunk));
+        }
+        return expectedHex.equals(Sha256.toHex(md.digest()));
+    }
+
+    public BlobStore getBlobStore() {
+        return blobs;
+    }
+
+    // --- metrics ---
+
+    /** Bytes of content handed to put, before deduplication. */
+    public long getLogicalBytes() {
+        return logicalBytes.get();
+    }
+
+    /** Bytes of chunk data actually written to the blob store. */
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    public long getChunksStored() {
+        return chunksStored.get();
+    }
+
+    /** Chunks that were already in the store and not written again. */
+    public long getChunksReused() {
+        return chunksReused.get();
+    }
+
+    /** Stored bytes over logical bytes; lower is better, 1.0 = no sharing. */
+    public double getStorageRatio() {
+        long logical = logicalBytes.get();
+        return logical == 0 ? 1.0 : (double) storedBytes.get() / logical;
+    }
+
+    // --- internals ---
+
+    /** Length of the next chunk at the start of buf[0, length). */
+    private int boundary(byte[] buf, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        long hash = 0;
+        // the hash only remembers the last 64 bytes, so start just before minSize
+        for (int i = Math.max(0, minSize - 64); i < length; i++) {
+            hash = (hash << 1) + GEAR[buf[i] & 0xFF];
+            if (i + 1 >= minSize && (hash & boundaryMask) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    private String putChunk(byte[] buf, int length) {
+        String hash = Sha256.toHex(Sha256.digest(ByteBuffer.wrap(buf, 0, length)));
+        if (blobs.put(hash, ByteBuffer.wrap(buf, 0, length))) {
+            chunksStored.incrementAndGet();
+            storedBytes.addAndGet(length);
+        } else {
+            chunksReused.incrementAndGet();
+        }
+        return hash;
+    }
+
+    private byte[] readChunk(String hash) {
+        byte[] bytes = blobs.get(hash);
+        if (bytes == null) {
+            throw new UncheckedIOException(new IOException("Missing chunk " + hash));
+        }
+        return bytes;
+    }
+
+    private ChunkManifest requireManifest(String key) {
+        ChunkManifest manifest = manifest(key);
+        if (manifest == null) {
+            throw new IllegalArgumentException("No chunk manifest " + key);
+        }
+        return manifest;
+    }
+}
@@ -0,0 +1,134 @@
+package external;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory message transport between the nodes of a BlockchainCluster.
+ *
+ * Every message is delayed by a latency drawn uniformly from
+ * [minLatencyMicros, maxLatencyMicros] and dropped with probability
+ * lossRate, so messages can also arrive out of order. A node can be
+ * isolated to simulate a crash or partition: nothing is delivered to or
+ * from it until it is healed.
+ *
+ * Each node receives on a delivery thread of its own, so a slow or busy
+ * follower never delays the messages of another.
+ */
+public class ClusterTransport {
+
+    private final long minLatencyMicros;
+    private final long maxLatencyMicros;
+    private final double lossRate;
+    // delivery executor per receiving node, created on its first message
+    private final Map<Integer, ScheduledThreadPoolExecutor> receivers = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+    private final Set<Integer> isolated = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Transport without latency or loss. */
+    public ClusterTransport() {
+        this(0, 0, 0.0);
+    }
+
+    public ClusterTransport(long minLatencyMicros, long maxLatencyMicros, double lossRate) {
+        if (minLatencyMicros < 0 || maxLatencyMicros < minLatencyMicros) {
+            throw new IllegalArgumentException("need 0 <= minLatency <= maxLatency");
+        }
+        if (lossRate < 0.0 || lossRate >= 1.0) {
+            throw new IllegalArgumentException("lossRate must be in [0, 1)");
+        }
+        this.minLatencyMicros = minLatencyMicros;
+        this.maxLatencyMicros = maxLatencyMicros;
+        this.lossRate = lossRate;
+    }
+
+    private ScheduledThreadPoolExecutor receiver(int node) {
+        return receivers.computeIfAbsent(node, n -> {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "cluster-transport-" + n);
+                t.setDaemon(true);
+                return t;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        });
+    }
+
+    /**
+     * Deliver a message from one node to another by running delivery on
+     * the receiving node's thread after the simulated latency, unless it is
+     * lost.
+     */
+    public void send(int from, int to, Runnable delivery) {
+        sent.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (shutdown || isolated.contains(from) || isolated.contains(to)
+                || (lossRate > 0 && random.nextDouble() < lossRate)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        long delay = maxLatencyMicros == minLatencyMicros
+                ? minLatencyMicros
+                : random.nextLong(minLatencyMicros, maxLatencyMicros + 1);
+        Runnable guarded = () -> {
+            if (isolated.contains(to)) {
+                dropped.incrementAndGet(); // isolated while in flight
+            } else {
+                delivery.run();
+            }
+        };
+        ScheduledThreadPoolExecutor receiver = receiver(to);
+        try {
+            if (delay == 0) {
+                receiver.execute(guarded);
+            } else {
+                receiver.schedule(guarded, delay, TimeUnit.MICROSECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet(); // shut down meanwhile
+        }
+    }
+
+    /** Run task every periodMillis on node's thread (e.g. the leader's retransmits). */
+    void schedulePeriodic(int node, Runnable task, long periodMillis) {
+        receiver(node).scheduleWithFixedDelay(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Cut a node off: messages to and from it are dropped. */
+    public void isolate(int node) {
+        isolated.add(node);
+    }
+
+    public void heal(int node) {
+        isolated.remove(node);
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Upper bound of one round trip, used to size retransmit timeouts. */
+    public long getMaxRoundTripMicros() {
+        return 2 * maxLatencyMicros;
+    }
+
+    /** Stop delivering; messages still in flight are discarded. */
+    public void shutdown() {
+        shutdown = true;
+        for (ScheduledThreadPoolExecutor receiver : receivers.values()) {
+            receiver.shutdownNow();
+        }
+    }
+}
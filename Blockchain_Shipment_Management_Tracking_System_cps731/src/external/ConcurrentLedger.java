@@ -0,0 +1,167 @@
+package external;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only list of ledger entries for any number of concurrent writers,
+ * without locks.
+ *
+ * A writer claims the next sequence number (or a run of them for a batch)
+ * with one atomic add and fills those slots of a chunked array; chunks double in size (1024, 2048,
+ * ...) and are installed by CAS, so existing slots never move. Slots can
+ * be filled out of order, so readers only see the published watermark:
+ * the longest prefix of filled slots. Every writer, after filling its slot,
+ * advances the watermark over whatever contiguous filled slots follow it.
+ * Entries below the watermark never change and can be read from any
+ * thread.
+ */
+public class ConcurrentLedger extends AbstractList<String> implements RandomAccess {
+
+    private static final int FIRST_CHUNK_SHIFT = 10;
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+    private static final int CHUNKS = 31 - FIRST_CHUNK_SHIFT;
+    private static final int CAPACITY = Integer.MAX_VALUE - FIRST_CHUNK_SIZE;
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(CHUNKS);
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+
+    /**
+     * Append an entry with its time; the entry is visible to readers once
+     * every earlier claimed slot is filled as well.
+     *
+     * @return the entry's sequence number
+     * @throws IllegalStateException if the ledger is full
+     */
+    public int append(String entry, long time) {
+        Objects.requireNonNull(entry, "entry"); // a null slot would never publish
+        int sequence = claim(1);
+        fill(sequence, entry, time);
+        publish();
+        return sequence;
+    }
+
+    /**
+     * Append entries under consecutive sequence numbers, all with the same
+     * time; no other writer's entry lands between them.
+     *
+     * @return the first entry's sequence number
+     * @throws IllegalStateException if the ledger is full
+     */
+    public int appendAll(List<String> entries, long time) {
+        for (String entry : entries) {
+            Objects.requireNonNull(entry, "entry");
+        }
+        int first = claim(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            fill(first + i, entries.get(i), time);
+        }
+        publish();
+        return first;
+    }
+
+    private int claim(int count) {
+        int first = claimed.getAndAdd(count);
+        if (first < 0 || first > CAPACITY - count) {
+            claimed.addAndGet(-count);
+            throw new IllegalStateException("Ledger is full");
+        }
+        return first;
+    }
+
+    private void fill(int sequence, String entry, long time) {
+        int index = sequence + FIRST_CHUNK_SIZE;
+        int high = 31 - Integer.numberOfLeadingZeros(index);
+        int offset = index - (1 << high);
+        int c = high - FIRST_CHUNK_SHIFT;
+        Chunk chunk = chunk(c);
+        if (offset == chunk.times.length >>> 1 && c + 1 < CHUNKS) {
+            chunk(c + 1); // halfway through: allocate the next chunk before writers reach it
+        }
+        chunk.times[offset] = time;
+        chunk.entries.set(offset, entry); // publishes the time along with the entry
+    }
+
+    /** Move the watermark past every contiguous filled slot. */
+    private void publish() {
+        while (true) {
+            int from = published.get();
+            int to = from;
+            while (to < CAPACITY && slot(to) != null) {
+                to++;
+            }
+            if (to == from || published.compareAndSet(from, to)) {
+                return;
+            }
+        }
+    }
+
+    /** Spin until the entry at sequence is published. */
+    public void awaitPublished(int sequence) {
+        for (int spins = 0; published.get() <= sequence; spins++) {
+            if (spins < 64) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private Chunk chunk(int c) {
+        Chunk chunk = chunks.get(c);
+        if (chunk == null) {
+            Chunk created = new Chunk(FIRST_CHUNK_SIZE << c);
+            chunk = chunks.compareAndSet(c, null, created) ? created : chunks.get(c);
+        }
+        return chunk;
+    }
+
+    /** The entry in slot sequence, or null if it is not filled yet. */
+    private String slot(int sequence) {
+        int index = sequence + FIRST_CHUNK_SIZE;
+        int high = 31 - Integer.numberOfLeadingZeros(index);
+        Chunk chunk = chunks.get(high - FIRST_CHUNK_SHIFT);
+        return chunk == null ? null : chunk.entries.get(index - (1 << high));
+    }
+
+    /** Number of published entries. */
+    @Override
+    public int size() {
+        return published.get();
+    }
+
+    @Override
+    public String get(int index) {
+        checkPublished(index);
+        return slot(index);
+    }
+
+    /** Time the entry was appended with. */
+    public long timeAt(int index) {
+        checkPublished(index);
+        int i = index + FIRST_CHUNK_SIZE;
+        int high = 31 - Integer.numberOfLeadingZeros(i);
+        return chunks.get(high - FIRST_CHUNK_SHIFT).times[i - (1 << high)];
+    }
+
+    private void checkPublished(int index) {
+        if (index < 0 || index >= published.get()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", published " + published.get());
+        }
+    }
+
+    private static final class Chunk {
+        final AtomicReferenceArray<String> entries;
+        final long[] times;
+
+        Chunk(int size) {
+            entries = new AtomicReferenceArray<>(size);
+            times = new long[size];
+        }
+    }
+}
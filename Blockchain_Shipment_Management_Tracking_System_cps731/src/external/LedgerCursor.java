@@ -0,0 +1,136 @@
+package external;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Page-by-page reader over a point-in-time view of the ledger.
+ *
+ * The view is the ledger up to its watermark, the ledger size when the
+ * cursor was opened. Entries are never changed once appended, so that
+ * prefix stays consistent while writers keep appending, without copying
+ * anything up front. Each page is read under the network's lock and holds
+ * at most pageSize records, so memory use does not grow with the ledger.
+ *
+ * getResumeToken() captures the position and the watermark; a cursor
+ * resumed from it (even in another process, against the same persistent
+ * ledger) continues the same view. Not thread-safe.
+ */
+public class LedgerCursor {
+
+    private static final String TOKEN_PREFIX = "L1.";
+
+    private final BlockchainNetwork network;
+    private final long watermark;
+    private final int pageSize;
+    private final String fingerprint;
+    private long position;
+
+    LedgerCursor(BlockchainNetwork network, long position, long watermark, int pageSize, String fingerprint) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        this.network = network;
+        this.position = position;
+        this.watermark = watermark;
+        this.pageSize = pageSize;
+        this.fingerprint = fingerprint;
+    }
+
+    /** True while the view has records that have not been read. */
+    public boolean hasMore() {
+        return position < watermark;
+    }
+
+    /**
+     * Up to pageSize records from the current position, in ledger order;
+     * empty once the view is exhausted.
+     */
+    public List<LedgerRecord> nextPage() {
+        List<LedgerRecord> page = network.readLedgerRecords(position, (int) Math.min(pageSize, watermark - position));
+        position += page.size();
+        return page;
+    }
+
+    /** The remaining records of the view, fetched a page at a time as the stream is consumed. */
+    public Stream<LedgerRecord> stream() {
+        Iterator<LedgerRecord> records = new Iterator<LedgerRecord>() {
+            private List<LedgerRecord> page = List.of();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == page.size() && hasMore()) {
+                    page = nextPage();
+                    next = 0;
+                }
+                return next < page.size();
+            }
+
+            @Override
+            public LedgerRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(records, watermark - position,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /** Sequence number of the next record to read. */
+    public long getPosition() {
+        return position;
+    }
+
+    /** End of the view: the ledger size when the cursor was opened. */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /** Opaque token to resume this view from the current position later. */
+    public String getResumeToken() {
+        return TOKEN_PREFIX + Long.toString(position, 36) + '.' + Long.toString(watermark, 36)
+                + '.' + pageSize + '.' + fingerprint;
+    }
+
+    /**
+     * Reopen the view a token was taken from.
+     *
+     * @throws IllegalArgumentException if the token is malformed or does
+     *                                  not belong to this ledger
+     */
+    static LedgerCursor resume(BlockchainNetwork network, String token, long ledgerSize, String ledgerFingerprint) {
+        String[] parts = token == null || !token.startsWith(TOKEN_PREFIX)
+                ? null
+                : token.substring(TOKEN_PREFIX.length()).split("\\.", -1);
+        if (parts == null || parts.length != 4) {
+            throw new IllegalArgumentException("Not a ledger cursor token: " + token);
+        }
+        long position;
+        long watermark;
+        int pageSize;
+        try {
+            position = Long.parseLong(parts[0], 36);
+            watermark = Long.parseLong(parts[1], 36);
+            pageSize = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a ledger cursor token: " + token, e);
+        }
+        if (position < 0 || position > watermark || watermark > ledgerSize
+                || (watermark > 0 && !parts[3].equals(ledgerFingerprint))) {
+            throw new IllegalArgumentException("Cursor token does not belong to this ledger: " + token);
+        }
+        return new LedgerCursor(network, position, watermark, pageSize, parts[3]);
+    }
+}
@@ -0,0 +1,36 @@
+package external;
+
+/**
+ * A ledger entry together with its sequence number and commit time.
+ */
+public final class LedgerRecord {
+
+    private final long sequence;
+    private final long timestamp;
+    private final String entry;
+
+    public LedgerRecord(long sequence, long timestamp, String entry) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.entry = entry;
+    }
+
+    /** Position on the ledger, starting at 0. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Commit time in millis; never decreases along the ledger. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getEntry() {
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + "@" + timestamp + " " + entry;
+    }
+}
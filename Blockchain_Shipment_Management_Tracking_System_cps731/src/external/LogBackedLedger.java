@@ -0,0 +1,59 @@
+package external;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+
+/**
+ * List view of the ledger stored in a SegmentLog.
+ * Entries stay in the mapped segments and are decoded on each get(), so a
+ * persisted ledger does not have to fit on the heap.
+ * Entries that parse as a typed Transaction are stored in TransactionCodec's
+ * binary form, anything else as a text record; both carry the commit time.
+ * Plain UTF-8 records written before entries had a commit time still read.
+ */
+class LogBackedLedger extends AbstractList<String> {
+
+    private final SegmentLog log;
+
+    LogBackedLedger(SegmentLog log) {
+        this.log = log;
+    }
+
+    @Override
+    public String get(int index) {
+        ByteBuffer record = log.read(index);
+        if (TransactionCodec.isEncoded(record)) {
+            return TransactionCodec.decodeToString(record);
+        }
+        if (TransactionCodec.isText(record)) {
+            return TransactionCodec.decodeText(record);
+        }
+        return StandardCharsets.UTF_8.decode(record).toString();
+    }
+
+    /** Commit time of the entry, or 0 for records written without one. */
+    long timestampAt(int index) {
+        return TransactionCodec.timestampOf(log.read(index));
+    }
+
+    @Override
+    public int size() {
+        return (int) log.size();
+    }
+
+    @Override
+    public boolean add(String entry) {
+        return add(entry, System.currentTimeMillis());
+    }
+
+    boolean add(String entry, long timestamp) {
+        Transaction tx = Transaction.parse(entry);
+        if (tx != null) {
+            log.append(TransactionCodec.encode(tx, timestamp));
+        } else {
+            log.append(TransactionCodec.encodeText(entry, timestamp));
+        }
+        return true;
+    }
+}
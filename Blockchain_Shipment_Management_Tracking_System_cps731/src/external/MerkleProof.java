@@ -0,0 +1,101 @@
+package external;
+
+import model.Sha256;
+
+/**
+ * Merkle inclusion proof: shows that one transaction is part of a sealed
+ * block without needing the rest of the block or the ledger.
+ *
+ * The proof holds the sibling hashes on the path from the transaction's leaf
+ * up to the root (O(log n) of them), so verification takes O(log n) time and
+ * memory and only needs the block header.
+ */
+public class MerkleProof {
+
+    private final String transaction;
+    private final int leafIndex;
+    private final String blockHash;
+    private final String merkleRoot;
+    private final byte[][] siblings;
+    private final boolean[] siblingOnLeft;
+
+    /**
+     * @param leafIndex position of the transaction inside its block
+     */
+    public MerkleProof(String transaction, int leafIndex, String blockHash, String merkleRoot,
+            byte[][] siblings, boolean[] siblingOnLeft) {
+        if (siblings.length != siblingOnLeft.length) {
+            throw new IllegalArgumentException("siblings and sides must have the same length");
+        }
+        this.transaction = transaction;
+        this.leafIndex = leafIndex;
+        this.blockHash = blockHash;
+        this.merkleRoot = merkleRoot;
+        this.siblings = siblings;
+        this.siblingOnLeft = siblingOnLeft;
+    }
+
+    /**
+     * Check the proof against a block header: the header must be the block
+     * this proof refers to, must hash correctly, and the path from the
+     * transaction's leaf must end at the header's Merkle root.
+     */
+    public boolean verify(Block header) {
+        if (header == null || transaction == null) {
+            return false;
+        }
+        if (!header.getHash().equals(blockHash) || !header.hasValidHash()) {
+            return false;
+        }
+        return Sha256.toHex(computeRoot()).equals(header.getMerkleRoot());
+    }
+
+    /** Fold the sibling path into the root this proof claims. */
+    private byte[] computeRoot() {
+        byte[] node = MerkleTree.leafHash(transaction);
+        for (int i = 0; i < siblings.length; i++) {
+            node = siblingOnLeft[i]
+                    ? MerkleTree.nodeHash(siblings[i], node)
+                    : MerkleTree.nodeHash(node, siblings[i]);
+        }
+        return node;
+    }
+
+    // --- getters ---
+
+    public String getTransaction() {
+        return transaction;
+    }
+
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    public String getBlockHash() {
+        return blockHash;
+    }
+
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    /** Number of sibling hashes in the path (the proof depth). */
+    public int getDepth() {
+        return siblings.length;
+    }
+
+    /** Hex sibling hash at the given level, counted up from the leaf. */
+    public String getSibling(int level) {
+        return Sha256.toHex(siblings[level]);
+    }
+
+    /** True if the sibling at the given level is the left child. */
+    public boolean isSiblingOnLeft(int level) {
+        return siblingOnLeft[level];
+    }
+
+    @Override
+    public String toString() {
+        return transaction + " in block " + blockHash + " (depth " + siblings.length + ")";
+    }
+}
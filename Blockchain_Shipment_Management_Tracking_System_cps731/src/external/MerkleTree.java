@@ -0,0 +1,107 @@
+package external;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Sha256;
+
+/**
+ * SHA-256 Merkle tree helpers used to seal ledger blocks.
+ *
+ * Leaves and inner nodes are hashed with different prefixes (0x00 / 0x01)
+ * so a leaf can never be passed off as an inner node. An odd node at the end
+ * of a level is promoted unchanged instead of being paired with itself.
+ */
+public final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private MerkleTree() {
+    }
+
+    /** Hash of a single transaction as a Merkle leaf. */
+    public static byte[] leafHash(String transaction) {
+        MessageDigest md = Sha256.digester();
+        md.update(LEAF_PREFIX);
+        Sha256.update(md, transaction);
+        return md.digest();
+    }
+
+    /** Hash of an inner node from its two children. */
+    public static byte[] nodeHash(byte[] left, byte[] right) {
+        MessageDigest md = Sha256.digester();
+        md.update(NODE_PREFIX);
+        md.update(left);
+        md.update(right);
+        return md.digest();
+    }
+
+    /** Merkle root of the given transactions (hash of nothing when empty). */
+    public static byte[] root(List<String> transactions) {
+        if (transactions.isEmpty()) {
+            return Sha256.digest(new byte[0]);
+        }
+        byte[][] level = new byte[transactions.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(transactions.get(i));
+        }
+        int size = level.length;
+        while (size > 1) {
+            int next = 0;
+            for (int i = 0; i < size; i += 2) {
+                level[next++] = i + 1 < size ? nodeHash(level[i], level[i + 1]) : level[i];
+            }
+            size = next;
+        }
+        return level[0];
+    }
+
+    /**
+     * All levels of the tree, leaves first and the root level last.
+     * Used to cut inclusion proofs for several leaves of the same block.
+     */
+    public static byte[][][] levels(List<String> transactions) {
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[transactions.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(transactions.get(i));
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] next = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < level.length; i += 2) {
+                next[i / 2] = i + 1 < level.length ? nodeHash(level[i], level[i + 1]) : level[i];
+            }
+            levels.add(next);
+            level = next;
+        }
+        return levels.toArray(new byte[0][][]);
+    }
+
+    /**
+     * Inclusion proof for the leaf at index, built from levels(...).
+     * Levels where the node was promoted without a sibling add nothing.
+     */
+    public static MerkleProof proof(byte[][][] levels, int index, String transaction,
+            String blockHash, String merkleRoot) {
+        int leafIndex = index;
+        List<byte[]> siblings = new ArrayList<>();
+        List<Boolean> onLeft = new ArrayList<>();
+        for (int l = 0; l < levels.length - 1; l++) {
+            byte[][] level = levels[l];
+            int sibling = index ^ 1;
+            if (sibling < level.length) {
+                siblings.add(level[sibling]);
+                onLeft.add(sibling < index);
+            }
+            index /= 2;
+        }
+        boolean[] left = new boolean[onLeft.size()];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = onLeft.get(i);
+        }
+        return new MerkleProof(transaction, leafIndex, blockHash, merkleRoot, siblings.toArray(new byte[0][]), left);
+    }
+}
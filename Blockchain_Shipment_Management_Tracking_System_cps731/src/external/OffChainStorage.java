@@ -1,20 +1,71 @@
 package external;
 
-import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import model.Document;
+import model.Sha256;
 
 /**
  * Simple in-memory off-chain storage service.
  * Acts as the concrete service that OffChainStorageAdapter talks to.
+ *
+ * Documents are kept in a hash-keyed map (insertion ordered) plus a
+ * case-insensitive name index, so uploads and lookups are O(1).
+ *
+ * With a BlobStore the content of each stored document is written to disk
+ * and dropped from the heap; the Document keeps its metadata and hash and
+ * loads the content from the blob store when it is asked for. The blob's
+ * bytes are handed over as they are, so binary uploads hash and verify
+ * correctly; they are decoded only when the content is read as text.
+ *
+ * storeStream accepts content as a channel. With a BlobStore the bytes are
+ * hashed and written chunk by chunk, so a large upload never sits in memory
+ * as a whole; without one the content has to end up on the heap anyway, so
+ * the stream is buffered and kept as raw bytes, which binary files need.
+ *
+ * With a ChunkStore the content is deduplicated below the document level:
+ * near-identical documents share their unchanged chunks on disk, and each
+ * document's blob is its chunk manifest. The document hash stays the
+ * SHA-256 of the whole content, since that is the key put on-chain.
  */
 public class OffChainStorage {
 
     private boolean available = true;
-    private final List<Document> documents = new ArrayList<>();
+    private final BlobStore blobStore;
+    private final ChunkStore chunkStore;
+
+    // key = hash value; documents without a hash get a key of their own so
+    // they are never replaced, exactly like before
+    private final Map<Object, Document> documents = new LinkedHashMap<>();
+    private final Map<String, Map<Object, Document>> byName = new HashMap<>();
 
     public OffChainStorage() {
+        this((BlobStore) null);
+    }
+
+    /** Storage whose document content lives in the given blob store. */
+    public OffChainStorage(BlobStore blobStore) {
+        this.blobStore = blobStore;
+        this.chunkStore = null;
+    }
+
+    /** Storage whose document content is chunked and deduplicated. */
+    public OffChainStorage(ChunkStore chunkStore) {
+        this.blobStore = chunkStore.getBlobStore();
+        this.chunkStore = chunkStore;
     }
 
     /** Simulate whether the storage is up. */
@@ -31,40 +82,206 @@ public class OffChainStorage {
         if (document == null)
             return;
 
+        // blob I/O happens outside the lock so uploads don't queue behind it
+        if (blobStore != null && document.isContentLoaded()) {
+            String blobKey = chunkStore != null
+                    ? chunkStore.putString(document.getContent()).getKey()
+                    : blobStore.putString(document.getContent());
+            offload(document, blobKey);
+        }
+        index(document);
+    }
+
+    /**
+     * Store a document whose content is read from in. The document's hash is
+     * set to the SHA-256 of the streamed bytes, computed while they are
+     * written; the caller does not close in.
+     */
+    public void storeStream(Document document, ReadableByteChannel in) {
+        if (document == null || in == null)
+            return;
+
+        if (chunkStore != null) {
+            ChunkManifest manifest = chunkStore.put(in);
+            document.setHashValue(manifest.getContentHash());
+            offload(document, manifest.getKey());
+        } else if (blobStore != null) {
+            String blobKey = blobStore.put(in);
+            document.setHashValue(blobKey);
+            offload(document, blobKey);
+        } else {
+            bufferContent(document, in);
+        }
+        index(document);
+    }
+
+    /**
+     * True if the stored content still matches document's hash. Offloaded
+     * content is rehashed straight from its blob, one chunk at a time.
+     */
+    public boolean verify(Document document) {
+        if (document == null)
+            return false;
+        String blobKey = blobKeyOf(document);
+        if (blobKey != null) {
+            return chunkStore != null
+                    ? chunkStore.verify(blobKey, document.getHashValue())
+                    : blobStore.verify(blobKey, document.getHashValue());
+        }
+        return document.verifyHash();
+    }
+
+    /**
+     * Number of content bytes a verify(document) call hashes: the blob or
+     * manifest length for offloaded content, the byte count of content set
+     * as bytes, the UTF-8 size of text otherwise.
+     */
+    public long contentSize(Document document) {
+        if (document == null)
+            return 0;
+        String blobKey = blobKeyOf(document);
+        if (blobKey != null) {
+            if (chunkStore == null) {
+                return Math.max(0, blobStore.size(blobKey));
+            }
+            ChunkManifest manifest = chunkStore.manifest(blobKey);
+            return manifest == null ? 0 : manifest.getLength();
+        }
+        if (!document.isContentLoaded()) {
+            byte[] bytes = document.getContentBytes();
+            return bytes == null ? 0 : bytes.length;
+        }
+        return utf8Length(document.getContent());
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void offload(Document document, String blobKey) {
+        document.setFilePath(blobStore.pathFor(blobKey).toString());
+        document.offloadContent(new Document.StoredContent() {
+            @Override
+            public byte[] load() {
+                return chunkStore != null ? chunkStore.get(blobKey) : blobStore.get(blobKey);
+            }
+
+            @Override
+            public boolean verify(String expectedHex) {
+                return chunkStore != null
+                        ? chunkStore.verify(blobKey, expectedHex)
+                        : blobStore.verify(blobKey, expectedHex);
+            }
+        });
+    }
+
+    /** Blob key of an offloaded document, or null if its content is on the heap. */
+    private String blobKeyOf(Document document) {
+        if (blobStore == null || document.isContentLoaded() || document.getFilePath() == null) {
+            return null;
+        }
+        Path path = Paths.get(document.getFilePath());
+        return path.startsWith(blobStore.getRoot()) ? path.getFileName().toString() : null;
+    }
+
+    private static void bufferContent(Document document, ReadableByteChannel in) {
+        MessageDigest md = Sha256.digester();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(BlobStore.DEFAULT_CHUNK_SIZE);
+        try {
+            while (in.read(buf) >= 0) {
+                md.update(buf.array(), 0, buf.position());
+                content.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read document stream", e);
+        }
+        document.setContentBytes(content.toByteArray());
+        document.setHashValue(Sha256.toHex(md.digest()));
+    }
+
+    private synchronized void index(Document document) {
         // If a document with same hash already exists, replace it
-        Document existing = getFileByHash(document.getHashValue());
+        Object key = document.getHashValue() != null ? document.getHashValue() : new Object();
+        Document existing = documents.remove(key);
         if (existing != null) {
-            documents.remove(existing);
+            unindexName(existing, key);
+        }
+        documents.put(key, document);
+        if (document.getName() != null) {
+            byName.computeIfAbsent(nameKey(document.getName()), k -> new LinkedHashMap<>())
+                    .put(key, document);
         }
-        documents.add(document);
     }
 
     /** Retrieve a document by its hash value. */
-    public Document getFileByHash(String hashValue) {
+    public synchronized Document getFileByHash(String hashValue) {
         if (hashValue == null)
             return null;
-        for (Document d : documents) {
-            if (hashValue.equals(d.getHashValue())) {
-                return d;
-            }
-        }
-        return null;
+        return documents.get(hashValue);
     }
 
-    /** Optional helper: retrieve by name (some controllers / UIs may use this). */
-    public Document getFileByName(String name) {
+    /**
+     * Optional helper: retrieve by name (some controllers / UIs may use this).
+     * Returns the earliest stored document with that name, ignoring case.
+     */
+    public synchronized Document getFileByName(String name) {
         if (name == null)
             return null;
-        for (Document d : documents) {
-            if (name.equalsIgnoreCase(d.getName())) {
-                return d;
+        Map<Object, Document> matches = byName.get(nameKey(name));
+        if (matches == null) {
+            return null;
+        }
+        Iterator<Document> it = matches.values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** Read-only snapshot of all docs – useful for debugging / audit. */
+    public synchronized List<Document> getAllDocuments() {
+        return List.copyOf(documents.values());
+    }
+
+    /** Blob store holding document content, or null when kept in memory. */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /** Chunk store deduplicating document content, or null if not chunked. */
+    public ChunkStore getChunkStore() {
+        return chunkStore;
+    }
+
+    private void unindexName(Document document, Object key) {
+        if (document.getName() == null) {
+            return;
+        }
+        String name = nameKey(document.getName());
+        Map<Object, Document> matches = byName.get(name);
+        if (matches != null) {
+            matches.remove(key);
+            if (matches.isEmpty()) {
+                byName.remove(name);
             }
         }
-        return null;
     }
 
-    /** Defensive copy of all docs – useful for debugging / audit. */
-    public List<Document> getAllDocuments() {
-        return new ArrayList<>(documents);
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
     }
 }
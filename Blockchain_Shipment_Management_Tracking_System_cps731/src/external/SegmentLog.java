@@ -0,0 +1,341 @@
+package external;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only, memory-mapped record log used as the durable ledger backend.
+ *
+ * Layout inside the log directory:
+ * - segment-NNNNNNNN.log : fixed-size segment files holding length-prefixed
+ *   records ([int length][bytes]); a record never spans two segments.
+ * - records.idx : 32-byte header (magic, version, segment size, durable
+ *   record count) followed by one long per record, the record's global
+ *   offset (segment * segmentSize + position), so sequence number -> offset
+ *   is a single mapped read.
+ *
+ * Appends copy the record straight into the mapped segment, with no heap
+ * buffer in between. fsync is batched: the segments and index are forced
+ * every syncEvery appends or on an explicit sync(), and only then does the
+ * header's durable count move forward. Opening an existing log maps the
+ * segment and index files and reads the header; records are not parsed.
+ */
+public class SegmentLog implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SYNC_EVERY = 256;
+
+    private static final int MAGIC = 0x4C454447; // "LEDG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COUNT_OFFSET = 16;
+    private static final int INDEX_CHUNK_ENTRIES = 1 << 20;
+    private static final long INDEX_CHUNK_BYTES = INDEX_CHUNK_ENTRIES * 8L;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int syncEvery;
+
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer indexHeader;
+    // copy-on-write so readers never see a list that is being grown
+    private final List<MappedByteBuffer> indexChunks = new CopyOnWriteArrayList<>();
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+
+    private volatile long count;
+    private long durableCount;
+    private int writePosition;
+    private int unsynced;
+    private volatile boolean closed;
+
+    /** Open (or create) a log with the default segment size and sync batch. */
+    public static SegmentLog open(Path directory) throws IOException {
+        return new SegmentLog(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_EVERY);
+    }
+
+    /**
+     * @param segmentSize bytes per segment file; ignored when reopening, the
+     *                    size recorded in the index header is used instead
+     * @param syncEvery   appends between automatic fsyncs (0 = only on sync())
+     */
+    public SegmentLog(Path directory, int segmentSize, int syncEvery) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.syncEvery = syncEvery;
+        Files.createDirectories(directory);
+
+        Path indexFile = directory.resolve("records.idx");
+        boolean existing = Files.exists(indexFile) && Files.size(indexFile) >= HEADER_BYTES;
+        indexChannel = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexHeader = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+        if (existing) {
+            if (indexHeader.getInt(0) != MAGIC || indexHeader.getInt(4) != VERSION) {
+                indexChannel.close();
+                throw new IOException("Not a ledger segment log: " + directory);
+            }
+            this.segmentSize = indexHeader.getInt(8);
+            this.count = indexHeader.getLong(COUNT_OFFSET);
+        } else {
+            this.segmentSize = segmentSize;
+            indexHeader.putInt(0, MAGIC);
+            indexHeader.putInt(4, VERSION);
+            indexHeader.putInt(8, segmentSize);
+            indexHeader.putLong(COUNT_OFFSET, 0L);
+            indexHeader.force();
+            this.count = 0;
+        }
+        this.durableCount = count;
+
+        // Map what is already there; nothing is read record by record.
+        int segmentCount = 0;
+        while (Files.exists(segmentPath(segmentCount))) {
+            segmentCount++;
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(mapSegment(i));
+        }
+        for (long mapped = 0; mapped < Math.max(count, 1); mapped += INDEX_CHUNK_ENTRIES) {
+            indexChunks.add(mapIndexChunk(indexChunks.size()));
+        }
+
+        if (count == 0) {
+            writePosition = 0;
+            segments.clear();
+            segments.add(mapSegment(0));
+        } else {
+            // resume right after the last durable record
+            long last = offsetOf(count - 1);
+            int seg = (int) (last / this.segmentSize);
+            int pos = (int) (last % this.segmentSize);
+            writePosition = pos + 4 + segments.get(seg).getInt(pos);
+            while (segments.size() > seg + 1) {
+                segments.remove(segments.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Append one record; the bytes between src.position() and src.limit() are
+     * copied directly into the mapped segment.
+     *
+     * @return the record's sequence number
+     */
+    public synchronized long append(ByteBuffer src) {
+        ensureOpen();
+        int length = src.remaining();
+        if (length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit a segment");
+        }
+        if (writePosition + 4 + length > segmentSize) {
+            segments.add(map(segments.size()));
+            writePosition = 0;
+        }
+
+        MappedByteBuffer segment = segments.get(segments.size() - 1);
+        segment.putInt(writePosition, length);
+        ByteBuffer target = segment.duplicate();
+        target.position(writePosition + 4);
+        target.put(src);
+
+        long sequence = count;
+        long offset = (long) (segments.size() - 1) * segmentSize + writePosition;
+        int chunk = (int) (sequence / INDEX_CHUNK_ENTRIES);
+        if (chunk == indexChunks.size()) {
+            indexChunks.add(map(() -> mapIndexChunk(chunk)));
+        }
+        indexChunks.get(chunk).putLong((int) (sequence % INDEX_CHUNK_ENTRIES) * 8, offset);
+
+        writePosition += 4 + length;
+        count = sequence + 1;
+        if (syncEvery > 0 && ++unsynced >= syncEvery) {
+            sync();
+        }
+        return sequence;
+    }
+
+    /** Append a record from a byte array. */
+    public long append(byte[] record) {
+        return append(ByteBuffer.wrap(record));
+    }
+
+    /** Append a UTF-8 encoded string record. */
+    public long appendString(String record) {
+        return append(record.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read-only view of a record's bytes inside the mapped segment.
+     * No data is copied until the caller reads from the buffer.
+     */
+    public ByteBuffer read(long sequence) {
+        ensureOpen();
+        if (sequence < 0 || sequence >= count) {
+            throw new IndexOutOfBoundsException("No record " + sequence + " (size " + count + ")");
+        }
+        long offset = offsetOf(sequence);
+        ByteBuffer segment = segments.get((int) (offset / segmentSize)).duplicate();
+        int pos = (int) (offset % segmentSize);
+        int length = segment.getInt(pos);
+        segment.position(pos + 4).limit(pos + 4 + length);
+        return segment.slice().asReadOnlyBuffer();
+    }
+
+    /** Decode a record written with appendString. */
+    public String readString(long sequence) {
+        return StandardCharsets.UTF_8.decode(read(sequence)).toString();
+    }
+
+    /**
+     * Force dirty segments and index entries to disk, then publish the new
+     * durable record count in the index header.
+     */
+    public synchronized void sync() {
+        ensureOpen();
+        if (durableCount == count) {
+            return;
+        }
+        int firstDirty = (int) (offsetOf(durableCount) / segmentSize);
+        for (int i = firstDirty; i < segments.size(); i++) {
+            segments.get(i).force();
+        }
+        int firstChunk = (int) (durableCount / INDEX_CHUNK_ENTRIES);
+        for (int i = firstChunk; i < indexChunks.size(); i++) {
+            indexChunks.get(i).force();
+        }
+        indexHeader.putLong(COUNT_OFFSET, count);
+        indexHeader.force();
+        durableCount = count;
+        unsynced = 0;
+    }
+
+    /**
+     * Drop every record from sequence size on; the next append gets that
+     * sequence number. A truncation below the durable count is published
+     * in the index header right away.
+     */
+    public synchronized void truncate(long size) {
+        ensureOpen();
+        if (size < 0 || size > count) {
+            throw new IndexOutOfBoundsException("Cannot truncate to " + size + " (size " + count + ")");
+        }
+        int lastSegment = 0;
+        writePosition = 0;
+        if (size > 0) {
+            long last = offsetOf(size - 1);
+            lastSegment = (int) (last / segmentSize);
+            int pos = (int) (last % segmentSize);
+            writePosition = pos + 4 + segments.get(lastSegment).getInt(pos);
+        }
+        while (segments.size() > lastSegment + 1) {
+            segments.remove(segments.size() - 1);
+        }
+        count = size;
+        if (size < durableCount) {
+            indexHeader.putLong(COUNT_OFFSET, size);
+            indexHeader.force();
+            durableCount = size;
+        }
+        unsynced = Math.min(unsynced, (int) (size - durableCount));
+    }
+
+    /** Number of records appended (durable or not). */
+    public long size() {
+        return count;
+    }
+
+    /** Number of records that survived the last sync. */
+    public synchronized long durableSize() {
+        return durableCount;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Sync outstanding records, release the index channel and drop this
+     * log's references to its mappings. Java has no supported way to unmap
+     * a MappedByteBuffer, so the mappings themselves are released when the
+     * garbage collector reclaims them; buffers handed out by read() keep
+     * theirs alive until then.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        sync();
+        closed = true;
+        segments.clear();
+        indexChunks.clear();
+        indexChannel.close();
+    }
+
+    // --- internals ---
+
+    private long offsetOf(long sequence) {
+        return indexChunks.get((int) (sequence / INDEX_CHUNK_ENTRIES))
+                .getLong((int) (sequence % INDEX_CHUNK_ENTRIES) * 8);
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%08d.log", segment));
+    }
+
+    private MappedByteBuffer mapSegment(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // mapping READ_WRITE past EOF pre-sizes the file to a full segment
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private MappedByteBuffer mapIndexChunk(int chunk) throws IOException {
+        return indexChannel.map(FileChannel.MapMode.READ_WRITE,
+                HEADER_BYTES + chunk * INDEX_CHUNK_BYTES, INDEX_CHUNK_BYTES);
+    }
+
+    private MappedByteBuffer map(int segment) {
+        return map(() -> mapSegment(segment));
+    }
+
+    private MappedByteBuffer map(IoSupplier supplier) {
+        try {
+            return supplier.get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Segment log is closed: " + directory);
+        }
+    }
+
+    private interface IoSupplier {
+        MappedByteBuffer get() throws IOException;
+    }
+}
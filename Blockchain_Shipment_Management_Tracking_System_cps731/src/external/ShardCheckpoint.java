@@ -0,0 +1,124 @@
+package external;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import model.Sha256;
+
+/**
+ * Global ordering point across ledger shards.
+ *
+ * Records, for every shard, the hash of its latest block and its ledger
+ * size, and links to the previous checkpoint through its hash, like Block
+ * does for blocks. Every entry below a shard's recorded size was committed
+ * before every entry above any shard's size in the next checkpoint, which
+ * is the ordering cross-shard audits rely on.
+ */
+public class ShardCheckpoint {
+
+    /** previousHash of the first checkpoint. */
+    public static final String GENESIS_HASH = Block.GENESIS_HASH;
+
+    private final int height;
+    private final String previousHash;
+    private final String[] shardHeads;
+    private final long[] shardSizes;
+    private final long timestamp;
+    private final String hash;
+
+    /**
+     * @param shardHeads hash of each shard's latest block, or
+     *                   Block.GENESIS_HASH for a shard without blocks
+     * @param shardSizes ledger size of each shard, all of it sealed
+     */
+    public ShardCheckpoint(int height, String previousHash, String[] shardHeads, long[] shardSizes,
+            long timestamp) {
+        if (shardHeads.length != shardSizes.length) {
+            throw new IllegalArgumentException("one head and one size per shard");
+        }
+        this.height = height;
+        this.previousHash = previousHash;
+        this.shardHeads = shardHeads.clone();
+        this.shardSizes = shardSizes.clone();
+        this.timestamp = timestamp;
+        this.hash = computeHash(height, previousHash, this.shardHeads, this.shardSizes, timestamp);
+    }
+
+    /** SHA-256 over the checkpoint fields. */
+    public static String computeHash(int height, String previousHash, String[] shardHeads, long[] shardSizes,
+            long timestamp) {
+        StringBuilder header = new StringBuilder().append(height).append('|').append(previousHash);
+        for (int i = 0; i < shardHeads.length; i++) {
+            header.append('|').append(shardHeads[i]).append(':').append(shardSizes[i]);
+        }
+        return Sha256.hashHex(header.append('|').append(timestamp));
+    }
+
+    /** Binary form of the checkpoint, used by the durable checkpoint log. */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(4 + 8 + 4 + 32 + shardHeads.length * (32 + 8));
+        buf.putInt(height).putLong(timestamp).putInt(shardHeads.length).put(Sha256.fromHex(previousHash));
+        for (int i = 0; i < shardHeads.length; i++) {
+            buf.put(Sha256.fromHex(shardHeads[i])).putLong(shardSizes[i]);
+        }
+        return buf.array();
+    }
+
+    /** Rebuild a checkpoint written by toBytes(); its hash is recomputed. */
+    public static ShardCheckpoint fromBytes(ByteBuffer buf) {
+        int height = buf.getInt();
+        long timestamp = buf.getLong();
+        int shards = buf.getInt();
+        byte[] hash = new byte[32];
+        buf.get(hash);
+        String previousHash = Sha256.toHex(hash);
+        String[] heads = new String[shards];
+        long[] sizes = new long[shards];
+        for (int i = 0; i < shards; i++) {
+            buf.get(hash);
+            heads[i] = Sha256.toHex(hash);
+            sizes[i] = buf.getLong();
+        }
+        return new ShardCheckpoint(height, previousHash, heads, sizes, timestamp);
+    }
+
+    /** True if the stored hash still matches the checkpoint fields. */
+    public boolean hasValidHash() {
+        return hash.equals(computeHash(height, previousHash, shardHeads, shardSizes, timestamp));
+    }
+
+    // --- getters ---
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getPreviousHash() {
+        return previousHash;
+    }
+
+    public int getShardCount() {
+        return shardHeads.length;
+    }
+
+    public String getShardHead(int shard) {
+        return shardHeads[shard];
+    }
+
+    public long getShardSize(int shard) {
+        return shardSizes[shard];
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint #" + height + " " + Arrays.toString(shardSizes) + " " + hash;
+    }
+}
@@ -0,0 +1,110 @@
+package external;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Secondary index over the ledger: shipment ID -> positions of its entries,
+ * so a lookup costs O(matches) instead of a scan over the whole ledger.
+ *
+ * BlockchainNetwork maintains it lazily, under the network lock: appends
+ * do not touch it, and each lookup first adds the entries appended since
+ * the previous one. After a durable ledger is opened the index starts
+ * empty and is rebuilt the same way by the first lookup.
+ *
+ * Entries whose shipment ID cannot be recognised are remembered separately
+ * and still matched by substring, so free-form entries keep working.
+ */
+public class ShipmentIndex {
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Postings unindexed = new Postings();
+
+    /** Record that the ledger entry at the given position was added. */
+    public void add(String entry, int position) {
+        String shipmentId = extractShipmentId(entry);
+        if (shipmentId == null) {
+            unindexed.add(position);
+            return;
+        }
+        postings.computeIfAbsent(shipmentId, k -> new Postings()).add(position);
+    }
+
+    /** Ascending positions of all entries that belong to the shipment. */
+    public int[] positionsFor(String shipmentId) {
+        Postings p = postings.get(shipmentId);
+        return p == null ? new int[0] : p.toArray();
+    }
+
+    /** Ascending positions of entries that had no recognisable shipment ID. */
+    public int[] unindexedPositions() {
+        return unindexed.toArray();
+    }
+
+    /** Number of distinct shipment IDs in the index. */
+    public int size() {
+        return postings.size();
+    }
+
+    /**
+     * Pull the shipment ID out of the entry formats the controllers write:
+     * - "CREATE#id", "STATUS#id#NEW_STATUS", "CLEARANCE#id#APPROVE", ...
+     * - "INSURANCE_CLAIM: id | message"
+     * Returns null when the entry does not match any known format.
+     */
+    public static String extractShipmentId(String entry) {
+        if (entry == null) {
+            return null;
+        }
+
+        int hash = entry.indexOf('#');
+        int colon = entry.indexOf(": ");
+        if (hash > 0 && (colon < 0 || hash < colon)) {
+            int end = entry.indexOf('#', hash + 1);
+            String id = (end < 0 ? entry.substring(hash + 1) : entry.substring(hash + 1, end)).trim();
+            return id.isEmpty() ? null : id;
+        }
+
+        if (colon > 0) {
+            int bar = entry.indexOf(" |", colon + 2);
+            String id = (bar < 0 ? entry.substring(colon + 2) : entry.substring(colon + 2, bar)).trim();
+            return id.isEmpty() ? null : id;
+        }
+
+        return null;
+    }
+
+    /** Merge two ascending position arrays into one ascending array. */
+    static int[] merge(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                out[k++] = a[i++];
+            } else {
+                out[k++] = b[j++];
+            }
+        }
+        return out;
+    }
+
+    /** Growable int array so millions of positions are not boxed. */
+    private static final class Postings {
+        private int[] positions = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(positions, size);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package external;
+
+import java.util.Objects;
+
+/**
+ * Typed ledger transaction: a type tag, the shipment it belongs to and an
+ * optional payload (new status, clearance decision, claim message).
+ *
+ * This is a typed façade over the ledger's canonical string form, which
+ * toString() gives: the same text the controllers used to build by hand
+ * ("STATUS#S1#IN_TRANSIT", "INSURANCE_CLAIM: S1 | message"). That text is
+ * what the gateway sends, what blocks hash and what queries return, so a
+ * Transaction carries nothing the text does not. When an entry happened is
+ * its commit time on the ledger (LedgerRecord, Block). TransactionCodec
+ * gives the compact binary form.
+ */
+public final class Transaction {
+
+    /** Transaction types. Codes are stored in encoded records; never reuse one. */
+    public enum Type {
+        CREATE(1, false),
+        STATUS(2, true),
+        DELIVERED(3, false),
+        CLEARANCE(4, true),
+        DISPUTE(5, false),
+        INSURANCE_CLAIM(6, true);
+
+        private static final Type[] BY_CODE = new Type[7];
+
+        static {
+            for (Type t : values()) {
+                BY_CODE[t.code] = t;
+            }
+        }
+
+        final int code;
+        final boolean hasPayload;
+        private final String prefix;
+
+        Type(int code, boolean hasPayload) {
+            this.code = code;
+            this.hasPayload = hasPayload;
+            this.prefix = name().equals("INSURANCE_CLAIM") ? CLAIM_PREFIX : name() + '#';
+        }
+
+        /** True if the ledger entry is written in this type's format. */
+        public boolean matches(String entry) {
+            return entry != null && entry.startsWith(prefix);
+        }
+
+        static Type fromCode(int code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
+    }
+
+    private static final String CLAIM_PREFIX = "INSURANCE_CLAIM: ";
+    private static final String CLAIM_SEPARATOR = " | ";
+
+    private final Type type;
+    private final String shipmentId;
+    private final String payload;
+
+    /**
+     * @param payload required for STATUS and CLEARANCE, optional for
+     *                INSURANCE_CLAIM, must be null otherwise
+     */
+    public Transaction(Type type, String shipmentId, String payload) {
+        if (type == null || shipmentId == null || shipmentId.isEmpty()) {
+            throw new IllegalArgumentException("type and shipmentId are required");
+        }
+        if (!type.hasPayload && payload != null) {
+            throw new IllegalArgumentException(type + " has no payload");
+        }
+        if (payload == null && (type == Type.STATUS || type == Type.CLEARANCE)) {
+            throw new IllegalArgumentException(type + " needs a payload");
+        }
+        this.type = type;
+        this.shipmentId = shipmentId;
+        this.payload = payload;
+    }
+
+    public static Transaction create(String shipmentId) {
+        return new Transaction(Type.CREATE, shipmentId, null);
+    }
+
+    public static Transaction status(String shipmentId, String newStatus) {
+        return new Transaction(Type.STATUS, shipmentId, newStatus);
+    }
+
+    public static Transaction delivered(String shipmentId) {
+        return new Transaction(Type.DELIVERED, shipmentId, null);
+    }
+
+    public static Transaction clearance(String shipmentId, String decision) {
+        return new Transaction(Type.CLEARANCE, shipmentId, decision);
+    }
+
+    public static Transaction dispute(String shipmentId) {
+        return new Transaction(Type.DISPUTE, shipmentId, null);
+    }
+
+    public static Transaction insuranceClaim(String shipmentId, String message) {
+        return new Transaction(Type.INSURANCE_CLAIM, shipmentId, message);
+    }
+
+    /**
+     * Parse a ledger entry in canonical string form. Returns null for
+     * free-form entries, and for any text that would not print back
+     * exactly as given, so parse(s).toString().equals(s) always holds.
+     */
+    public static Transaction parse(String entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.startsWith(CLAIM_PREFIX)) {
+            int bar = entry.indexOf(CLAIM_SEPARATOR, CLAIM_PREFIX.length());
+            String id = bar < 0 ? entry.substring(CLAIM_PREFIX.length()) : entry.substring(CLAIM_PREFIX.length(), bar);
+            if (id.isEmpty()) {
+                return null;
+            }
+            String message = bar < 0 ? null : entry.substring(bar + CLAIM_SEPARATOR.length());
+            return new Transaction(Type.INSURANCE_CLAIM, id, message);
+        }
+
+        int hash = entry.indexOf('#');
+        if (hash <= 0) {
+            return null;
+        }
+        Type type = typeOf(entry, hash);
+        if (type == null || type == Type.INSURANCE_CLAIM) {
+            return null;
+        }
+        int next = entry.indexOf('#', hash + 1);
+        if (type.hasPayload != (next >= 0)) {
+            return null;
+        }
+        String id = next < 0 ? entry.substring(hash + 1) : entry.substring(hash + 1, next);
+        if (id.isEmpty()) {
+            return null;
+        }
+        return new Transaction(type, id, next < 0 ? null : entry.substring(next + 1));
+    }
+
+    /** Type named by entry[0, end), matched without allocating. */
+    private static Type typeOf(String entry, int end) {
+        for (Type t : Type.values()) {
+            if (t.name().length() == end && entry.startsWith(t.name())) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getShipmentId() {
+        return shipmentId;
+    }
+
+    /** Status, decision or claim message; null if the type has none. */
+    public String getPayload() {
+        return payload;
+    }
+
+    /** Canonical ledger string, as shown to users and hashed into blocks. */
+    @Override
+    public String toString() {
+        if (type == Type.INSURANCE_CLAIM) {
+            return payload == null ? CLAIM_PREFIX + shipmentId : CLAIM_PREFIX + shipmentId + CLAIM_SEPARATOR + payload;
+        }
+        return payload == null ? type.name() + '#' + shipmentId : type.name() + '#' + shipmentId + '#' + payload;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Transaction)) {
+            return false;
+        }
+        Transaction other = (Transaction) o;
+        return type == other.type && shipmentId.equals(other.shipmentId) && Objects.equals(payload, other.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, shipmentId, payload);
+    }
+}
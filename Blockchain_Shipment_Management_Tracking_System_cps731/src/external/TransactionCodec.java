@@ -0,0 +1,302 @@
+package external;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of a Transaction with its commit time:
+ *
+ *   [0xFE marker][type code][flags][shipment ID][payload?][timestamp?]
+ *
+ * - Shipment IDs shaped like a letter prefix plus a number without leading
+ *   zeros ("S1042") are stored as the prefix and a varint; others as text.
+ * - Payloads that are well-known statuses or decisions are stored as a
+ *   one-byte dictionary code; others as text.
+ * - Text is a varint length plus UTF-8; the timestamp is a varint of its
+ *   millis and left out when unknown.
+ *
+ * A typical "STATUS#S1042#IN_TRANSIT" entry goes from 23 bytes of text to
+ * 8 bytes (14 with a timestamp).
+ *
+ * Entries that are not transactions can still carry a commit time as a
+ * text record: [0xFD marker][timestamp varint][UTF-8]. Neither 0xFE nor
+ * 0xFD ever starts valid UTF-8, so both kinds of record and plain UTF-8
+ * entries can share one log and be told apart by their first byte.
+ */
+public final class TransactionCodec {
+
+    public static final byte MARKER = (byte) 0xFE;
+    public static final byte TEXT_MARKER = (byte) 0xFD;
+
+    private static final int FLAG_TIMESTAMP = 1;
+    private static final int FLAG_NUMERIC_ID = 2;
+    private static final int FLAG_PAYLOAD_CODE = 4;
+    private static final int FLAG_PAYLOAD = 8;
+
+    // Codes are stored in encoded records: only ever append to this list.
+    private static final String[] PAYLOADS = {
+        null, "CREATED", "PICKED_UP", "IN_TRANSIT", "AT_WAREHOUSE", "AT_CUSTOMS",
+        "CUSTOMS_CLEARED", "OUT_FOR_DELIVERY", "DELIVERED", "DELAYED", "CANCELLED",
+        "APPROVE", "REJECT"
+    };
+    private static final Map<String, Integer> PAYLOAD_CODES = new HashMap<>();
+
+    static {
+        for (int i = 1; i < PAYLOADS.length; i++) {
+            PAYLOAD_CODES.put(PAYLOADS[i], i);
+        }
+    }
+
+    private TransactionCodec() {
+    }
+
+    /** True if the record at buffer's position is an encoded transaction. */
+    public static boolean isEncoded(ByteBuffer record) {
+        return record.hasRemaining() && record.get(record.position()) == MARKER;
+    }
+
+    /** True if the record at buffer's position is a timestamped text record. */
+    public static boolean isText(ByteBuffer record) {
+        return record.hasRemaining() && record.get(record.position()) == TEXT_MARKER;
+    }
+
+    /** Text record for a free-form entry with its commit time. */
+    public static byte[] encodeText(String entry, long timestamp) {
+        byte[] text = entry.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[11 + text.length];
+        out[0] = TEXT_MARKER;
+        int pos = putVarint(out, 1, timestamp);
+        System.arraycopy(text, 0, out, pos, text.length);
+        return Arrays.copyOf(out, pos + text.length);
+    }
+
+    /** Entry of a text record (buffer is moved past it). */
+    public static String decodeText(ByteBuffer record) {
+        if (!isText(record)) {
+            throw new IllegalArgumentException("Not a text record");
+        }
+        record.get();
+        getVarint(record);
+        return StandardCharsets.UTF_8.decode(record).toString();
+    }
+
+    /**
+     * Timestamp of an encoded transaction or text record, without decoding
+     * the rest; 0 if it has none or is plain UTF-8. The position is kept.
+     */
+    public static long timestampOf(ByteBuffer record) {
+        ByteBuffer r = record.duplicate();
+        if (isText(r)) {
+            r.get();
+            return getVarint(r);
+        }
+        if (!isEncoded(r)) {
+            return 0;
+        }
+        int flags = header(r);
+        if ((flags & FLAG_TIMESTAMP) == 0) {
+            return 0;
+        }
+        skipText(r);
+        if ((flags & FLAG_NUMERIC_ID) != 0) {
+            getVarint(r);
+        }
+        if ((flags & FLAG_PAYLOAD_CODE) != 0) {
+            r.get();
+        } else if ((flags & FLAG_PAYLOAD) != 0) {
+            skipText(r);
+        }
+        return getVarint(r);
+    }
+
+    /** Encode tx without a timestamp. */
+    public static byte[] encode(Transaction tx) {
+        return encode(tx, 0);
+    }
+
+    /**
+     * Encode tx with a timestamp, such as its commit time on the ledger;
+     * 0 leaves it out.
+     */
+    public static byte[] encode(Transaction tx, long timestamp) {
+        byte[] out = new byte[40 + 3 * (tx.getShipmentId().length()
+                + (tx.getPayload() == null ? 0 : tx.getPayload().length()))];
+        int pos = 0;
+        out[pos++] = MARKER;
+        out[pos++] = (byte) tx.getType().code;
+        int flagsAt = pos++;
+        int flags = 0;
+
+        String id = tx.getShipmentId();
+        int digits = numericSuffixStart(id);
+        if (digits >= 0) {
+            flags |= FLAG_NUMERIC_ID;
+            pos = putText(out, pos, id.substring(0, digits));
+            pos = putVarint(out, pos, Long.parseLong(id.substring(digits)));
+        } else {
+            pos = putText(out, pos, id);
+        }
+
+        String payload = tx.getPayload();
+        if (payload != null) {
+            Integer code = PAYLOAD_CODES.get(payload);
+            if (code != null) {
+                flags |= FLAG_PAYLOAD_CODE;
+                out[pos++] = (byte) (int) code;
+            } else {
+                flags |= FLAG_PAYLOAD;
+                pos = putText(out, pos, payload);
+            }
+        }
+        if (timestamp > 0) {
+            flags |= FLAG_TIMESTAMP;
+            pos = putVarint(out, pos, timestamp);
+        }
+        out[flagsAt] = (byte) flags;
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * Decode the record at buffer's position (moved past it); the timestamp
+     * is read with timestampOf.
+     *
+     * @throws IllegalArgumentException if it is not an encoded transaction
+     */
+    public static Transaction decode(ByteBuffer record) {
+        int flags = header(record);
+        Transaction.Type type = Transaction.Type.fromCode(record.get(record.position() - 2));
+        String id = readId(record, flags);
+        String payload = readPayload(record, flags);
+        if ((flags & FLAG_TIMESTAMP) != 0) {
+            getVarint(record);
+        }
+        return new Transaction(type, id, payload);
+    }
+
+    /**
+     * Canonical string form of the encoded record at buffer's position,
+     * built directly without an intermediate Transaction.
+     */
+    public static String decodeToString(ByteBuffer record) {
+        int flags = header(record);
+        Transaction.Type type = Transaction.Type.fromCode(record.get(record.position() - 2));
+        StringBuilder sb = new StringBuilder(32);
+        sb.append(type == Transaction.Type.INSURANCE_CLAIM ? "INSURANCE_CLAIM: " : type.name() + '#');
+        appendId(record, flags, sb);
+        String payload = readPayload(record, flags);
+        if (payload != null) {
+            sb.append(type == Transaction.Type.INSURANCE_CLAIM ? " | " : "#").append(payload);
+        }
+        if ((flags & FLAG_TIMESTAMP) != 0) {
+            getVarint(record);
+        }
+        return sb.toString();
+    }
+
+    // --- internals ---
+
+    private static int header(ByteBuffer record) {
+        if (record.remaining() < 3 || record.get() != MARKER) {
+            throw new IllegalArgumentException("Not an encoded transaction");
+        }
+        int code = record.get();
+        if (Transaction.Type.fromCode(code) == null) {
+            throw new IllegalArgumentException("Unknown transaction type " + code);
+        }
+        return record.get();
+    }
+
+    private static String readId(ByteBuffer record, int flags) {
+        StringBuilder sb = new StringBuilder(16);
+        appendId(record, flags, sb);
+        return sb.toString();
+    }
+
+    private static void appendId(ByteBuffer record, int flags, StringBuilder sb) {
+        sb.append(getText(record));
+        if ((flags & FLAG_NUMERIC_ID) != 0) {
+            sb.append(getVarint(record));
+        }
+    }
+
+    private static String readPayload(ByteBuffer record, int flags) {
+        if ((flags & FLAG_PAYLOAD_CODE) != 0) {
+            int code = record.get() & 0xFF;
+            if (code == 0 || code >= PAYLOADS.length) {
+                throw new IllegalArgumentException("Unknown payload code " + code);
+            }
+            return PAYLOADS[code];
+        }
+        return (flags & FLAG_PAYLOAD) != 0 ? getText(record) : null;
+    }
+
+    /**
+     * Index where a numeric suffix without leading zeros starts (after a
+     * non-empty letter prefix), or -1 if the ID is not shaped that way.
+     */
+    private static int numericSuffixStart(String id) {
+        int i = id.length();
+        while (i > 0 && Character.isDigit(id.charAt(i - 1)) && id.charAt(i - 1) < 0x80) {
+            i--;
+        }
+        int digits = id.length() - i;
+        if (i == 0 || digits == 0 || digits > 18 || (id.charAt(i) == '0' && digits > 1)) {
+            return -1;
+        }
+        for (int j = 0; j < i; j++) {
+            if (Character.isDigit(id.charAt(j))) {
+                return -1; // digits before the suffix: keep as text
+            }
+        }
+        return i;
+    }
+
+    private static int putText(byte[] out, int pos, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        pos = putVarint(out, pos, bytes.length);
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static String getText(ByteBuffer record) {
+        int length = (int) getVarint(record);
+        String text;
+        if (record.hasArray()) {
+            text = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            record.get(record.position(), bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        record.position(record.position() + length);
+        return text;
+    }
+
+    private static void skipText(ByteBuffer record) {
+        int length = (int) getVarint(record);
+        record.position(record.position() + length);
+    }
+
+    private static int putVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long getVarint(ByteBuffer record) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = record.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
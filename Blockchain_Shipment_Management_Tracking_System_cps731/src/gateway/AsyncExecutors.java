@@ -0,0 +1,71 @@
+package gateway;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default executor for the async gateway / adapter methods.
+ *
+ * Uses one virtual thread per task when the JDK has them (21+), since the
+ * work is mostly waiting on I/O; on older JDKs it falls back to a cached
+ * pool of daemon threads so the UI can still exit normally.
+ */
+public final class AsyncExecutors {
+
+    private static volatile Executor shared;
+
+    private AsyncExecutors() {
+    }
+
+    /** Shared default executor, created on first use. */
+    public static Executor defaultExecutor() {
+        Executor executor = shared;
+        if (executor == null) {
+            synchronized (AsyncExecutors.class) {
+                if (shared == null) {
+                    shared = create();
+                }
+                executor = shared;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Wait for an async result. A failure is rethrown as the exception the
+     * task threw, not wrapped in a CompletionException.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Executor create() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "gateway-async-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package gateway;
 
+import external.Block;
 import external.BlockchainNetwork;
+import external.LedgerCursor;
+import external.LedgerRecord;
+import external.MerkleProof;
+import external.Transaction;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 /**
  * Gateway / Indirection layer between controllers and the external
@@ -11,43 +19,344 @@ import java.util.List;
  * This applies the GRASP Indirection pattern and hides low-level blockchain
  * details
  * from the rest of the system.
+ * It fronts a single ledger, shard 0 of 1 to LedgerGateway callers;
+ * ShardedLedgerGateway spreads one over several networks instead.
+ * Cursors, group commit and the mempool exist on a single ledger only.
  */
-public class BlockchainNetworkGateway {
+public class BlockchainNetworkGateway implements LedgerGateway {
 
     private final BlockchainNetwork blockchainNetwork;
-    private boolean connected = false;
+    private volatile boolean connected = false;
+    private volatile GroupCommitter groupCommitter;
+    private volatile Mempool mempool;
+    // configured commit mode, kept across disconnect/connect; guarded by this
+    private int groupCommitBatchSize; // 0 = off
+    private long groupCommitLingerMillis;
+    private int mempoolBlockSize; // 0 = off
+    private long mempoolLingerMillis;
+    private long mempoolMaxBytes;
+    private volatile Executor executor = AsyncExecutors.defaultExecutor();
 
     public BlockchainNetworkGateway(BlockchainNetwork blockchainNetwork) {
         this.blockchainNetwork = blockchainNetwork;
     }
 
     /** Open connection to the blockchain network. */
+    @Override
     public boolean connect() {
         connected = blockchainNetwork.connect();
+        if (connected) {
+            startConfiguredMode();
+        }
         return connected;
     }
 
-    /** Send a transaction string to the blockchain. */
+    /** Start the configured group committer or mempool if it is not running. */
+    private synchronized void startConfiguredMode() {
+        if (groupCommitBatchSize > 0 && groupCommitter == null) {
+            groupCommitter = new GroupCommitter(blockchainNetwork, groupCommitBatchSize, groupCommitLingerMillis);
+        }
+        if (mempoolBlockSize > 0 && mempool == null) {
+            mempool = new Mempool(blockchainNetwork, mempoolBlockSize, mempoolLingerMillis, mempoolMaxBytes);
+        }
+    }
+
+    /** Commit what the running committer or mempool holds and stop it; the mode stays configured. */
+    private synchronized void stopConfiguredMode() {
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            groupCommitter = null;
+            committer.shutdown();
+        }
+        Mempool pool = mempool;
+        if (pool != null) {
+            mempool = null;
+            pool.shutdown();
+        }
+    }
+
+    /** Send a typed transaction; the ledger records its canonical string form. */
+    @Override
+    public boolean sendTransaction(Transaction transaction) {
+        return transaction != null && sendTransaction(transaction.toString());
+    }
+
+    /** Async version of sendTransaction(Transaction). */
+    @Override
+    public CompletableFuture<Boolean> sendTransactionAsync(Transaction transaction) {
+        if (transaction == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return sendTransactionAsync(transaction.toString());
+    }
+
+    /**
+     * Send a transaction string to the blockchain.
+     * In group-commit or mempool mode this waits until the block holding
+     * the transaction has been committed.
+     */
+    @Override
     public boolean sendTransaction(String data) {
         if (!connected) {
             return false;
         }
+        Mempool pool = mempool;
+        if (pool != null) {
+            return AsyncExecutors.await(pool.submit(data));
+        }
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            return AsyncExecutors.await(committer.submit(data));
+        }
         return blockchainNetwork.storeTransaction(data);
     }
 
+    /**
+     * Queue a transaction for group commit without waiting.
+     * The future completes with true once its batch is committed as a block.
+     * Without group-commit mode the transaction is stored immediately.
+     */
+    public CompletableFuture<Boolean> submitTransaction(String data) {
+        if (!connected) {
+            return CompletableFuture.completedFuture(false);
+        }
+        Mempool pool = mempool;
+        if (pool != null) {
+            return pool.submit(data);
+        }
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            return committer.submit(data);
+        }
+        return CompletableFuture.completedFuture(blockchainNetwork.storeTransaction(data));
+    }
+
+    /**
+     * Queue a transaction in an explicit priority class, e.g. BULK for
+     * imports that should not hold up live updates. Without mempool mode
+     * this is submitTransaction(data).
+     */
+    public CompletableFuture<Boolean> submitTransaction(String data, Mempool.Priority priority) {
+        Mempool pool = mempool;
+        if (connected && pool != null) {
+            return pool.submit(data, priority);
+        }
+        return submitTransaction(data);
+    }
+
+    /**
+     * Async version of sendTransaction. In group-commit or mempool mode this
+     * is the block's own future; otherwise the append runs on the executor.
+     */
+    public CompletableFuture<Boolean> sendTransactionAsync(String data) {
+        Mempool pool = mempool;
+        if (connected && pool != null) {
+            return pool.submit(data);
+        }
+        GroupCommitter committer = groupCommitter;
+        if (connected && committer != null) {
+            return committer.submit(data);
+        }
+        return CompletableFuture.supplyAsync(() -> sendTransaction(data), executor);
+    }
+
+    /** Async version of queryLedger, run on the executor. */
+    public CompletableFuture<List<String>> queryLedgerAsync(String shipmentId) {
+        return CompletableFuture.supplyAsync(() -> queryLedger(shipmentId), executor);
+    }
+
+    /** Executor for the *Async methods (virtual threads by default). */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? AsyncExecutors.defaultExecutor() : executor;
+    }
+
+    /**
+     * Switch on group-commit mode: concurrent sendTransaction calls are
+     * collected into batches of up to maxBatchSize, waiting at most
+     * maxLingerMillis for a batch to fill, and each batch is committed as one
+     * block. Trades a bounded amount of latency for commit throughput.
+     * The mode stays on across disconnect() and connect().
+     */
+    public synchronized void enableGroupCommit(int maxBatchSize, long maxLingerMillis) {
+        if (maxBatchSize < 1 || maxLingerMillis < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be >= 1 and maxLingerMillis >= 0");
+        }
+        disableMempool();
+        disableGroupCommit();
+        groupCommitBatchSize = maxBatchSize;
+        groupCommitLingerMillis = maxLingerMillis;
+        if (connected) {
+            startConfiguredMode();
+        }
+    }
+
+    /** Commit anything still queued and go back to direct appends. */
+    public synchronized void disableGroupCommit() {
+        groupCommitBatchSize = 0;
+        GroupCommitter committer = groupCommitter;
+        if (committer != null) {
+            groupCommitter = null;
+            committer.shutdown();
+        }
+    }
+
+    /** The running group committer (for its stats), or null in direct mode or while disconnected. */
+    public GroupCommitter getGroupCommitter() {
+        return groupCommitter;
+    }
+
+    /**
+     * Switch on mempool mode: transactions wait in a Mempool that drops
+     * duplicates, fills blocks of up to maxBlockSize by priority and keeps
+     * at most maxBytes of pending entries. Replaces group-commit mode, and
+     * like it stays on across disconnect() and connect().
+     */
+    public synchronized void enableMempool(int maxBlockSize, long maxLingerMillis, long maxBytes) {
+        if (maxBlockSize < 1 || maxLingerMillis < 0 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxBlockSize and maxBytes must be >= 1, maxLingerMillis >= 0");
+        }
+        disableGroupCommit();
+        disableMempool();
+        mempoolBlockSize = maxBlockSize;
+        mempoolLingerMillis = maxLingerMillis;
+        mempoolMaxBytes = maxBytes;
+        if (connected) {
+            startConfiguredMode();
+        }
+    }
+
+    /** Commit everything still pending and go back to direct appends. */
+    public synchronized void disableMempool() {
+        mempoolBlockSize = 0;
+        Mempool pool = mempool;
+        if (pool != null) {
+            mempool = null;
+            pool.shutdown();
+        }
+    }
+
+    /** The running mempool (for its metrics), or null if not in mempool mode or while disconnected. */
+    public Mempool getMempool() {
+        return mempool;
+    }
+
     /**
      * Query ledger entries related to a shipment.
      * Each entry is currently just a String; controllers decide how to interpret
      * it.
      */
+    @Override
     public List<String> queryLedger(String shipmentId) {
         if (!connected) {
             return new ArrayList<>();
         }
-        return new ArrayList<>(blockchainNetwork.queryLedger(shipmentId));
+        // the network already returns a fresh list
+        return blockchainNetwork.queryLedger(shipmentId);
+    }
+
+    /**
+     * Cursor over a point-in-time view of the whole ledger, for exports and
+     * audits that read it page by page. Returns null if not connected.
+     */
+    public LedgerCursor openLedgerCursor(int pageSize) {
+        if (!connected) {
+            return null;
+        }
+        return blockchainNetwork.openCursor(pageSize);
+    }
+
+    /** Continue a cursor from its resume token; null if not connected. */
+    public LedgerCursor resumeLedgerCursor(String token) {
+        if (!connected) {
+            return null;
+        }
+        return blockchainNetwork.resumeCursor(token);
     }
 
-    /** Validate a block (very simple stub). */
+    /**
+     * Ledger records committed in [fromMillis, toMillis), optionally of one
+     * transaction type only (null for all), as a lazy stream.
+     */
+    public Stream<LedgerRecord> queryLedgerByTimeRange(long fromMillis, long toMillis,
+            Transaction.Type typeFilter) {
+        if (!connected) {
+            return Stream.empty();
+        }
+        return blockchainNetwork.queryLedgerByTimeRange(fromMillis, toMillis, typeFilter);
+    }
+
+    /**
+     * Read up to maxCount ledger entries from sequence number from onwards,
+     * e.g. to replay the ledger after a restart.
+     */
+    public List<String> readLedger(long from, int maxCount) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return blockchainNetwork.readLedger(from, maxCount);
+    }
+
+    /** Like readLedger, with each entry's sequence number and commit time. */
+    public List<LedgerRecord> readLedgerRecords(long from, int maxCount) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return blockchainNetwork.readLedgerRecords(from, maxCount);
+    }
+
+    /** Number of ledger entries, or 0 if not connected. */
+    public long getLedgerSize() {
+        if (!connected) {
+            return 0;
+        }
+        return blockchainNetwork.getLedgerSize();
+    }
+
+    /** 1: the whole ledger is shard 0. */
+    @Override
+    public int getShardCount() {
+        return 1;
+    }
+
+    @Override
+    public int shardOf(String shipmentId) {
+        return 0;
+    }
+
+    /** getLedgerSize(); shard must be 0. */
+    @Override
+    public long getLedgerSize(int shard) {
+        checkShard(shard);
+        return getLedgerSize();
+    }
+
+    /** readLedgerRecords(from, maxCount); shard must be 0. */
+    @Override
+    public List<LedgerRecord> readLedgerRecords(int shard, long from, int maxCount) {
+        checkShard(shard);
+        return readLedgerRecords(from, maxCount);
+    }
+
+    private static void checkShard(int shard) {
+        if (shard != 0) {
+            throw new IndexOutOfBoundsException("shard " + shard + " of 1");
+        }
+    }
+
+    /** Sealed block headers in chain order. */
+    public List<Block> getBlocks() {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return blockchainNetwork.getBlocks();
+    }
+
+    /**
+     * Validate a sealed block: its header must still hash to blockHash, its
+     * Merkle root must match its ledger entries and it must link to the hash
+     * of the block before it. False if not connected or the block is unknown.
+     */
+    @Override
     public boolean validateBlock(String blockHash) {
         if (!connected) {
             return false;
@@ -55,12 +364,78 @@ public class BlockchainNetworkGateway {
         return blockchainNetwork.validateBlock(blockHash);
     }
 
-    /** Disconnect from the blockchain. */
+    /**
+     * Seal all pending entries into blocks, so that inclusion proofs exist
+     * for them. Proof lookups never seal on their own.
+     */
+    @Override
+    public void sealPendingBlocks() {
+        if (!connected) {
+            return;
+        }
+        blockchainNetwork.sealBlock();
+    }
+
+    /**
+     * Compact Merkle inclusion proof that the transaction is in a sealed
+     * block. Returns null if not connected or the transaction is unknown or
+     * still pending.
+     */
+    public MerkleProof getInclusionProof(String transaction) {
+        if (!connected) {
+            return null;
+        }
+        return blockchainNetwork.getMerkleProof(transaction);
+    }
+
+    /** Inclusion proofs for every sealed ledger entry of a shipment. */
+    @Override
+    public List<MerkleProof> getInclusionProofs(String shipmentId) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return blockchainNetwork.getMerkleProofs(shipmentId);
+    }
+
+    /** Ledger entries of a shipment that no sealed block covers yet. */
+    @Override
+    public List<String> getPendingEntries(String shipmentId) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return blockchainNetwork.getPendingEntries(shipmentId);
+    }
+
+    /** Header of a sealed block, used to check proofs against. */
+    @Override
+    public Block getBlockHeader(String blockHash) {
+        if (!connected) {
+            return null;
+        }
+        return blockchainNetwork.getBlock(blockHash);
+    }
+
+    /** Verify a proof against the header of the block it points to. */
+    @Override
+    public boolean verifyInclusion(MerkleProof proof) {
+        if (proof == null) {
+            return false;
+        }
+        return proof.verify(getBlockHeader(proof.getBlockHash()));
+    }
+
+    /**
+     * Disconnect from the blockchain. Queued transactions are committed
+     * first; a group-commit or mempool mode resumes on the next connect().
+     */
+    @Override
     public void disconnect() {
+        stopConfiguredMode();
         blockchainNetwork.disconnect();
         connected = false;
     }
 
+    @Override
     public boolean isConnected() {
         return connected;
     }
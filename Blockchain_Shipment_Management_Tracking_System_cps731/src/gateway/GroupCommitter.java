@@ -0,0 +1,178 @@
+package gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import external.Block;
+import external.BlockchainNetwork;
+
+/**
+ * Group-commit stage used by BlockchainNetworkGateway.
+ *
+ * Concurrent submissions are queued and a single committer thread drains
+ * them into batches: a batch closes when it holds maxBatchSize transactions
+ * or maxLingerMillis have passed since its first one arrived. Each batch is
+ * committed as one block, and every caller's future completes once that
+ * block has been sealed (and synced, on a persistent ledger).
+ */
+public class GroupCommitter {
+
+    // queued by shutdown() to wake the committer without interrupting it
+    private static final Pending STOP = new Pending(null, null);
+
+    private final BlockchainNetwork network;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private volatile boolean running = true;
+
+    public GroupCommitter(BlockchainNetwork network, int maxBatchSize, long maxLingerMillis) {
+        if (maxBatchSize < 1 || maxLingerMillis < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be >= 1 and maxLingerMillis >= 0");
+        }
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.committer = new Thread(this::run, "ledger-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /** Queue a transaction; the future completes when its batch is committed. */
+    public CompletableFuture<Boolean> submit(String data) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        if (!running) {
+            future.complete(false);
+            return future;
+        }
+        Pending pending = new Pending(data, future);
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // lost a race with shutdown(); nobody will drain this one
+            future.complete(false);
+        }
+        return future;
+    }
+
+    /**
+     * Stop accepting work and wait for the committer thread to commit what
+     * is queued and exit. The thread is signalled through the queue rather
+     * than interrupted, so a commit in progress finishes its file I/O.
+     */
+    public void shutdown() {
+        running = false;
+        queue.add(STOP);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.removeIf(p -> p == STOP);
+        if (!rest.isEmpty()) {
+            commit(rest);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                Pending first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // not expected, shutdown() does not interrupt: commit what we hold
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+    }
+
+    /**
+     * Commit one batch and complete its futures. Any failure, errors
+     * included, fails this batch only; the committer keeps running.
+     */
+    private void commit(List<Pending> batch) {
+        List<String> data = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            data.add(p.data);
+        }
+        try {
+            Block block = network.commitBlock(data);
+            boolean ok = block != null;
+            if (ok) {
+                batches.incrementAndGet();
+                transactions.addAndGet(batch.size());
+            }
+            for (Pending p : batch) {
+                p.future.complete(ok);
+            }
+        } catch (Throwable t) {
+            for (Pending p : batch) {
+                p.future.completeExceptionally(t);
+            }
+        }
+    }
+
+    // --- stats ---
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getTransactionCount() {
+        return transactions.get();
+    }
+
+    /** Average number of transactions per committed block. */
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0.0 : (double) transactions.get() / b;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getMaxLingerMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLingerNanos);
+    }
+
+    private static final class Pending {
+        final String data;
+        final CompletableFuture<Boolean> future;
+
+        Pending(String data, CompletableFuture<Boolean> future) {
+            this.data = data;
+            this.future = future;
+        }
+    }
+}
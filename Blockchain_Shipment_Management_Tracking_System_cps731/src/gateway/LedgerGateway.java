@@ -0,0 +1,70 @@
+package gateway;
+
+import external.Block;
+import external.LedgerRecord;
+import external.MerkleProof;
+import external.Transaction;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The ledger as the controllers see it: BlockchainNetworkGateway fronts a
+ * single ledger, ShardedLedgerGateway spreads it over several shards.
+ *
+ * Positions are per shard; a single ledger is shard 0 of 1. Every entry of
+ * a shipment is stored on shardOf(shipmentId) in commit order, so replaying
+ * each shard in its own order replays every shipment in order, which is
+ * what ShipmentProjector and RegistrySnapshot rely on.
+ */
+public interface LedgerGateway {
+
+    boolean connect();
+
+    void disconnect();
+
+    boolean isConnected();
+
+    /** Send a typed transaction; the ledger records its canonical string form. */
+    boolean sendTransaction(Transaction transaction);
+
+    /** Send a raw transaction string. */
+    boolean sendTransaction(String data);
+
+    /** Async version of sendTransaction. */
+    CompletableFuture<Boolean> sendTransactionAsync(Transaction transaction);
+
+    /** Ledger entries related to a shipment, in commit order. */
+    List<String> queryLedger(String shipmentId);
+
+    /** Seal all pending entries into blocks, so that inclusion proofs exist for them. */
+    void sealPendingBlocks();
+
+    /** Inclusion proofs for every sealed ledger entry of a shipment. */
+    List<MerkleProof> getInclusionProofs(String shipmentId);
+
+    /** Ledger entries of a shipment that no sealed block covers yet. */
+    List<String> getPendingEntries(String shipmentId);
+
+    /** Header of a sealed block, used to check proofs against. */
+    Block getBlockHeader(String blockHash);
+
+    /** Verify a proof against the header of the block it points to. */
+    boolean verifyInclusion(MerkleProof proof);
+
+    /** Validate a sealed block of whichever shard holds it. */
+    boolean validateBlock(String blockHash);
+
+    // --- replay, per shard ---
+
+    int getShardCount();
+
+    /** Index of the shard holding the shipment's history. */
+    int shardOf(String shipmentId);
+
+    /** Number of entries on the shard, or 0 if not connected. */
+    long getLedgerSize(int shard);
+
+    /** Read up to maxCount entries of the shard from its sequence number from onwards. */
+    List<LedgerRecord> readLedgerRecords(int shard, long from, int maxCount);
+}
@@ -0,0 +1,481 @@
+package gateway;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.ShipmentIndex;
+import external.Transaction;
+
+/**
+ * Pending-transaction pool in front of block production, used by
+ * BlockchainNetworkGateway.
+ *
+ * - Deduplication: a transaction equal to the newest entry of its shipment
+ *   that is not on the ledger yet (pending, or in the block being
+ *   committed) is not queued again; the caller shares the original's
+ *   future. Only that newest entry counts, so a STATUS A, B, A sequence
+ *   keeps both As. Entries without a shipment ID are deduplicated against
+ *   every such entry not on the ledger yet. Equal entries have equal
+ *   transaction hashes, so the entry itself is compared.
+ * - Ordering: blocks are filled by priority class, then arrival. For any one
+ *   shipment arrival order is kept: an urgent entry promotes the shipment's
+ *   older pending entries to its class instead of overtaking them.
+ * - Memory cap: when the estimated size would exceed maxBytes, the newest
+ *   entries of the lowest class are evicted (their futures complete with
+ *   false), never those of the submitting shipment; an entry less urgent
+ *   than everything evictable is rejected.
+ *
+ * A single block-builder thread drains the pool: a block closes when it
+ * holds maxBlockSize transactions or maxLingerMillis have passed since the
+ * oldest pending one arrived, and is committed with commitBlock. flush()
+ * closes blocks right away until the pool is empty.
+ */
+public class Mempool {
+
+    /** Priority classes, most urgent first. */
+    public enum Priority {
+        URGENT, NORMAL, BULK;
+
+        /** Clearance decisions, disputes and insurance claims are urgent. */
+        public static Priority of(String data) {
+            Transaction tx = Transaction.parse(data);
+            if (tx == null) {
+                return NORMAL;
+            }
+            switch (tx.getType()) {
+                case CLEARANCE:
+                case DISPUTE:
+                case INSURANCE_CLAIM:
+                    return URGENT;
+                default:
+                    return NORMAL;
+            }
+        }
+    }
+
+    /** Estimated heap cost of a pending entry beyond its characters. */
+    public static final int ENTRY_OVERHEAD = 160;
+
+    private static final Comparator<Pending> ORDER =
+            Comparator.<Pending>comparingInt(p -> p.priority.ordinal()).thenComparingLong(p -> p.sequence);
+
+    private final BlockchainNetwork network;
+    private final int maxBlockSize;
+    private final long maxLingerNanos;
+    private final long maxBytes;
+    private final Thread builder;
+
+    // guarded by this
+    private final TreeSet<Pending> queue = new TreeSet<>(ORDER);
+    // entries without a shipment ID that are not on the ledger yet
+    private final Map<String, Pending> byEntry = new HashMap<>();
+    // per shipment, its entries not on the ledger yet in arrival order:
+    // those in the committing block first, then the queued ones
+    private final Map<String, ArrayDeque<Pending>> byShipment = new HashMap<>();
+    private final int[] depthByPriority = new int[Priority.values().length];
+    private long nextSequence = 0;
+    private long bytes = 0;
+    private boolean running = true;
+    private boolean flushing = false;
+
+    // stats, guarded by this
+    private long submitted;
+    private long duplicates;
+    private long evicted;
+    private long rejected;
+    private long blocks;
+    private long committed;
+    private int maxDepth;
+    private final long[] waitNanosByPriority = new long[Priority.values().length];
+    private final long[] drainedByPriority = new long[Priority.values().length];
+    private long maxWaitNanos;
+
+    public Mempool(BlockchainNetwork network, int maxBlockSize, long maxLingerMillis, long maxBytes) {
+        if (maxBlockSize < 1 || maxLingerMillis < 0 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxBlockSize and maxBytes must be >= 1, maxLingerMillis >= 0");
+        }
+        this.network = network;
+        this.maxBlockSize = maxBlockSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.maxBytes = maxBytes;
+        this.builder = new Thread(this::run, "mempool-block-builder");
+        this.builder.setDaemon(true);
+        this.builder.start();
+    }
+
+    /** Estimated heap cost of data while it waits in the pool. */
+    public static long sizeOf(String data) {
+        return ENTRY_OVERHEAD + 2L * data.length();
+    }
+
+    /** Queue a transaction with the priority its type implies. */
+    public CompletableFuture<Boolean> submit(String data) {
+        return submit(data, Priority.of(data));
+    }
+
+    /**
+     * Queue a transaction; the future completes with true once the block
+     * holding it is committed, or false if it is evicted or rejected.
+     */
+    public synchronized CompletableFuture<Boolean> submit(String data, Priority priority) {
+        if (!running || data == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        submitted++;
+        String shipmentId = ShipmentIndex.extractShipmentId(data);
+        Pending existing = latest(shipmentId, data);
+        if (existing != null && existing.data.equals(data)) {
+            duplicates++;
+            if (existing.queued && priority.compareTo(existing.priority) < 0) {
+                promote(existing.shipmentId, existing, priority);
+            }
+            return existing.future;
+        }
+
+        long size = sizeOf(data);
+        while (bytes + size > maxBytes) {
+            Pending victim = evictionCandidate(shipmentId, priority);
+            if (victim == null) {
+                rejected++;
+                return CompletableFuture.completedFuture(false);
+            }
+            evict(victim);
+        }
+
+        Pending p = new Pending(data, shipmentId, priority, nextSequence++, size);
+        if (shipmentId != null) {
+            promote(shipmentId, null, priority);
+            byShipment.computeIfAbsent(shipmentId, k -> new ArrayDeque<>()).addLast(p);
+        } else {
+            byEntry.put(data, p);
+        }
+        queue.add(p);
+        depthByPriority[priority.ordinal()]++;
+        bytes += size;
+        maxDepth = Math.max(maxDepth, queue.size());
+        notifyAll();
+        return p.future;
+    }
+
+    /**
+     * The entry a new submission of data is compared with: its shipment's
+     * newest entry not on the ledger yet, or for entries without a shipment
+     * the equal one not on the ledger yet; null if there is none.
+     */
+    private Pending latest(String shipmentId, String data) {
+        if (shipmentId == null) {
+            return byEntry.get(data);
+        }
+        ArrayDeque<Pending> pending = byShipment.get(shipmentId);
+        return pending == null ? null : pending.peekLast();
+    }
+
+    /**
+     * The entry to evict to make room for a submission: the last queued one
+     * of a less urgent class, skipping the submitting shipment's own entries
+     * (the submission is about to promote them); null if there is none.
+     * Within a shipment older entries never sort after newer ones, so the
+     * entry found is always the newest of its shipment.
+     */
+    private Pending evictionCandidate(String shipmentId, Priority priority) {
+        Iterator<Pending> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            if (p.priority.compareTo(priority) <= 0) {
+                return null;
+            }
+            if (shipmentId == null || !shipmentId.equals(p.shipmentId)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Raise the shipment's queued entries (up to and including upTo, or all
+     * of them if null) to at least priority, so nothing newer overtakes them.
+     */
+    private void promote(String shipmentId, Pending upTo, Priority priority) {
+        ArrayDeque<Pending> pending = shipmentId == null ? null : byShipment.get(shipmentId);
+        if (pending == null) {
+            if (upTo != null) {
+                reclassify(upTo, priority);
+            }
+            return;
+        }
+        for (Pending p : pending) {
+            if (p.queued && p.priority.compareTo(priority) > 0) {
+                reclassify(p, priority);
+            }
+            if (p == upTo) {
+                break;
+            }
+        }
+    }
+
+    private void reclassify(Pending p, Priority priority) {
+        queue.remove(p);
+        depthByPriority[p.priority.ordinal()]--;
+        p.priority = priority;
+        depthByPriority[priority.ordinal()]++;
+        queue.add(p);
+    }
+
+    /** Remove a queued entry that is the newest of its shipment. */
+    private void evict(Pending p) {
+        dequeue(p);
+        if (p.shipmentId != null) {
+            ArrayDeque<Pending> pending = byShipment.get(p.shipmentId);
+            pending.pollLast();
+            if (pending.isEmpty()) {
+                byShipment.remove(p.shipmentId);
+            }
+        } else {
+            byEntry.remove(p.data);
+        }
+        evicted++;
+        p.future.complete(false);
+    }
+
+    private void dequeue(Pending p) {
+        queue.remove(p);
+        p.queued = false;
+        depthByPriority[p.priority.ordinal()]--;
+        bytes -= p.size;
+    }
+
+    /**
+     * Close blocks without waiting for the linger time until the pool is
+     * empty; entries queued meanwhile are included.
+     */
+    public synchronized void flush() {
+        if (!queue.isEmpty()) {
+            flushing = true;
+            notifyAll();
+        }
+    }
+
+    /** Stop accepting work, commit everything queued and stop the builder. */
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            builder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Pending> batch = nextBlock();
+            if (batch == null) {
+                return;
+            }
+            commit(batch);
+        }
+    }
+
+    /** Wait for a block's worth of transactions; null once shut down and empty. */
+    private synchronized List<Pending> nextBlock() {
+        try {
+            while (running && queue.isEmpty()) {
+                wait();
+            }
+            while (running && !flushing && queue.size() < maxBlockSize) {
+                long wait = oldestArrival() + maxLingerNanos - System.nanoTime();
+                if (wait <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+            }
+        } catch (InterruptedException e) {
+            running = false;
+        }
+        if (queue.isEmpty()) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        List<Pending> batch = new ArrayList<>(Math.min(maxBlockSize, queue.size()));
+        while (batch.size() < maxBlockSize && !queue.isEmpty()) {
+            Pending p = queue.first();
+            dequeue(p); // stays in byShipment / byEntry until committed
+            long waited = now - p.arrival;
+            waitNanosByPriority[p.priority.ordinal()] += waited;
+            drainedByPriority[p.priority.ordinal()]++;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+            batch.add(p);
+        }
+        if (queue.isEmpty()) {
+            flushing = false;
+        }
+        return batch;
+    }
+
+    private long oldestArrival() {
+        long oldest = Long.MAX_VALUE;
+        for (Priority priority : Priority.values()) {
+            if (depthByPriority[priority.ordinal()] > 0) {
+                // first of each class is its oldest entry
+                Pending first = queue.ceiling(Pending.probe(priority));
+                oldest = Math.min(oldest, first.arrival);
+            }
+        }
+        return oldest;
+    }
+
+    private void commit(List<Pending> batch) {
+        List<String> data = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            data.add(p.data);
+        }
+        boolean ok = false;
+        RuntimeException failure = null;
+        try {
+            Block block = network.commitBlock(data);
+            ok = block != null;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        synchronized (this) {
+            // no longer a duplicate once on the ledger; a shipment's entries in
+            // this block are the oldest of its entries
+            for (Pending p : batch) {
+                if (p.shipmentId == null) {
+                    byEntry.remove(p.data);
+                    continue;
+                }
+                ArrayDeque<Pending> pending = byShipment.get(p.shipmentId);
+                pending.pollFirst();
+                if (pending.isEmpty()) {
+                    byShipment.remove(p.shipmentId);
+                }
+            }
+            if (ok) {
+                blocks++;
+                committed += batch.size();
+            }
+        }
+        for (Pending p : batch) {
+            if (failure != null) {
+                p.future.completeExceptionally(failure);
+            } else {
+                p.future.complete(ok);
+            }
+        }
+    }
+
+    // --- metrics ---
+
+    /** Transactions waiting for a block. */
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getDepth(Priority priority) {
+        return depthByPriority[priority.ordinal()];
+    }
+
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** Estimated heap used by waiting transactions. */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSubmittedCount() {
+        return submitted;
+    }
+
+    /** Submissions that matched a pending or committing transaction. */
+    public synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    public synchronized long getBlockCount() {
+        return blocks;
+    }
+
+    public synchronized long getCommittedCount() {
+        return committed;
+    }
+
+    /** Average time from submission until taken into a block, in ms. */
+    public synchronized double getAverageWaitMillis() {
+        long waited = 0;
+        long drained = 0;
+        for (int i = 0; i < waitNanosByPriority.length; i++) {
+            waited += waitNanosByPriority[i];
+            drained += drainedByPriority[i];
+        }
+        return drained == 0 ? 0.0 : waited / 1e6 / drained;
+    }
+
+    public synchronized double getAverageWaitMillis(Priority priority) {
+        long drained = drainedByPriority[priority.ordinal()];
+        return drained == 0 ? 0.0 : waitNanosByPriority[priority.ordinal()] / 1e6 / drained;
+    }
+
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    public int getMaxBlockSize() {
+        return maxBlockSize;
+    }
+
+    public long getMaxLingerMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLingerNanos);
+    }
+
+    private static final class Pending {
+        final String data;
+        final String shipmentId;
+        final long sequence;
+        final long size;
+        final long arrival = System.nanoTime();
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Priority priority;
+        boolean queued = true;
+
+        Pending(String data, String shipmentId, Priority priority, long sequence, long size) {
+            this.data = data;
+            this.shipmentId = shipmentId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.size = size;
+        }
+
+        /** Sorts before every real entry of its class. */
+        static Pending probe(Priority priority) {
+            return new Pending("", null, priority, -1, 0);
+        }
+    }
+}
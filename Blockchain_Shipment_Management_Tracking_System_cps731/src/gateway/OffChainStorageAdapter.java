@@ -1,5 +1,15 @@
 package gateway;
 
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
 import external.OffChainStorage;
 import model.Document;
 
@@ -7,12 +17,22 @@ import model.Document;
  * OffChainStorageAdapter
  * - Wraps OffChainStorage so the rest of the app talks to a clean API.
  * - Shows the Adapter / Indirection pattern for off-chain storage.
+ * - Remembers verifyIntegrity results per hash: a document whose content
+ *   version has not changed since it was last verified is not rehashed.
  */
 public class OffChainStorageAdapter {
 
     private boolean connected;
     private int lastTransactionID;
     private final OffChainStorage offChainStorage;
+    private volatile Executor executor = AsyncExecutors.defaultExecutor();
+
+    // hash -> last verification of the document stored under that hash
+    private final Map<String, Verification> verified = new ConcurrentHashMap<>();
+    private final LongAdder verifyHits = new LongAdder();
+    private final LongAdder verifyMisses = new LongAdder();
+    private final LongAdder bytesHashed = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
 
     public OffChainStorageAdapter(OffChainStorage offChainStorage) {
         this.offChainStorage = offChainStorage;
@@ -56,6 +76,35 @@ public class OffChainStorageAdapter {
         return document.getHashValue();
     }
 
+    /**
+     * Upload a document whose content is streamed from in, e.g. a large
+     * scanned file. The content is hashed while it is stored, so it never
+     * has to be loaded as a String first; the caller closes in.
+     *
+     * @return the stored document, with its hash set, or null if upload failed
+     */
+    public Document uploadStream(String name, ReadableByteChannel in) {
+        if (in == null) {
+            return null;
+        }
+
+        if (!connected && !connect()) {
+            return null;
+        }
+
+        Document document = new Document();
+        document.setName(name);
+        document.setTimestamp(new Date());
+        offChainStorage.storeStream(document, in);
+        lastTransactionID++;
+        return document;
+    }
+
+    /** uploadStream for an InputStream. */
+    public Document uploadStream(String name, InputStream in) {
+        return in == null ? null : uploadStream(name, Channels.newChannel(in));
+    }
+
     /**
      * Retrieve a document by its hash.
      */
@@ -73,7 +122,15 @@ public class OffChainStorageAdapter {
 
     /**
      * Verifies that the stored document has not been tampered with.
-     * Uses Document.verifyHash() to compare content vs stored hash.
+     * Compares the stored content against its hash; content held in a blob
+     * store is rehashed from disk without loading it as a whole.
+     *
+     * The result is cached for the stored document and its content version,
+     * so repeated checks of unchanged content are O(1). Any setContent or
+     * setHashValue on it, or storing another document under the same hash,
+     * forces a fresh check. Blobs are immutable once written, so changes
+     * made to files on disk behind the store's back are only seen after
+     * clearVerificationCache().
      */
     public boolean verifyIntegrity(Document document) {
         if (document == null || document.getHashValue() == null) {
@@ -90,8 +147,72 @@ public class OffChainStorageAdapter {
             return false;
         }
 
-        // Rely on the Document's own hash verification
-        return stored.verifyHash();
+        long version = stored.getContentVersion();
+        Verification cached = verified.get(document.getHashValue());
+        if (cached != null && cached.document == stored && cached.version == version) {
+            verifyHits.increment();
+            bytesSaved.add(cached.bytes);
+            return cached.valid;
+        }
+
+        verifyMisses.increment();
+        boolean valid = offChainStorage.verify(stored);
+        long bytes = offChainStorage.contentSize(stored);
+        bytesHashed.add(bytes);
+        verified.put(document.getHashValue(), new Verification(stored, version, valid, bytes));
+        return valid;
+    }
+
+    /** Async version of uploadFile, run on the executor. */
+    public CompletableFuture<String> uploadFileAsync(Document document) {
+        return CompletableFuture.supplyAsync(() -> uploadFile(document), executor);
+    }
+
+    /** Async version of retrieveFile, run on the executor. */
+    public CompletableFuture<Document> retrieveFileAsync(String hash) {
+        return CompletableFuture.supplyAsync(() -> retrieveFile(hash), executor);
+    }
+
+    /** Async version of verifyIntegrity, run on the executor. */
+    public CompletableFuture<Boolean> verifyIntegrityAsync(Document document) {
+        return CompletableFuture.supplyAsync(() -> verifyIntegrity(document), executor);
+    }
+
+    /** Executor for the *Async methods (virtual threads by default). */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? AsyncExecutors.defaultExecutor() : executor;
+    }
+
+    /** Forget all cached verification results (metrics are kept). */
+    public void clearVerificationCache() {
+        verified.clear();
+    }
+
+    /** verifyIntegrity calls answered from the cache. */
+    public long getVerificationHits() {
+        return verifyHits.sum();
+    }
+
+    /** verifyIntegrity calls that had to rehash the content. */
+    public long getVerificationMisses() {
+        return verifyMisses.sum();
+    }
+
+    /** Fraction of cache lookups that were hits (0 if none yet). */
+    public double getVerificationHitRate() {
+        long hits = verifyHits.sum();
+        long total = hits + verifyMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /** Content bytes actually hashed by verifyIntegrity. */
+    public long getBytesHashed() {
+        return bytesHashed.sum();
+    }
+
+    /** Content bytes cache hits did not have to hash again. */
+    public long getBytesHashingSaved() {
+        return bytesSaved.sum();
     }
 
     /**
@@ -110,4 +231,19 @@ public class OffChainStorageAdapter {
     public int getLastTransactionID() {
         return lastTransactionID;
     }
+
+    /** Outcome of one verification of a stored document. */
+    private static final class Verification {
+        final Document document;
+        final long version;
+        final boolean valid;
+        final long bytes;
+
+        Verification(Document document, long version, boolean valid, long bytes) {
+            this.document = document;
+            this.version = version;
+            this.valid = valid;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package gateway;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import external.PaymentService;
 import model.Document;
 import model.Shipment;
@@ -10,9 +13,10 @@ import model.Shipment;
  */
 public class PaymentServiceAdapter {
 
-    private boolean connected = false;
+    private volatile boolean connected = false;
     private int lastTransactionID = -1;
     private final PaymentService paymentService;
+    private volatile Executor executor = AsyncExecutors.defaultExecutor();
 
     public PaymentServiceAdapter(PaymentService paymentService) {
         this.paymentService = paymentService;
@@ -29,8 +33,12 @@ public class PaymentServiceAdapter {
         connected = false;
     }
 
-    /** Process payment and track the transaction ID */
-    public boolean processPayment(Shipment shipment, float amount) {
+    /**
+     * Process payment and track the transaction ID.
+     * Synchronized because PaymentService keeps the amount / transaction
+     * of the payment in progress.
+     */
+    public synchronized boolean processPayment(Shipment shipment, float amount) {
         if (!connected) { 
             return false;
         }
@@ -40,8 +48,18 @@ public class PaymentServiceAdapter {
         return success;
     }
 
+    /** Async version of processPayment, run on the executor. */
+    public CompletableFuture<Boolean> processPaymentAsync(Shipment shipment, float amount) {
+        return CompletableFuture.supplyAsync(() -> processPayment(shipment, amount), executor);
+    }
+
+    /** Executor for the *Async methods (virtual threads by default). */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? AsyncExecutors.defaultExecutor() : executor;
+    }
+
     /** Generate a receipt for the last payment */
-    public Document generateReceipt() {
+    public synchronized Document generateReceipt() {
         return paymentService.generateReceipt();
     }
 
@@ -0,0 +1,46 @@
+package gateway;
+
+import external.LedgerRecord;
+
+/**
+ * A ledger record read through ShardedLedgerGateway, with the shard it is
+ * stored on. Sequence numbers are per shard, so (shard, sequence) is the
+ * record's position.
+ */
+public final class ShardRecord {
+
+    private final int shard;
+    private final LedgerRecord record;
+
+    public ShardRecord(int shard, LedgerRecord record) {
+        this.shard = shard;
+        this.record = record;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /** Position on the shard's ledger, starting at 0. */
+    public long getSequence() {
+        return record.getSequence();
+    }
+
+    /** Commit time in millis. */
+    public long getTimestamp() {
+        return record.getTimestamp();
+    }
+
+    public String getEntry() {
+        return record.getEntry();
+    }
+
+    public LedgerRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public String toString() {
+        return shard + ":" + record;
+    }
+}
@@ -0,0 +1,69 @@
+package gateway;
+
+import java.util.Arrays;
+
+import external.ShipmentIndex;
+import model.StringHash;
+
+/**
+ * Maps shipment IDs to ledger shards by consistent hashing.
+ *
+ * Each shard owns VIRTUAL_NODES points on a 64-bit hash ring and a shipment
+ * belongs to the shard owning the first point at or after its hash. Keys
+ * spread evenly, and going from N to N + 1 shards only moves about 1 / (N + 1)
+ * of the shipments. Entries without a recognisable shipment ID are spread
+ * the same way by their whole text.
+ */
+public class ShardRouter {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final int shardCount;
+    private final long[] points; // sorted ring positions
+    private final int[] owners;  // shard owning points[i]
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        this.shardCount = shardCount;
+        long[][] ring = new long[shardCount * VIRTUAL_NODES][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring[shard * VIRTUAL_NODES + v] = new long[] {StringHash.hash64("shard-" + shard + "#" + v), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /** Shard holding the shipment's history. */
+    public int shardFor(String shipmentId) {
+        if (shardCount == 1 || shipmentId == null) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(points, StringHash.hash64(shipmentId));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /** Shard a ledger entry is stored on: its shipment's, or the one its text hashes to. */
+    public int shardForEntry(String data) {
+        if (data == null) {
+            return 0;
+        }
+        String shipmentId = ShipmentIndex.extractShipmentId(data);
+        return shardFor(shipmentId == null ? data : shipmentId);
+    }
+}
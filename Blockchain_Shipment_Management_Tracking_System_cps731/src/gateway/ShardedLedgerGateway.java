@@ -0,0 +1,520 @@
+package gateway;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.LedgerRecord;
+import external.MerkleProof;
+import external.SegmentLog;
+import external.ShardCheckpoint;
+import external.Transaction;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Gateway that spreads the ledger over several networks (shards), each with
+ * its own block chain and index.
+ *
+ * Transactions are routed by their shipment ID (see ShardRouter), so one
+ * shipment's history lives on one shard and writes to different shards do
+ * not contend. Entries without a shipment ID are spread by their text.
+ * queryLedger reads only the shipment's home shard, so it returns the
+ * free-form entries that mention the shipment only if they happen to be
+ * stored there; searchAllShards is the explicit scatter-gather for those.
+ * Results from several shards are merged by commit time, and a record's
+ * position is its (shard, sequence) pair: there is no single ledger
+ * sequence. Checkpoints (ShardCheckpoint) record every shard's head in one
+ * hash-linked chain to order the shards globally. They are kept in memory,
+ * or also appended to a checkpoint log when one is given, so the chain
+ * survives a restart.
+ *
+ * Like BlockchainNetworkGateway it is a LedgerGateway, so the controllers
+ * run on it unchanged: they replay and snapshot each shard by its own
+ * sequence numbers. Ledger cursors, group commit and mempool mode work on
+ * one ledger's sequence numbers and exist on BlockchainNetworkGateway only.
+ */
+public class ShardedLedgerGateway implements LedgerGateway {
+
+    private final BlockchainNetwork[] shards;
+    private final ShardRouter router;
+    private final List<ShardCheckpoint> checkpoints = new ArrayList<>(); // guarded by itself
+    private final SegmentLog checkpointLog; // null keeps checkpoints in memory only
+    private ScheduledExecutorService checkpointScheduler;
+    private volatile boolean connected = false;
+
+    /** Gateway over ledger shards; shard i is shards.get(i). */
+    public ShardedLedgerGateway(List<BlockchainNetwork> shards) {
+        this(shards, null);
+    }
+
+    /**
+     * Gateway over ledger shards that also appends every checkpoint to
+     * checkpointLog, and continues the chain already in it.
+     */
+    public ShardedLedgerGateway(List<BlockchainNetwork> shards, SegmentLog checkpointLog) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is needed");
+        }
+        this.shards = shards.toArray(new BlockchainNetwork[0]);
+        this.router = new ShardRouter(this.shards.length);
+        this.checkpointLog = checkpointLog;
+        if (checkpointLog != null) {
+            for (long i = 0; i < checkpointLog.size(); i++) {
+                checkpoints.add(ShardCheckpoint.fromBytes(checkpointLog.read(i)));
+            }
+        }
+    }
+
+    /**
+     * Open a durable sharded ledger stored under directory: shard i in
+     * directory/shard-i (see BlockchainNetwork.open) and the checkpoint
+     * chain in directory/checkpoints.
+     */
+    public static ShardedLedgerGateway open(Path directory, int shardCount, int blockSize) throws IOException {
+        List<BlockchainNetwork> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(BlockchainNetwork.open(directory.resolve("shard-" + i), blockSize));
+        }
+        return new ShardedLedgerGateway(shards, SegmentLog.open(directory.resolve("checkpoints")));
+    }
+
+    /** Open connection to every shard. */
+    @Override
+    public boolean connect() {
+        boolean ok = true;
+        for (BlockchainNetwork shard : shards) {
+            ok &= shard.connect();
+        }
+        connected = ok;
+        return connected;
+    }
+
+    /** Send a typed transaction; the ledger records its canonical string form. */
+    @Override
+    public boolean sendTransaction(Transaction transaction) {
+        return transaction != null && sendTransaction(transaction.toString());
+    }
+
+    /** Send a transaction string to the shard it belongs on. */
+    @Override
+    public boolean sendTransaction(String data) {
+        if (!connected) {
+            return false;
+        }
+        return shards[router.shardForEntry(data)].storeTransaction(data);
+    }
+
+    /** Async version of sendTransaction(Transaction), run on the default executor. */
+    @Override
+    public CompletableFuture<Boolean> sendTransactionAsync(Transaction transaction) {
+        return CompletableFuture.supplyAsync(() -> sendTransaction(transaction), AsyncExecutors.defaultExecutor());
+    }
+
+    /** Ledger entries related to a shipment, read from its home shard only. */
+    @Override
+    public List<String> queryLedger(String shipmentId) {
+        List<String> entries = new ArrayList<>();
+        for (ShardRecord record : queryLedgerRecords(shipmentId)) {
+            entries.add(record.getEntry());
+        }
+        return entries;
+    }
+
+    /** Like queryLedger, with each entry's position and commit time. */
+    public List<ShardRecord> queryLedgerRecords(String shipmentId) {
+        List<ShardRecord> records = new ArrayList<>();
+        if (!connected) {
+            return records;
+        }
+        int shard = router.shardFor(shipmentId);
+        for (LedgerRecord record : shards[shard].queryLedgerRecords(shipmentId)) {
+            records.add(new ShardRecord(shard, record));
+        }
+        return records;
+    }
+
+    /**
+     * Entries on any shard that belong to or mention text, e.g. free-form
+     * notes about a shipment stored away from its home shard. Asks every
+     * shard and merges the answers by commit time, so it costs one query
+     * per shard.
+     */
+    public List<ShardRecord> searchAllShards(String text) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        List<Iterator<ShardRecord>> perShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            perShard.add(shards[i].queryLedgerRecords(text).stream()
+                    .map(r -> new ShardRecord(shard, r)).iterator());
+        }
+        List<ShardRecord> records = new ArrayList<>();
+        new MergeByTime<>(perShard, ShardRecord::getTimestamp).forEachRemaining(records::add);
+        return records;
+    }
+
+    /**
+     * Ledger records committed in [fromMillis, toMillis), optionally of one
+     * transaction type only (null for all), as a lazy stream merged from
+     * every shard by commit time.
+     */
+    public Stream<ShardRecord> queryLedgerByTimeRange(long fromMillis, long toMillis,
+            Transaction.Type typeFilter) {
+        if (!connected) {
+            return Stream.empty();
+        }
+        List<Stream<LedgerRecord>> streams = new ArrayList<>(shards.length);
+        List<Iterator<ShardRecord>> perShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            int shard = i;
+            Stream<LedgerRecord> stream = shards[i].queryLedgerByTimeRange(fromMillis, toMillis, typeFilter);
+            streams.add(stream);
+            perShard.add(stream.map(r -> new ShardRecord(shard, r)).iterator());
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new MergeByTime<>(perShard, ShardRecord::getTimestamp),
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    /**
+     * Read up to maxCount entries of one shard from its sequence number
+     * from onwards, e.g. to replay a shard from a checkpoint's size.
+     */
+    @Override
+    public List<LedgerRecord> readLedgerRecords(int shard, long from, int maxCount) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return shards[shard].readLedgerRecords(from, maxCount);
+    }
+
+    /** Number of entries on one shard, or 0 if not connected. */
+    @Override
+    public long getLedgerSize(int shard) {
+        if (!connected) {
+            return 0;
+        }
+        return shards[shard].getLedgerSize();
+    }
+
+    /**
+     * Ledger size of each shard, or all zeros if not connected. Together
+     * they are the position the ledger has reached; there is no single
+     * sequence number across shards.
+     */
+    public long[] getLedgerSizes() {
+        long[] sizes = new long[shards.length];
+        if (connected) {
+            for (int i = 0; i < shards.length; i++) {
+                sizes[i] = shards[i].getLedgerSize();
+            }
+        }
+        return sizes;
+    }
+
+    /** Sealed block headers of every shard, merged by commit time. */
+    public List<Block> getBlocks() {
+        List<Block> blocks = new ArrayList<>();
+        if (!connected) {
+            return blocks;
+        }
+        List<Iterator<Block>> perShard = new ArrayList<>(shards.length);
+        for (BlockchainNetwork shard : shards) {
+            perShard.add(shard.getBlocks().iterator());
+        }
+        new MergeByTime<>(perShard, Block::getTimestamp).forEachRemaining(blocks::add);
+        return blocks;
+    }
+
+    /** Validate a block of whichever shard holds it. */
+    @Override
+    public boolean validateBlock(String blockHash) {
+        if (!connected) {
+            return false;
+        }
+        BlockchainNetwork shard = shardWithBlock(blockHash);
+        return shard != null && shard.validateBlock(blockHash);
+    }
+
+    /** Seal every shard's pending entries into blocks, so that inclusion proofs exist for them. */
+    @Override
+    public void sealPendingBlocks() {
+        if (!connected) {
+            return;
+        }
+        for (BlockchainNetwork shard : shards) {
+            shard.sealBlock();
+        }
+    }
+
+    /**
+     * Merkle inclusion proof that the transaction is in a sealed block of
+     * its shard. Returns null if not connected or the transaction is
+     * unknown or still pending.
+     */
+    public MerkleProof getInclusionProof(String transaction) {
+        if (!connected) {
+            return null;
+        }
+        return shards[router.shardForEntry(transaction)].getMerkleProof(transaction);
+    }
+
+    /** Inclusion proofs for every sealed ledger entry of a shipment. */
+    @Override
+    public List<MerkleProof> getInclusionProofs(String shipmentId) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return shards[router.shardFor(shipmentId)].getMerkleProofs(shipmentId);
+    }
+
+    /** Ledger entries of a shipment that no sealed block of its home shard covers yet. */
+    @Override
+    public List<String> getPendingEntries(String shipmentId) {
+        if (!connected) {
+            return new ArrayList<>();
+        }
+        return shards[router.shardFor(shipmentId)].getPendingEntries(shipmentId);
+    }
+
+    /** Header of a sealed block on any shard, used to check proofs against. */
+    @Override
+    public Block getBlockHeader(String blockHash) {
+        if (!connected) {
+            return null;
+        }
+        BlockchainNetwork shard = shardWithBlock(blockHash);
+        return shard == null ? null : shard.getBlock(blockHash);
+    }
+
+    /** Verify a proof against the header of the block it points to. */
+    @Override
+    public boolean verifyInclusion(MerkleProof proof) {
+        if (proof == null) {
+            return false;
+        }
+        return proof.verify(getBlockHeader(proof.getBlockHash()));
+    }
+
+    @Override
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public BlockchainNetwork getShard(int shard) {
+        return shards[shard];
+    }
+
+    /** Index of the shard holding the shipment's history. */
+    @Override
+    public int shardOf(String shipmentId) {
+        return router.shardFor(shipmentId);
+    }
+
+    private BlockchainNetwork shardWithBlock(String blockHash) {
+        for (BlockchainNetwork shard : shards) {
+            if (shard.getBlock(blockHash) != null) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    // --- checkpoints ---
+
+    /**
+     * Seal every shard's pending entries and record all shard heads in a
+     * new checkpoint linked to the previous one. With a checkpoint log the
+     * checkpoint is synced to it before it is added to the chain.
+     *
+     * @return the checkpoint, or null if not connected
+     */
+    public ShardCheckpoint checkpoint() {
+        if (!connected) {
+            return null;
+        }
+        synchronized (checkpoints) {
+            String[] heads = new String[shards.length];
+            long[] sizes = new long[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                Block head = shards[i].sealBlock();
+                if (head == null) {
+                    head = shards[i].getLatestBlock();
+                }
+                heads[i] = head == null ? Block.GENESIS_HASH : head.getHash();
+                sizes[i] = head == null ? 0 : head.getFirstSequence() + head.getTransactionCount();
+            }
+            ShardCheckpoint previous = checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+            ShardCheckpoint checkpoint = new ShardCheckpoint(checkpoints.size(),
+                    previous == null ? ShardCheckpoint.GENESIS_HASH : previous.getHash(),
+                    heads, sizes, System.currentTimeMillis());
+            if (checkpointLog != null) {
+                checkpointLog.append(checkpoint.toBytes());
+                checkpointLog.sync();
+            }
+            checkpoints.add(checkpoint);
+            return checkpoint;
+        }
+    }
+
+    /** Checkpoints taken so far, oldest first. */
+    public List<ShardCheckpoint> getCheckpoints() {
+        synchronized (checkpoints) {
+            return new ArrayList<>(checkpoints);
+        }
+    }
+
+    /** validateCheckpoints(getCheckpoints()). */
+    public boolean validateCheckpoints() {
+        return validateCheckpoints(getCheckpoints());
+    }
+
+    /**
+     * Check a checkpoint chain, e.g. one kept by an auditor, against these
+     * shards: every checkpoint is intact, links to the one before it, and
+     * names a block each shard actually has, ending at the recorded size.
+     */
+    public boolean validateCheckpoints(List<ShardCheckpoint> chain) {
+        if (!connected) {
+            return false;
+        }
+        String previousHash = ShardCheckpoint.GENESIS_HASH;
+        for (ShardCheckpoint checkpoint : chain) {
+            if (!checkpoint.hasValidHash() || !checkpoint.getPreviousHash().equals(previousHash)
+                    || checkpoint.getShardCount() != shards.length) {
+                return false;
+            }
+            for (int i = 0; i < shards.length; i++) {
+                String head = checkpoint.getShardHead(i);
+                Block block = Block.GENESIS_HASH.equals(head) ? null : shards[i].getBlock(head);
+                long size = block == null ? 0 : block.getFirstSequence() + block.getTransactionCount();
+                if ((block == null && !Block.GENESIS_HASH.equals(head)) || size != checkpoint.getShardSize(i)) {
+                    return false;
+                }
+            }
+            previousHash = checkpoint.getHash();
+        }
+        return true;
+    }
+
+    /**
+     * Take a checkpoint every periodMillis on a background thread.
+     * A failed checkpoint is passed to onFailure and the schedule carries
+     * on; the next checkpoint covers the entries it missed.
+     */
+    public synchronized void startPeriodicCheckpoints(long periodMillis, Consumer<? super Exception> onFailure) {
+        stopPeriodicCheckpoints();
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shard-checkpoints");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (RuntimeException e) {
+                onFailure.accept(e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopPeriodicCheckpoints() {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdown();
+            checkpointScheduler = null;
+        }
+    }
+
+    /** Stop periodic checkpoints and disconnect from every shard. */
+    @Override
+    public void disconnect() {
+        stopPeriodicCheckpoints();
+        for (BlockchainNetwork shard : shards) {
+            shard.disconnect();
+        }
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** Disconnect, then flush and close the shards' logs and the checkpoint log. */
+    public void close() throws IOException {
+        disconnect();
+        for (BlockchainNetwork shard : shards) {
+            shard.close();
+        }
+        if (checkpointLog != null) {
+            checkpointLog.close();
+        }
+    }
+
+    /** Merges per-shard iterators that are each ordered by time; ties go to the lower shard. */
+    private static final class MergeByTime<T> implements Iterator<T> {
+
+        private final PriorityQueue<Head<T>> heads;
+
+        MergeByTime(List<Iterator<T>> perShard, ToLongFunction<? super T> time) {
+            heads = new PriorityQueue<>(Math.max(1, perShard.size()),
+                    Comparator.<Head<T>>comparingLong(h -> time.applyAsLong(h.item))
+                            .thenComparingInt(h -> h.shard));
+            for (int i = 0; i < perShard.size(); i++) {
+                advance(new Head<>(i, perShard.get(i)));
+            }
+        }
+
+        private void advance(Head<T> head) {
+            if (head.items.hasNext()) {
+                head.item = head.items.next();
+                heads.add(head);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            T item = head.item;
+            advance(head);
+            return item;
+        }
+
+        private static final class Head<T> {
+            final int shard;
+            final Iterator<T> items;
+            T item;
+
+            Head(int shard, Iterator<T> items) {
+                this.shard = shard;
+                this.items = items;
+            }
+        }
+    }
+}
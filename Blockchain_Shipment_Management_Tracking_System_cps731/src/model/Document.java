@@ -1,17 +1,34 @@
 package model;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Document {
 
+    /**
+     * Content kept outside the text field: offloaded to off-chain storage,
+     * or raw bytes that need not be text.
+     */
+    public interface StoredContent {
+        /** The whole content as bytes, or null if it is gone. */
+        byte[] load();
+
+        /** True if the content hashes to expectedHex; may read it a piece at a time. */
+        boolean verify(String expectedHex);
+    }
+
     private int documentID;
     private String name;
     private String hashValue;
     private String filePath;
     private String content;
     private Date timestamp;
+    // set when the content lives in off-chain storage or is held as raw
+    // bytes; gives back the stored bytes as they are, which need not be text
+    private StoredContent storedContent;
+    // bumped whenever content or hash change, so verification results can be cached
+    private final AtomicLong contentVersion = new AtomicLong();
 
     public Document() {
     }
@@ -56,6 +73,7 @@ public class Document {
 
     public void setHashValue(String hashValue) {
         this.hashValue = hashValue;
+        contentVersion.incrementAndGet();
     }
 
     public String getFilePath() {
@@ -66,12 +84,80 @@ public class Document {
         this.filePath = filePath;
     }
 
+    /**
+     * Content as text, loaded from off-chain storage on each call if it was
+     * offloaded. Offloaded bytes are decoded as UTF-8; use getContentBytes()
+     * for binary content.
+     */
     public String getContent() {
+        if (content == null && storedContent != null) {
+            byte[] bytes = storedContent.load();
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
         return content;
     }
 
+    /**
+     * Content as bytes: the stored bytes if it was offloaded or set as
+     * bytes, the UTF-8 encoding of the text otherwise; null if there is no
+     * content. Offloaded content is read in full, so prefer verifyHash()
+     * to check it.
+     */
+    public byte[] getContentBytes() {
+        if (content == null && storedContent != null) {
+            return storedContent.load();
+        }
+        return content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+    }
+
     public void setContent(String content) {
         this.content = content;
+        this.storedContent = null;
+        contentVersion.incrementAndGet();
+    }
+
+    /**
+     * Set binary content, kept as the given bytes rather than decoded, so
+     * it hashes and verifies as it was received.
+     */
+    public void setContentBytes(byte[] bytes) {
+        byte[] copy = bytes.clone();
+        this.content = null;
+        this.storedContent = new StoredContent() {
+            @Override
+            public byte[] load() {
+                return copy.clone();
+            }
+
+            @Override
+            public boolean verify(String expectedHex) {
+                return Sha256.matches(copy, expectedHex);
+            }
+        };
+        contentVersion.incrementAndGet();
+    }
+
+    /**
+     * Drop the in-memory content and reach it through stored when needed.
+     * Used by OffChainStorage once the content is safely in its blob store.
+     */
+    public void offloadContent(StoredContent stored) {
+        // same content, different home: the version is unchanged
+        this.storedContent = stored;
+        this.content = null;
+    }
+
+    /** True if the content is held on the heap as text (not offloaded). */
+    public boolean isContentLoaded() {
+        return content != null;
+    }
+
+    /**
+     * Modification stamp of content and hash value. A verification result
+     * recorded at one version still holds while the version is the same.
+     */
+    public long getContentVersion() {
+        return contentVersion.get();
     }
 
     public Date getTimestamp() {
@@ -82,40 +168,29 @@ public class Document {
         this.timestamp = timestamp;
     }
 
-    // ---- hash functionality unchanged ----
+    // ---- hash functionality ----
+
+    /**
+     * SHA-256 of the content, as lower-case hex: of the stored bytes if it
+     * was offloaded or set as bytes, of the UTF-8 text otherwise.
+     */
     public void generateHash() {
-        if (content == null) {
-            this.hashValue = null;
-            return;
-        }
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(content.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            this.hashValue = sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            this.hashValue = null;
+        if (content == null && storedContent != null) {
+            byte[] bytes = storedContent.load();
+            setHashValue(bytes == null ? null : Sha256.toHex(Sha256.digest(bytes)));
+        } else {
+            setHashValue(Sha256.hashHex(content));
         }
     }
 
+    /**
+     * True if the content still hashes to the stored hash value. Offloaded
+     * content is checked by its store, which reads it a chunk at a time.
+     */
     public boolean verifyHash() {
-        if (hashValue == null || content == null) {
-            return false;
-        }
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(content.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
-            }
-            String current = sb.toString();
-            return hashValue.equals(current);
-        } catch (NoSuchAlgorithmException e) {
-            return false;
+        if (content == null && storedContent != null) {
+            return storedContent.verify(hashValue);
         }
+        return Sha256.matches(content, hashValue);
     }
 }
@@ -0,0 +1,91 @@
+package model;
+
+import external.Block;
+import external.MerkleProof;
+
+/**
+ * Ledger inclusion proof attached to a report: the Merkle proof of one
+ * entry together with the header of the block it points to, so it can be
+ * checked again later without access to the ledger.
+ *
+ * An entry that is not in a sealed block yet has no proof; it is carried
+ * as pending and reported as unproven.
+ */
+public class LedgerProof {
+
+    private final String transaction;
+    private final MerkleProof proof;
+    private final Block header;
+
+    // CONSTRUCTORS
+    public LedgerProof(MerkleProof proof, Block header) {
+        this.transaction = proof.getTransaction();
+        this.proof = proof;
+        this.header = header;
+    }
+
+    /** An entry that no sealed block covers yet. */
+    public LedgerProof(String pendingTransaction) {
+        this.transaction = pendingTransaction;
+        this.proof = null;
+        this.header = null;
+    }
+
+    // GETTERS
+    public String getTransaction() {
+        return transaction;
+    }
+
+    /** The Merkle proof, or null while the entry is pending. */
+    public MerkleProof getProof() {
+        return proof;
+    }
+
+    /** Header of the block the proof points to, or null while pending. */
+    public Block getHeader() {
+        return header;
+    }
+
+    public boolean isPending() {
+        return proof == null;
+    }
+
+    /** Re-check the proof against the carried header; false while pending. */
+    public boolean isVerified() {
+        return proof != null && proof.verify(header);
+    }
+
+    /**
+     * Everything needed to recompute the proof by hand: the leaf index,
+     * each sibling hash with its side, the Merkle root and the header fields
+     * in the order the block hash covers them.
+     */
+    @Override
+    public String toString() {
+        if (proof == null) {
+            return transaction + "  -  not yet in a block (unproven)";
+        }
+        String blockHash = proof.getBlockHash();
+        StringBuilder sb = new StringBuilder();
+        sb.append(transaction)
+                .append("  -  block ").append(blockHash.substring(0, Math.min(12, blockHash.length())))
+                .append(isVerified() ? "  (verified)" : "  (INVALID)").append("\n");
+        sb.append("    leaf index: ").append(proof.getLeafIndex()).append("\n");
+        for (int level = 0; level < proof.getDepth(); level++) {
+            sb.append("    sibling ").append(level).append(": ")
+                    .append(proof.isSiblingOnLeft(level) ? "L " : "R ")
+                    .append(proof.getSibling(level)).append("\n");
+        }
+        sb.append("    merkle root: ").append(proof.getMerkleRoot()).append("\n");
+        if (header != null) {
+            sb.append("    header: ").append(header.getHeight())
+                    .append("|").append(header.getFirstSequence())
+                    .append("|").append(header.getTransactionCount())
+                    .append("|").append(header.getPreviousHash())
+                    .append("|").append(header.getMerkleRoot())
+                    .append("|").append(header.getTimestamp()).append("\n");
+        }
+        sb.append("    block hash: ").append(blockHash);
+        return sb.toString();
+    }
+}
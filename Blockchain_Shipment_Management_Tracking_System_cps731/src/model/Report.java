@@ -1,18 +1,27 @@
 package model;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 public class Report {
 
     private final String title;
     private final String body;
     private final Date generatedDate; 
+    private final List<LedgerProof> proofs;
 
     // CONSTRUCTOR
     public Report(String title, String body, Date generatedDate) {
+        this(title, body, generatedDate, Collections.emptyList());
+    }
+
+    /** Report with ledger inclusion proofs attached (e.g. audit trails). */
+    public Report(String title, String body, Date generatedDate, List<LedgerProof> proofs) {
         this.title = title;
         this.body = body;
         this.generatedDate = generatedDate;
+        this.proofs = Collections.unmodifiableList(proofs);
     }
     
     // GETTERS
@@ -28,6 +37,10 @@ public class Report {
         return generatedDate; 
     }
 
+    public List<LedgerProof> getProofs() {
+        return proofs;
+    }
+
     @Override
     public String toString() {
         return title + "\n\n" + body;
@@ -0,0 +1,210 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers shared by Document, the ledger and off-chain storage.
+ *
+ * Each thread reuses one MessageDigest and its encode buffers, text is always
+ * hashed as UTF-8 (never the platform charset), and
+ * hex conversion goes through a lookup table, so hashing a String does not
+ * allocate a copy of its bytes.
+ */
+public final class Sha256 {
+
+    public static final int DIGEST_BYTES = 32;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int ENCODE_CHUNK = 4 * 1024;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private Sha256() {
+    }
+
+    /**
+     * The calling thread's digest, reset and ready for update() calls.
+     * Callers must finish with digest() before hashing anything else.
+     */
+    public static MessageDigest digester() {
+        MessageDigest md = STATE.get().digest;
+        md.reset();
+        return md;
+    }
+
+    /**
+     * A digest of its own, for hashing one stream while other Sha256 calls
+     * are made on the same thread (digester() would be reset by them).
+     */
+    public static MessageDigest newDigester() {
+        return newMessageDigest();
+    }
+
+    public static byte[] digest(byte[] data) {
+        return digester().digest(data);
+    }
+
+    /** Hash the remaining bytes of buffer (its position moves to the limit). */
+    public static byte[] digest(ByteBuffer buffer) {
+        MessageDigest md = digester();
+        md.update(buffer);
+        return md.digest();
+    }
+
+    /** Hash text as UTF-8, encoding it in fixed-size chunks. */
+    public static byte[] digest(CharSequence text) {
+        State state = STATE.get();
+        MessageDigest md = state.digest;
+        md.reset();
+        update(md, text, state);
+        return md.digest();
+    }
+
+    /** Feed text into md as UTF-8 without materializing its bytes. */
+    public static void update(MessageDigest md, CharSequence text) {
+        update(md, text, STATE.get());
+    }
+
+    /** Lower-case hex SHA-256 of text (UTF-8); null for null. */
+    public static String hashHex(CharSequence text) {
+        return text == null ? null : toHex(digest(text));
+    }
+
+    /**
+     * True if text hashes to expectedHex. Compares the digest against the
+     * hex string in place, without building a second hex string.
+     */
+    public static boolean matches(CharSequence text, String expectedHex) {
+        if (text == null || expectedHex == null || expectedHex.length() != DIGEST_BYTES * 2) {
+            return false;
+        }
+        return hexEquals(digest(text), expectedHex);
+    }
+
+    /** True if data hashes to expectedHex. */
+    public static boolean matches(byte[] data, String expectedHex) {
+        if (data == null || expectedHex == null || expectedHex.length() != DIGEST_BYTES * 2) {
+            return false;
+        }
+        return hexEquals(digest(data), expectedHex);
+    }
+
+    private static boolean hexEquals(byte[] digest, String expectedHex) {
+        for (int i = 0; i < digest.length; i++) {
+            int b = digest[i] & 0xff;
+            if (expectedHex.charAt(2 * i) != HEX[b >>> 4] || expectedHex.charAt(2 * i + 1) != HEX[b & 0x0f]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            out[2 * i] = HEX[b >>> 4];
+            out[2 * i + 1] = HEX[b & 0x0f];
+        }
+        return new String(out);
+    }
+
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd-length hex string");
+        }
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Not a hex string: " + hex);
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+
+    /**
+     * UTF-8 encode text chunk by chunk through the thread's buffers, feeding
+     * the digest as each chunk is done. Unpaired surrogates become '?', like
+     * String.getBytes(UTF_8).
+     */
+    private static void update(MessageDigest md, CharSequence text, State state) {
+        char[] chars = state.chars;
+        byte[] bytes = state.bytes;
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + chars.length);
+            // a surrogate pair must not be split across chunks
+            if (end < length && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            int count = end - start;
+            if (text instanceof String) {
+                ((String) text).getChars(start, end, chars, 0);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    chars[i] = text.charAt(start + i);
+                }
+            }
+            md.update(bytes, 0, encode(chars, count, bytes));
+            start = end;
+        }
+    }
+
+    private static int encode(char[] chars, int count, byte[] out) {
+        int n = 0;
+        int i = 0;
+        // ASCII fast path; most ledger and document text never leaves it
+        while (i < count && chars[i] < 0x80) {
+            out[n++] = (byte) chars[i++];
+        }
+        for (; i < count; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xc0 | (c >> 6));
+                out[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (!Character.isSurrogate(c)) {
+                out[n++] = (byte) (0xe0 | (c >> 12));
+                out[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[n++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count
+                    && Character.isLowSurrogate(chars[i + 1])) {
+                int cp = Character.toCodePoint(c, chars[++i]);
+                out[n++] = (byte) (0xf0 | (cp >> 18));
+                out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                out[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                out[n++] = (byte) '?';
+            }
+        }
+        return n;
+    }
+
+    /** Per-thread reusable hashing state. */
+    private static final class State {
+        final MessageDigest digest;
+        final char[] chars = new char[ENCODE_CHUNK];
+        final byte[] bytes = new byte[ENCODE_CHUNK * 3]; // worst case per UTF-16 unit
+
+        State() {
+            digest = newMessageDigest();
+        }
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,22 +1,29 @@
 package model;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 public class Shipment {
 
-    private String shipmentID;
-    private String origin;
-    private String destination;
-    private String description;
-    private String status;
-    private Date dispatchDate;
-    private Date actDeliveryDate;
-    private Date expDeliveryDate;
+    private volatile String shipmentID;
+    private volatile String origin;
+    private volatile String destination;
+    private volatile String description;
+    private volatile String status;
+    private volatile Date dispatchDate;
+    private volatile Date actDeliveryDate;
+    private volatile Date expDeliveryDate;
 
-    private final List<Document> documents = new ArrayList<>();
-    private List<Event> history = new ArrayList<>();
+    // copy-on-write: histories are short and read (iterated) far more often
+    // than they grow, and readers never see a list that is being modified
+    private final List<Document> documents = new CopyOnWriteArrayList<>();
+    private List<Event> history = new CopyOnWriteArrayList<>();
+
+    // fair, so concurrent mutations of this shipment run in arrival order
+    private final ReentrantLock mutationLock = new ReentrantLock(true);
 
     // Constructor
     public Shipment(String shipmentID, String origin, String destination, String description) {
@@ -33,7 +40,7 @@ public class Shipment {
 
     public void addEvent(String message) {
         if (history == null) {
-            history = new ArrayList<>();
+            history = new CopyOnWriteArrayList<>();
         }
         history.add(new Event(new Date(), message));
         this.status = message; // optional: update status automatically
@@ -123,6 +130,35 @@ public class Shipment {
         }
     }
 
+    /**
+     * Run a mutation while holding this shipment's lock, so updates to the
+     * same shipment are applied (and written to the ledger) one at a time
+     * while updates to other shipments proceed in parallel.
+     */
+    public <T> T withLock(Supplier<T> mutation) {
+        mutationLock.lock();
+        try {
+            return mutation.get();
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    /**
+     * Independent copy: its own history and document lists (sharing the
+     * Event and Document objects) and its own lock.
+     */
+    public Shipment copy() {
+        Shipment copy = new Shipment(shipmentID, origin, destination, description);
+        copy.status = status;
+        copy.dispatchDate = dispatchDate;
+        copy.expDeliveryDate = expDeliveryDate;
+        copy.actDeliveryDate = actDeliveryDate;
+        copy.history = new CopyOnWriteArrayList<>(history);
+        copy.documents.addAll(documents);
+        return copy;
+    }
+
     public void confirmDelivery() {
         this.status = "DELIVERED";
         this.actDeliveryDate = new Date();
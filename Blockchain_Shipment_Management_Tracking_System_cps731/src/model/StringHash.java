@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Fast 64-bit hash of a string, shared by the Bloom filters and the shard
+ * router. Not cryptographic: use Sha256 wherever a hash is committed to.
+ */
+public final class StringHash {
+
+    private StringHash() {
+    }
+
+    /** 64-bit FNV-1a with a murmur3 finalizer, so nearby keys spread out. */
+    public static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
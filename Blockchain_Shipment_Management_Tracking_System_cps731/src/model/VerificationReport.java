@@ -0,0 +1,105 @@
+package model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk document verification: how many documents were checked
+ * and which ones failed, in shipment and document order.
+ */
+public class VerificationReport {
+
+    private final long documentCount;
+    private final List<Failure> failures;
+    private final long elapsedNanos;
+
+    public VerificationReport(long documentCount, List<Failure> failures, long elapsedNanos) {
+        this.documentCount = documentCount;
+        this.failures = Collections.unmodifiableList(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public long getPassedCount() {
+        return documentCount - failures.size();
+    }
+
+    public boolean isAllValid() {
+        return failures.isEmpty();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Documents verified per second over the whole run. */
+    public double getDocumentsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : documentCount * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Verified ").append(documentCount).append(" documents: ")
+                .append(getPassedCount()).append(" valid, ")
+                .append(failures.size()).append(" failed.\n");
+        for (Failure f : failures) {
+            sb.append(f).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /** Why a document failed verification. */
+    public enum Reason {
+        /** The document has no hash to check against. */
+        NO_HASH,
+        /** Nothing is stored off-chain under the document's hash. */
+        NOT_STORED,
+        /** The stored content no longer hashes to the document's hash. */
+        HASH_MISMATCH
+    }
+
+    /** One document that failed verification. */
+    public static class Failure {
+
+        private final String shipmentID;
+        private final String documentName;
+        private final String hashValue;
+        private final Reason reason;
+
+        public Failure(String shipmentID, String documentName, String hashValue, Reason reason) {
+            this.shipmentID = shipmentID;
+            this.documentName = documentName;
+            this.hashValue = hashValue;
+            this.reason = reason;
+        }
+
+        public String getShipmentID() {
+            return shipmentID;
+        }
+
+        public String getDocumentName() {
+            return documentName;
+        }
+
+        public String getHashValue() {
+            return hashValue;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Shipment " + shipmentID + " - '" + documentName + "': " + reason;
+        }
+    }
+}
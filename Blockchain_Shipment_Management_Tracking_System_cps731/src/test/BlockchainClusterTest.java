@@ -0,0 +1,121 @@
+package test;
+
+import external.BlockchainCluster;
+import external.BlockchainNetwork;
+import external.ClusterTransport;
+import external.LedgerRecord;
+import gateway.BlockchainNetworkGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the in-process replicated ledger cluster.
+ */
+public class BlockchainClusterTest {
+
+    private BlockchainCluster cluster;
+
+    @AfterEach
+    void cleanup() throws IOException {
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Test
+    void gatewayWrites_convergeOnAllNodesDespiteLoss() throws InterruptedException {
+        cluster = new BlockchainCluster(3, 4, new ClusterTransport(50, 500, 0.2));
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(cluster);
+        gateway.connect();
+
+        for (int i = 0; i < 30; i++) {
+            assertTrue(gateway.sendTransaction("STATUS#S" + (i % 5) + "#IN_TRANSIT"));
+        }
+        assertTrue(cluster.awaitReplication(5_000));
+
+        String head = cluster.getLatestBlock().getHash();
+        for (int n = 1; n < cluster.getNodeCount(); n++) {
+            BlockchainNetwork node = cluster.getNode(n);
+            assertEquals(cluster.getLedgerSnapshot(), node.getLedgerSnapshot());
+            assertEquals(head, node.getLatestBlock().getHash(), "followers seal identical blocks");
+            assertEquals(timeline(cluster), timeline(node), "and keep the leader's commit times");
+            assertTrue(node.validateBlock(head));
+        }
+        assertTrue(cluster.getTransport().getDroppedCount() > 0);
+        assertTrue(cluster.getCommitLatencyMicros(99) >= cluster.getCommitLatencyMicros(50));
+    }
+
+    @Test
+    void commits_needAMajority() throws InterruptedException {
+        cluster = new BlockchainCluster(3, 2, new ClusterTransport());
+        cluster.connect();
+        cluster.setCommitTimeoutMillis(200);
+
+        cluster.getTransport().isolate(2);
+        assertTrue(cluster.storeTransaction("CREATE#S1"), "leader + node 1 are a majority");
+
+        cluster.getTransport().isolate(1);
+        assertEquals(BlockchainCluster.CommitResult.UNKNOWN, cluster.commitTransaction("CREATE#S2"));
+        assertEquals(1, cluster.getTimeoutCount());
+        assertEquals(List.of("CREATE#S1", "CREATE#S2"), cluster.getLedgerSnapshot(), "kept on the leader");
+
+        cluster.getTransport().heal(1);
+        cluster.getTransport().heal(2);
+        assertTrue(cluster.awaitReplication(5_000), "healed nodes catch up");
+        assertEquals(cluster.getLedgerSnapshot(), cluster.getNode(2).getLedgerSnapshot());
+        assertEquals(2, cluster.getCommittedCount() + cluster.getTimeoutCount());
+
+        cluster.disconnect();
+        assertEquals(BlockchainCluster.CommitResult.REJECTED, cluster.commitTransaction("CREATE#S3"));
+    }
+
+    @Test
+    void transport_deliversToEachNodeIndependently() throws InterruptedException {
+        ClusterTransport transport = new ClusterTransport();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        try {
+            transport.send(0, 1, () -> {
+                try {
+                    release.await(); // node 1 is stuck
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            transport.send(0, 2, delivered::countDown);
+            assertTrue(delivered.await(5, TimeUnit.SECONDS), "node 2 is not held up by node 1");
+        } finally {
+            release.countDown();
+            transport.shutdown();
+        }
+    }
+
+    @Test
+    void groupCommit_replicatesWholeBlocks() throws InterruptedException {
+        cluster = new BlockchainCluster(5, 16, new ClusterTransport(0, 200, 0.0));
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(cluster);
+        gateway.connect();
+        gateway.enableGroupCommit(8, 1);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(gateway.sendTransaction("CREATE#S" + i));
+        }
+        gateway.disableGroupCommit();
+        assertTrue(cluster.awaitReplication(5_000));
+        assertEquals(cluster.getBlocks().size(), cluster.getNode(4).getBlocks().size());
+        assertEquals(cluster.getLatestBlock().getHash(), cluster.getNode(4).getLatestBlock().getHash());
+    }
+
+    private static List<String> timeline(BlockchainNetwork node) {
+        return node.queryLedgerByTimeRange(0, Long.MAX_VALUE, null)
+                .map(LedgerRecord::toString).collect(Collectors.toList());
+    }
+}
@@ -1,11 +1,17 @@
 package test;
 
+import external.Block;
 import external.BlockchainNetwork;
 import gateway.BlockchainNetworkGateway;
+import gateway.GroupCommitter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -73,4 +79,102 @@ public class BlockchainNetworkGatewayTest {
         gateway.connect();
         assertDoesNotThrow(() -> gateway.validateBlock("dummy-hash"));
     }
+
+    @Test
+    void testGroupCommitBatchesConcurrentSends() throws Exception {
+        BlockchainNetwork network = new BlockchainNetwork();
+        BlockchainNetworkGateway batching = new BlockchainNetworkGateway(network);
+        batching.connect();
+        batching.enableGroupCommit(8, 50);
+
+        Thread[] senders = new Thread[16];
+        for (int i = 0; i < senders.length; i++) {
+            String id = "S" + i;
+            senders[i] = new Thread(() -> assertTrue(batching.sendTransaction("CREATE#" + id)));
+            senders[i].start();
+        }
+        for (Thread t : senders) {
+            t.join();
+        }
+
+        // every send returned only after its batch was sealed into a block
+        assertEquals(0, network.getPendingCount());
+        assertEquals(16, network.getLedgerSnapshot().size());
+        assertTrue(network.getBlocks().size() < 16, "sends should share blocks");
+        assertEquals(16, batching.getGroupCommitter().getTransactionCount());
+
+        batching.disconnect();
+        assertNull(batching.getGroupCommitter());
+
+        // the mode survives a reconnect
+        batching.connect();
+        assertNotNull(batching.getGroupCommitter());
+        assertTrue(batching.sendTransaction("CREATE#S99"));
+        assertEquals(0, network.getPendingCount());
+        batching.disableGroupCommit();
+        batching.disconnect();
+        batching.connect();
+        assertNull(batching.getGroupCommitter());
+    }
+
+    @Test
+    void testGroupCommitFailureIsNotWrapped() {
+        BlockchainNetwork failing = new BlockchainNetwork() {
+            @Override
+            public Block commitBlock(List<String> transactions) {
+                throw new IllegalStateException("ledger unavailable");
+            }
+        };
+        BlockchainNetworkGateway batching = new BlockchainNetworkGateway(failing);
+        batching.connect();
+        batching.enableGroupCommit(4, 1);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> batching.sendTransaction("CREATE#S1"));
+        assertEquals("ledger unavailable", e.getMessage());
+        batching.disableGroupCommit();
+    }
+
+    @Test
+    void testGroupCommitterSurvivesErrorsAndDrainsWithoutInterrupting() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        BlockchainNetwork flaky = new BlockchainNetwork() {
+            @Override
+            public Block commitBlock(List<String> transactions) {
+                if (commits.incrementAndGet() == 1) {
+                    throw new Error("disk full");
+                }
+                try {
+                    Thread.sleep(50); // shutdown() lands while this commit is in progress
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                return super.commitBlock(transactions);
+            }
+        };
+        flaky.connect();
+        GroupCommitter committer = new GroupCommitter(flaky, 1, 0);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> committer.submit("CREATE#S1").get());
+        assertTrue(e.getCause() instanceof Error);
+
+        // the committer thread is still alive and commits the next batch
+        CompletableFuture<Boolean> next = committer.submit("CREATE#S2");
+        committer.shutdown();
+        assertTrue(next.get());
+        assertFalse(interrupted.get());
+        assertEquals(1, flaky.queryLedger("S2").size());
+        assertFalse(committer.submit("CREATE#S3").get());
+    }
+
+    @Test
+    void testAsyncSendAndQueryUseExecutor() {
+        gateway.setExecutor(Runnable::run); // run inline so the test is deterministic
+        assertFalse(gateway.sendTransactionAsync("CREATE#S300").join());
+
+        gateway.connect();
+        assertTrue(gateway.sendTransactionAsync("CREATE#S300").join());
+        assertEquals(List.of("CREATE#S300"), gateway.queryLedgerAsync("S300").join());
+    }
 }
@@ -0,0 +1,180 @@
+package test;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.ChainValidationReport;
+import external.LedgerRecord;
+import external.MerkleProof;
+import external.ShipmentIndex;
+import external.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the in-memory BlockchainNetwork ledger.
+ */
+public class BlockchainNetworkTest {
+
+    private BlockchainNetwork network;
+
+    @BeforeEach
+    void setup() {
+        network = new BlockchainNetwork();
+        network.connect();
+    }
+
+    @Test
+    void extractShipmentId_handlesControllerFormats() {
+        assertEquals("S1", ShipmentIndex.extractShipmentId("CREATE#S1"));
+        assertEquals("S1", ShipmentIndex.extractShipmentId("STATUS#S1#IN_TRANSIT"));
+        assertEquals("S1", ShipmentIndex.extractShipmentId("INSURANCE_CLAIM: S1 | Insurance claim triggered"));
+        assertNull(ShipmentIndex.extractShipmentId("S1:CREATED"));
+        assertNull(ShipmentIndex.extractShipmentId("CREATE#"));
+    }
+
+    @Test
+    void queryLedger_returnsOnlyExactShipmentInOrder() {
+        network.storeTransaction("CREATE#S1");
+        network.storeTransaction("CREATE#S10");
+        network.storeTransaction("STATUS#S1#IN_TRANSIT");
+        network.storeTransaction("INSURANCE_CLAIM: S1 | damaged");
+
+        List<String> s1 = network.queryLedger("S1");
+        assertEquals(List.of("CREATE#S1", "STATUS#S1#IN_TRANSIT", "INSURANCE_CLAIM: S1 | damaged"), s1);
+        assertEquals(List.of("CREATE#S10"), network.queryLedger("S10"));
+    }
+
+    @Test
+    void queryLedger_stillMatchesFreeFormEntries() {
+        network.storeTransaction("S100:CREATED");
+        network.storeTransaction("CREATE#S100");
+
+        assertEquals(List.of("S100:CREATED", "CREATE#S100"), network.queryLedger("S100"));
+    }
+
+    @Test
+    void storeTransaction_sealsHashChainedBlocks() {
+        BlockchainNetwork small = new BlockchainNetwork(2);
+        small.connect();
+        for (int i = 0; i < 5; i++) {
+            small.storeTransaction("CREATE#S" + i);
+        }
+
+        assertEquals(2, small.getBlocks().size());
+        assertEquals(1, small.getPendingCount());
+
+        Block first = small.getBlocks().get(0);
+        Block second = small.getBlocks().get(1);
+        assertEquals(Block.GENESIS_HASH, first.getPreviousHash());
+        assertEquals(first.getHash(), second.getPreviousHash());
+        assertEquals(2, second.getFirstSequence());
+    }
+
+    @Test
+    void validateBlock_checksSealedBlocksOnly() {
+        network.storeTransaction("CREATE#S1");
+        network.storeTransaction("STATUS#S1#IN_TRANSIT");
+        Block block = network.sealBlock();
+
+        assertNotNull(block);
+        assertTrue(network.validateBlock(block.getHash()));
+        assertFalse(network.validateBlock("dummy-hash"));
+        assertFalse(network.validateBlock(""));
+        assertNull(network.sealBlock(), "nothing pending, so no new block");
+    }
+
+    @Test
+    void merkleProof_verifiesEveryEntryAgainstItsHeader() {
+        BlockchainNetwork net = new BlockchainNetwork(7); // odd size exercises promoted nodes
+        net.connect();
+        for (int i = 0; i < 7; i++) {
+            net.storeTransaction("STATUS#S" + i + "#IN_TRANSIT");
+        }
+
+        for (int i = 0; i < 7; i++) {
+            MerkleProof proof = net.getMerkleProof("STATUS#S" + i + "#IN_TRANSIT");
+            assertNotNull(proof);
+            assertTrue(proof.getDepth() <= 3);
+            assertTrue(proof.verify(net.getBlock(proof.getBlockHash())));
+        }
+        assertNull(net.getMerkleProof("STATUS#S99#IN_TRANSIT"));
+    }
+
+    @Test
+    void merkleProof_onlyForSealedEntriesAndRejectsForgery() {
+        network.storeTransaction("CREATE#S1");
+        network.storeTransaction("CLEARANCE#S1#APPROVE");
+
+        // reading does not seal: pending entries have no proof yet
+        assertNull(network.getMerkleProof("CLEARANCE#S1#APPROVE"));
+        assertTrue(network.getMerkleProofs("S1").isEmpty());
+        assertEquals(2, network.getPendingCount());
+
+        network.sealBlock();
+        MerkleProof proof = network.getMerkleProof("CLEARANCE#S1#APPROVE");
+        assertNotNull(proof);
+
+        MerkleProof forged = new MerkleProof("CLEARANCE#S1#REJECT", proof.getLeafIndex(), proof.getBlockHash(),
+                proof.getMerkleRoot(), new byte[0][], new boolean[0]);
+        assertFalse(forged.verify(network.getBlock(proof.getBlockHash())));
+        assertEquals(2, network.getMerkleProofs("S1").size());
+    }
+
+    @Test
+    void validateChain_checksEveryBlockAndReportsProgress() {
+        BlockchainNetwork small = new BlockchainNetwork(2);
+        small.connect();
+        for (int i = 0; i < 2_001; i++) {
+            small.storeTransaction("STATUS#S" + (i % 50) + "#IN_TRANSIT");
+        }
+        AtomicLong progress = new AtomicLong();
+        ChainValidationReport report = small.validateChain(new ForkJoinPool(4),
+                (done, total) -> progress.accumulateAndGet(done, Math::max));
+
+        assertTrue(report.isValid(), report.toString());
+        assertEquals(1_000, report.getBlockCount(), "the pending entry is not sealed yet");
+        assertEquals(1_000, report.getBlocksChecked());
+        assertEquals(1_000, progress.get());
+        assertEquals(-1, report.getFailedHeight());
+        assertTrue(report.getBlocksPerSecond() > 0);
+    }
+
+    @Test
+    void queryLedgerByTimeRange_returnsEntriesCommittedInRange() throws InterruptedException {
+        BlockchainNetwork small = new BlockchainNetwork(4);
+        small.connect();
+        for (int i = 0; i < 50; i++) {
+            small.storeTransaction("CLEARANCE#S" + i + "#APPROVE");
+        }
+        Thread.sleep(5);
+        long from = System.currentTimeMillis();
+        Thread.sleep(2);
+        for (int i = 50; i < 60; i++) {
+            small.storeTransaction("STATUS#S" + i + "#IN_TRANSIT");
+            small.storeTransaction("CLEARANCE#S" + i + "#REJECT");
+        }
+        Thread.sleep(2);
+        long to = System.currentTimeMillis();
+        Thread.sleep(5);
+        small.storeTransaction("CLEARANCE#S99#APPROVE");
+
+        List<LedgerRecord> clearances = small.queryLedgerByTimeRange(from, to, Transaction.Type.CLEARANCE)
+                .collect(Collectors.toList());
+        assertEquals(10, clearances.size());
+        assertEquals("CLEARANCE#S50#REJECT", clearances.get(0).getEntry());
+        assertEquals(51, clearances.get(0).getSequence());
+        for (LedgerRecord r : clearances) {
+            assertTrue(r.getTimestamp() >= from && r.getTimestamp() < to);
+        }
+        assertEquals(20, small.queryLedgerByTimeRange(from, to, null).count());
+        assertEquals(71, small.queryLedgerByTimeRange(0, Long.MAX_VALUE, null).count(), "pending entries too");
+        assertEquals(0, small.queryLedgerByTimeRange(to, from, null).count());
+    }
+}
@@ -0,0 +1,44 @@
+package test;
+
+import external.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the per-block Bloom filter.
+ */
+public class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndRoughlyTheTargetRate() {
+        BloomFilter filter = BloomFilter.create(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("S" + i);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain("S" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 1_000; i < 101_000; i++) {
+            if (filter.mightContain("S" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "rate " + falsePositives / 100_000.0);
+    }
+
+    @Test
+    void writeAndRead_roundTrips() {
+        BloomFilter filter = BloomFilter.create(16, 0.05);
+        filter.add("S42");
+        ByteBuffer buf = ByteBuffer.allocate(filter.byteSize());
+        filter.writeTo(buf);
+        BloomFilter copy = BloomFilter.readFrom(buf.flip());
+        assertTrue(copy.mightContain("S42"));
+        assertEquals(filter.getNumBits(), copy.getNumBits());
+        assertEquals(filter.getNumHashes(), copy.getNumHashes());
+    }
+}
@@ -0,0 +1,107 @@
+package test;
+
+import external.BlobStore;
+import external.ChunkManifest;
+import external.ChunkStore;
+import external.OffChainStorage;
+import model.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for content-defined chunking and chunk-level deduplication.
+ */
+public class ChunkStoreTest {
+
+    @TempDir
+    Path root;
+    private ChunkStore chunks;
+
+    @BeforeEach
+    void setup() throws IOException {
+        chunks = new ChunkStore(new BlobStore(root), 256, 1024, 4096);
+    }
+
+    /** Random printable text so chunk boundaries fall at varied places. */
+    private static String text(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (' ' + random.nextInt(95)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void put_reassemblesContentAndHashesWholeDocument() throws IOException {
+        String content = text(1, 50_000);
+
+        ChunkManifest manifest = chunks.putString(content);
+
+        Document same = new Document();
+        same.setContent(content);
+        same.generateHash();
+        assertEquals(same.getHashValue(), manifest.getContentHash());
+        assertEquals(50_000, manifest.getLength());
+        assertTrue(manifest.getChunkHashes().size() > 5, "content is split into several chunks");
+        assertEquals(content, chunks.getString(manifest.getKey()));
+        try (InputStream in = chunks.open(manifest.getKey())) {
+            assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(chunks.verify(manifest.getKey(), manifest.getContentHash()));
+    }
+
+    @Test
+    void put_nearIdenticalDocumentsShareChunks() {
+        String base = text(2, 40_000);
+        String edited = base.substring(0, 20_000) + "AMENDED CONSIGNEE" + base.substring(20_000);
+
+        chunks.putString(base);
+        long storedAfterFirst = chunks.getStoredBytes();
+        ChunkManifest second = chunks.putString(edited);
+
+        long newBytes = chunks.getStoredBytes() - storedAfterFirst;
+        assertTrue(newBytes < 10_000, "only chunks around the edit are new, wrote " + newBytes);
+        assertTrue(chunks.getChunksReused() > 0);
+        assertTrue(chunks.getStorageRatio() < 0.7);
+        assertEquals(edited, chunks.getString(second.getKey()));
+    }
+
+    @Test
+    void verify_detectsTamperedChunk() throws IOException {
+        ChunkManifest manifest = chunks.putString(text(3, 10_000));
+        String firstChunk = manifest.getChunkHashes().get(0);
+
+        Files.write(chunks.getBlobStore().pathFor(firstChunk), "forged".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(chunks.verify(manifest.getKey(), manifest.getContentHash()));
+    }
+
+    @Test
+    void offChainStorage_withChunkStore_offloadsAndVerifies() {
+        OffChainStorage storage = new OffChainStorage(chunks);
+        Document d = new Document();
+        d.setName("packing-list.txt");
+        d.setContent(text(4, 8_000));
+        d.generateHash();
+        String hash = d.getHashValue();
+
+        storage.storeFile(d);
+
+        assertFalse(d.isContentLoaded());
+        assertEquals(hash, d.getHashValue(), "the on-chain key stays the content hash");
+        assertTrue(storage.verify(d));
+        assertTrue(d.verifyHash());
+        assertSame(d, storage.getFileByHash(hash));
+    }
+}
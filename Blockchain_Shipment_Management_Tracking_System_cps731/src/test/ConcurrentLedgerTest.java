@@ -0,0 +1,179 @@
+package test;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.ConcurrentLedger;
+import external.LedgerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the lock-free ledger append path.
+ */
+public class ConcurrentLedgerTest {
+
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 2000;
+
+    @Test
+    void append_keepsOrderAcrossChunkBoundaries() {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, ledger.append("E" + i, i));
+        }
+        assertEquals(5000, ledger.size());
+        assertEquals("E1023", ledger.get(1023));
+        assertEquals("E1024", ledger.get(1024));
+        assertEquals(4999L, ledger.timeAt(4999));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.get(5000));
+    }
+
+    @Test
+    void concurrentAppends_publishEveryEntryOnce() throws InterruptedException {
+        ConcurrentLedger ledger = new ConcurrentLedger();
+        runWriters(i -> ledger.append(i, 0));
+
+        assertEquals(THREADS * PER_THREAD, ledger.size());
+        assertEquals(THREADS * PER_THREAD, new HashSet<>(ledger).size());
+    }
+
+    @Test
+    void concurrentStores_indexAndSealEveryEntry() throws InterruptedException {
+        BlockchainNetwork network = new BlockchainNetwork(16);
+        network.connect();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        runWriters(entry -> {
+            if (!network.storeTransaction(entry) || network.queryLedger(shipmentOf(entry)).indexOf(entry) < 0) {
+                failed.add(entry); // must read its own write
+            }
+        });
+
+        assertTrue(failed.isEmpty(), failed.toString());
+        assertEquals(THREADS * PER_THREAD, network.getLedgerSize());
+        List<Block> blocks = network.getBlocks();
+        assertEquals(THREADS * PER_THREAD / 16, blocks.size());
+        for (Block block : blocks) {
+            assertEquals(16, block.getTransactionCount());
+        }
+        assertTrue(network.validateChain().isValid());
+        assertEquals(PER_THREAD, network.queryLedger("S3").size());
+    }
+
+    @Test
+    void commitBlock_keepsEachBatchContiguousAmongConcurrentStores() throws InterruptedException {
+        BlockchainNetwork network = new BlockchainNetwork(16);
+        network.connect();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<List<String>> batches = new ArrayList<>();
+        Thread committer = new Thread(() -> {
+            for (int b = 0; writing.get(); b++) {
+                List<String> batch = new ArrayList<>();
+                for (int i = 0; i <= b % 20; i++) {
+                    batch.add("batch " + b + " entry " + i);
+                }
+                network.commitBlock(batch);
+                batches.add(batch);
+            }
+        });
+        committer.start();
+        runWriters(network::storeTransaction);
+        writing.set(false);
+        committer.join();
+
+        int batchEntries = batches.stream().mapToInt(List::size).sum();
+        assertEquals(THREADS * PER_THREAD + batchEntries, network.getLedgerSize());
+        int nextBatch = 0;
+        for (Block block : network.getBlocks()) {
+            List<String> entries = network.readLedgerRecords(block.getFirstSequence(), block.getTransactionCount())
+                    .stream().map(LedgerRecord::getEntry).collect(Collectors.toList());
+            int stored = 0;
+            while (stored < entries.size() && entries.get(stored).startsWith("STATUS#")) {
+                stored++;
+            }
+            if (stored == entries.size()) {
+                assertEquals(16, entries.size(), "block " + block.getHeight());
+            } else {
+                // pending stores, then exactly one whole batch
+                assertTrue(stored < 16, "block " + block.getHeight() + " has " + stored + " stores before its batch");
+                assertEquals(batches.get(nextBatch++), entries.subList(stored, entries.size()),
+                        "block " + block.getHeight());
+            }
+        }
+        assertEquals(batches.size(), nextBatch);
+        assertTrue(network.validateChain().isValid());
+    }
+
+    @Test
+    void storeTransaction_returnsWhileAnotherThreadHoldsTheLock() throws InterruptedException {
+        BlockchainNetwork network = new BlockchainNetwork(4);
+        network.connect();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            synchronized (network) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+
+        AtomicBoolean stored = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                stored.compareAndSet(true, network.storeTransaction("STATUS#S1#" + i));
+            }
+        });
+        writer.start();
+        writer.join(5_000);
+        assertFalse(writer.isAlive(), "stores must not wait for the lock holder");
+        release.countDown();
+        holder.join();
+
+        assertTrue(stored.get());
+        assertEquals(10, network.queryLedger("S1").size());
+        assertEquals(2, network.getBlocks().size());
+        assertEquals(2, network.getPendingCount());
+    }
+
+    private static String shipmentOf(String entry) {
+        return entry.substring("STATUS#".length(), entry.indexOf('#', "STATUS#".length()));
+    }
+
+    private static void runWriters(Consumer<String> append) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int writer = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        append.accept("STATUS#S" + writer + "#" + i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+    }
+}
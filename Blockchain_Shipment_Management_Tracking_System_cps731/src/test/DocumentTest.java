@@ -0,0 +1,83 @@
+package test;
+
+import model.Document;
+import model.Sha256;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for Document hashing and the shared Sha256 helpers.
+ */
+public class DocumentTest {
+
+    /** The digest generateHash() used to compute, for comparison. */
+    private static String reference(String content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void generateHash_matchesPlainSha256OfUtf8() throws Exception {
+        // multi-byte characters straddling the 8 KB encode chunk boundary
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 20_000) {
+            big.append("Zoll-Erklärung ✓ 貨物 ");
+        }
+        for (String content : new String[] { "", "test-data", "Café Ø", "box 📦 \ud800 end", big.toString() }) {
+            Document d = new Document();
+            d.setContent(content);
+            d.generateHash();
+            assertEquals(reference(content), d.getHashValue());
+            assertTrue(d.verifyHash());
+        }
+    }
+
+    @Test
+    void verifyHash_detectsTamperingAndMissingData() {
+        Document d = new Document();
+        d.setContent("invoice total 100");
+        d.generateHash();
+
+        d.setContent("invoice total 900");
+        assertFalse(d.verifyHash());
+
+        d.setContent(null);
+        d.generateHash();
+        assertNull(d.getHashValue());
+        assertFalse(d.verifyHash());
+    }
+
+    @Test
+    void hexRoundTrip() {
+        byte[] digest = Sha256.digest(new byte[] { 1, 2, 3 });
+        assertArrayEquals(digest, Sha256.fromHex(Sha256.toHex(digest)));
+        assertThrows(IllegalArgumentException.class, () -> Sha256.fromHex("zz"));
+    }
+
+    @Test
+    void contentVersion_countsEveryConcurrentChange() throws Exception {
+        Document d = new Document("manifest.txt", null);
+        long before = d.getContentVersion();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    d.setHashValue("h" + i);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(before + 40_000, d.getContentVersion());
+    }
+}
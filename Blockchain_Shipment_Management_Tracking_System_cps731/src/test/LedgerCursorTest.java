@@ -0,0 +1,118 @@
+package test;
+
+import external.BlockchainNetwork;
+import external.LedgerCursor;
+import external.LedgerRecord;
+import gateway.BlockchainNetworkGateway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for paged, point-in-time ledger cursors.
+ */
+public class LedgerCursorTest {
+
+    private BlockchainNetwork network;
+
+    @BeforeEach
+    void setup() {
+        network = new BlockchainNetwork(4);
+        network.connect();
+        for (int i = 0; i < 25; i++) {
+            network.storeTransaction("CREATE#S" + i);
+        }
+    }
+
+    @Test
+    void pages_coverTheViewAndIgnoreLaterAppends() {
+        LedgerCursor cursor = network.openCursor(10);
+        network.storeTransaction("CREATE#S99"); // after the watermark
+
+        assertEquals(10, cursor.nextPage().size());
+        assertEquals(10, cursor.nextPage().size());
+        List<LedgerRecord> last = cursor.nextPage();
+        assertEquals(5, last.size());
+        assertEquals("CREATE#S24", last.get(4).getEntry());
+        assertEquals(24, last.get(4).getSequence());
+        assertFalse(cursor.hasMore());
+        assertTrue(cursor.nextPage().isEmpty());
+    }
+
+    @Test
+    void resumeToken_continuesTheSameView() {
+        LedgerCursor cursor = network.openCursor(7);
+        cursor.nextPage();
+        String token = cursor.getResumeToken();
+        network.storeTransaction("CREATE#S99");
+
+        LedgerCursor resumed = network.resumeCursor(token);
+        assertEquals(7, resumed.getPosition());
+        assertEquals(25, resumed.getWatermark());
+        List<String> rest = resumed.stream().map(LedgerRecord::getEntry).collect(Collectors.toList());
+        assertEquals(18, rest.size());
+        assertEquals("CREATE#S7", rest.get(0));
+
+        BlockchainNetwork other = new BlockchainNetwork(4);
+        other.connect();
+        for (int i = 0; i < 30; i++) {
+            other.storeTransaction("STATUS#S" + i + "#IN_TRANSIT");
+        }
+        assertThrows(IllegalArgumentException.class, () -> other.resumeCursor(token));
+        assertThrows(IllegalArgumentException.class, () -> network.resumeCursor("L1.zz"));
+    }
+
+    @Test
+    void resumeToken_isRejectedByAnotherUnsealedLedger() {
+        BlockchainNetwork first = new BlockchainNetwork(100);
+        BlockchainNetwork second = new BlockchainNetwork(100);
+        first.connect();
+        second.connect();
+        for (int i = 0; i < 10; i++) {
+            first.storeTransaction("CREATE#S" + i);
+            second.storeTransaction("CREATE#T" + i);
+        }
+        assertTrue(first.getBlocks().isEmpty() && second.getBlocks().isEmpty(), "nothing sealed yet");
+
+        LedgerCursor cursor = first.openCursor(4);
+        cursor.nextPage();
+        String token = cursor.getResumeToken();
+        assertThrows(IllegalArgumentException.class, () -> second.resumeCursor(token));
+
+        first.sealBlock();
+        assertEquals("CREATE#S4", first.resumeCursor(token).nextPage().get(0).getEntry(),
+                "sealing keeps the ledger's identity");
+    }
+
+    @Test
+    void resumeToken_survivesRestartOfAnUnsealedLedger(@TempDir Path dir) throws IOException {
+        BlockchainNetwork persistent = BlockchainNetwork.open(dir, 100);
+        persistent.connect();
+        for (int i = 0; i < 10; i++) {
+            persistent.storeTransaction("CREATE#S" + i);
+        }
+        String token = persistent.openCursor(0, 3).getResumeToken();
+        persistent.close();
+
+        BlockchainNetwork restarted = BlockchainNetwork.open(dir, 100);
+        restarted.connect();
+        assertEquals(10, restarted.resumeCursor(token).stream().count());
+        restarted.close();
+    }
+
+    @Test
+    void gateway_streamsTheLedgerWithoutMaterializingIt() {
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(network);
+        assertNull(gateway.openLedgerCursor(8), "not connected");
+        gateway.connect();
+        assertEquals(network.getLedgerSnapshot(), gateway.openLedgerCursor(8).stream()
+                .map(LedgerRecord::getEntry).collect(Collectors.toList()));
+    }
+}
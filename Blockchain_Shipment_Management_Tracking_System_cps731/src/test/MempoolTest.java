@@ -0,0 +1,135 @@
+package test;
+
+import external.BlockchainNetwork;
+import gateway.BlockchainNetworkGateway;
+import gateway.Mempool;
+import gateway.Mempool.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the mempool stage in front of block production.
+ */
+public class MempoolTest {
+
+    private BlockchainNetwork network;
+
+    @BeforeEach
+    void setup() {
+        network = new BlockchainNetwork();
+        network.connect();
+    }
+
+    @Test
+    void submit_dropsDuplicatesWhilePending() {
+        Mempool pool = new Mempool(network, 100, 100, 1 << 20);
+        CompletableFuture<Boolean> first = pool.submit("STATUS#S1#IN_TRANSIT");
+        CompletableFuture<Boolean> second = pool.submit("STATUS#S1#IN_TRANSIT");
+        assertSame(first, second);
+        assertTrue(first.join());
+        pool.shutdown();
+
+        assertEquals(List.of("STATUS#S1#IN_TRANSIT"), network.getLedgerSnapshot());
+        assertEquals(1, pool.getDuplicateCount());
+    }
+
+    @Test
+    void submit_keepsARepeatedStatusAfterAnotherOne() {
+        Mempool pool = new Mempool(network, 100, 60_000, 1 << 20);
+        CompletableFuture<Boolean> first = pool.submit("STATUS#S1#IN_TRANSIT");
+        pool.submit("STATUS#S1#AT_CUSTOMS");
+        CompletableFuture<Boolean> again = pool.submit("STATUS#S1#IN_TRANSIT");
+        assertNotSame(first, again);
+        pool.submit("note A");
+        pool.submit("note B");
+        pool.submit("note A"); // no shipment: any pending equal entry is a duplicate
+        pool.flush();
+        assertTrue(again.join());
+        pool.shutdown();
+
+        assertEquals(List.of("STATUS#S1#IN_TRANSIT", "STATUS#S1#AT_CUSTOMS", "STATUS#S1#IN_TRANSIT",
+                "note A", "note B"), network.getLedgerSnapshot());
+        assertEquals(1, pool.getDuplicateCount());
+    }
+
+    @Test
+    void blocks_areFilledByPriorityButKeepShipmentOrder() {
+        Mempool pool = new Mempool(network, 100, 60_000, 1 << 20);
+        pool.submit("CREATE#S1", Priority.BULK);
+        pool.submit("STATUS#S2#IN_TRANSIT");
+        pool.submit("STATUS#S4#AT_CUSTOMS");
+        pool.submit("CLEARANCE#S3#APPROVE");
+        CompletableFuture<Boolean> last = pool.submit("CLEARANCE#S4#APPROVE");
+        assertEquals(5, pool.getDepth());
+        assertEquals(3, pool.getDepth(Priority.URGENT), "S4's status update is promoted");
+
+        pool.flush(); // close the block now instead of after the linger time
+        assertTrue(last.join());
+        pool.shutdown();
+        assertEquals(List.of("STATUS#S4#AT_CUSTOMS", "CLEARANCE#S3#APPROVE", "CLEARANCE#S4#APPROVE",
+                "STATUS#S2#IN_TRANSIT", "CREATE#S1"), network.getLedgerSnapshot());
+        assertEquals(1, pool.getBlockCount());
+        assertTrue(pool.getMaxWaitMillis() >= pool.getAverageWaitMillis(Priority.BULK));
+    }
+
+    @Test
+    void memoryCap_evictsLowestPriorityNewestFirst() {
+        // room for three "CREATE#Sn", or two and the dispute
+        long maxBytes = 2 * Mempool.sizeOf("CREATE#S1") + Mempool.sizeOf("DISPUTE#S9");
+        assertTrue(3 * (Mempool.ENTRY_OVERHEAD + 2 * "CREATE#S1".length()) <= maxBytes);
+        Mempool pool = new Mempool(network, 100, 60_000, maxBytes);
+        CompletableFuture<Boolean> s1 = pool.submit("CREATE#S1", Priority.BULK);
+        pool.submit("CREATE#S2", Priority.BULK);
+        CompletableFuture<Boolean> s3 = pool.submit("CREATE#S3", Priority.BULK);
+
+        CompletableFuture<Boolean> urgent = pool.submit("DISPUTE#S9");
+        assertFalse(s3.join(), "newest bulk entry makes room");
+        assertFalse(pool.submit("CREATE#S4", Priority.BULK).join(), "nothing less urgent to evict");
+        assertEquals(1, pool.getEvictedCount());
+        assertEquals(1, pool.getRejectedCount());
+        assertTrue(pool.getBytes() <= pool.getMaxBytes());
+
+        pool.shutdown();
+        assertTrue(s1.join() && urgent.join());
+        assertEquals(List.of("DISPUTE#S9", "CREATE#S1", "CREATE#S2"), network.getLedgerSnapshot());
+    }
+
+    @Test
+    void memoryCap_urgentEntryDoesNotEvictItsOwnShipment() {
+        // room for three "CREATE#Sn", or two and the clearance
+        long maxBytes = 2 * Mempool.sizeOf("CREATE#S1") + Mempool.sizeOf("CLEARANCE#S3#APPROVE");
+        Mempool pool = new Mempool(network, 100, 60_000, maxBytes);
+        CompletableFuture<Boolean> s1 = pool.submit("CREATE#S1");
+        CompletableFuture<Boolean> s2 = pool.submit("CREATE#S2");
+        CompletableFuture<Boolean> s3 = pool.submit("CREATE#S3");
+
+        // S3 is the newest NORMAL entry, but it is S3's own predecessor
+        CompletableFuture<Boolean> clearance = pool.submit("CLEARANCE#S3#APPROVE");
+        assertFalse(s2.join(), "the newest entry of another shipment makes room");
+        assertEquals(1, pool.getEvictedCount());
+        assertEquals(2, pool.getDepth(Priority.URGENT), "S3's create is promoted, not evicted");
+
+        pool.shutdown();
+        assertTrue(s1.join() && s3.join() && clearance.join());
+        assertEquals(List.of("CREATE#S3", "CLEARANCE#S3#APPROVE", "CREATE#S1"), network.getLedgerSnapshot());
+    }
+
+    @Test
+    void gateway_routesThroughMempool() {
+        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(network);
+        gateway.connect();
+        gateway.enableMempool(16, 1, 1 << 20);
+        assertTrue(gateway.sendTransaction("CREATE#S1"));
+        assertTrue(gateway.submitTransaction("CREATE#S2", Priority.BULK).join());
+        assertEquals(2, gateway.getMempool().getCommittedCount());
+
+        gateway.enableGroupCommit(16, 1);
+        assertNull(gateway.getMempool(), "modes are exclusive");
+        gateway.disconnect();
+    }
+}
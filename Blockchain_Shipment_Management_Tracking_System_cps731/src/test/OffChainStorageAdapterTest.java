@@ -0,0 +1,76 @@
+package test;
+
+import external.OffChainStorage;
+import gateway.OffChainStorageAdapter;
+import model.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OffChainStorageAdapter, mainly the verification cache.
+ */
+public class OffChainStorageAdapterTest {
+
+    private OffChainStorageAdapter adapter;
+
+    @BeforeEach
+    void setup() {
+        adapter = new OffChainStorageAdapter(new OffChainStorage());
+        adapter.connect();
+    }
+
+    private Document upload(String content) {
+        Document d = new Document();
+        d.setName("invoice.txt");
+        d.setContent(content);
+        d.generateHash();
+        adapter.uploadFile(d);
+        return d;
+    }
+
+    @Test
+    void verifyIntegrity_unchangedDocumentIsAnsweredFromCache() {
+        Document d = upload("invoice total 100");
+
+        assertTrue(adapter.verifyIntegrity(d));
+        assertTrue(adapter.verifyIntegrity(d));
+        assertTrue(adapter.verifyIntegrity(d));
+
+        assertEquals(1, adapter.getVerificationMisses());
+        assertEquals(2, adapter.getVerificationHits());
+        assertEquals(2.0 / 3, adapter.getVerificationHitRate(), 1e-9);
+        assertEquals(17, adapter.getBytesHashed());
+        assertEquals(34, adapter.getBytesHashingSaved());
+    }
+
+    @Test
+    void verifyIntegrity_setContentInvalidatesCachedResult() {
+        Document d = upload("invoice total 100");
+        long version = d.getContentVersion();
+        assertTrue(adapter.verifyIntegrity(d));
+
+        d.setContent("invoice total 900");
+
+        assertNotEquals(version, d.getContentVersion());
+        assertFalse(adapter.verifyIntegrity(d), "tampering is seen despite the earlier result");
+        assertFalse(adapter.verifyIntegrity(d));
+        assertEquals(2, adapter.getVerificationMisses());
+        assertEquals(1, adapter.getVerificationHits());
+    }
+
+    @Test
+    void verifyIntegrity_newDocumentUnderSameHashIsRechecked() {
+        Document first = upload("packing list");
+        assertTrue(adapter.verifyIntegrity(first));
+
+        Document replacement = upload("packing list");
+        assertTrue(adapter.verifyIntegrity(replacement));
+
+        assertEquals(2, adapter.getVerificationMisses());
+        adapter.clearVerificationCache();
+        assertTrue(adapter.verifyIntegrity(replacement));
+        assertEquals(3, adapter.getVerificationMisses());
+    }
+}
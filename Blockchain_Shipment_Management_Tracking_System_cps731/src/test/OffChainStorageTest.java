@@ -0,0 +1,171 @@
+package test;
+
+import external.BlobStore;
+import external.ChunkStore;
+import external.OffChainStorage;
+import model.Document;
+import model.Sha256;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OffChainStorage lookups and replace-on-same-hash behaviour.
+ */
+public class OffChainStorageTest {
+
+    private OffChainStorage storage;
+
+    @BeforeEach
+    void setup() {
+        storage = new OffChainStorage();
+    }
+
+    private Document doc(String name, String content) {
+        Document d = new Document();
+        d.setName(name);
+        d.setContent(content);
+        d.generateHash();
+        return d;
+    }
+
+    @Test
+    void storeFile_replacesDocumentWithSameHash() {
+        Document first = doc("invoice.pdf", "same-bytes");
+        Document second = doc("INVOICE-v2.pdf", "same-bytes");
+
+        storage.storeFile(first);
+        storage.storeFile(second);
+
+        assertEquals(1, storage.getAllDocuments().size());
+        assertSame(second, storage.getFileByHash(first.getHashValue()));
+        assertNull(storage.getFileByName("invoice.pdf"), "replaced document leaves the name index");
+        assertSame(second, storage.getFileByName("invoice-V2.PDF"));
+    }
+
+    @Test
+    void getFileByName_returnsEarliestMatchIgnoringCase() {
+        Document a = doc("packing-list.txt", "a");
+        Document b = doc("Packing-List.txt", "b");
+        storage.storeFile(a);
+        storage.storeFile(b);
+
+        assertSame(a, storage.getFileByName("PACKING-LIST.TXT"));
+        assertNull(storage.getFileByName("missing.txt"));
+        assertNull(storage.getFileByHash(null));
+    }
+
+    @Test
+    void documentsWithoutHash_areKeptSeparately() {
+        storage.storeFile(new Document());
+        storage.storeFile(new Document());
+
+        List<Document> snapshot = storage.getAllDocuments();
+        assertEquals(2, snapshot.size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.clear());
+
+        storage.storeFile(new Document());
+        assertEquals(2, snapshot.size(), "snapshot is not a live view");
+    }
+
+    @Test
+    void blobStore_offloadsContentAndLoadsItLazily(@TempDir Path root) throws IOException {
+        BlobStore blobs = new BlobStore(root);
+        OffChainStorage onDisk = new OffChainStorage(blobs);
+
+        Document d = doc("bill-of-lading.txt", "container MSCU1234567");
+        String hash = d.getHashValue();
+        onDisk.storeFile(d);
+
+        assertFalse(d.isContentLoaded(), "content is dropped from the heap");
+        assertTrue(Files.exists(root.resolve("sha256").resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4)).resolve(hash)));
+        assertEquals("container MSCU1234567", onDisk.getFileByHash(hash).getContent());
+        assertTrue(d.verifyHash());
+
+        // same bytes again: one blob on disk
+        onDisk.storeFile(doc("copy.txt", "container MSCU1234567"));
+        try (Stream<Path> files = Files.walk(root)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void storeStream_hashesWhileWritingChunks(@TempDir Path root) throws IOException {
+        OffChainStorage onDisk = new OffChainStorage(new BlobStore(root, 16));
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("line ").append(i).append(" of the manifest\n");
+        }
+        Document streamed = new Document();
+        streamed.setName("manifest.txt");
+        onDisk.storeStream(streamed, Channels.newChannel(
+                new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(doc("x", text.toString()).getHashValue(), streamed.getHashValue());
+        assertFalse(streamed.isContentLoaded());
+        assertEquals(text.toString(), streamed.getContent());
+        assertTrue(onDisk.verify(streamed));
+
+        // tamper with the blob on disk
+        Files.write(Path.of(streamed.getFilePath()), "forged".getBytes(StandardCharsets.UTF_8));
+        assertFalse(onDisk.verify(streamed));
+    }
+
+    @Test
+    void storeStream_keepsBinaryContentIntact(@TempDir Path root) throws IOException {
+        byte[] image = new byte[4096];
+        new Random(7).nextBytes(image); // not valid UTF-8
+        for (OffChainStorage onDisk : new OffChainStorage[] {
+                new OffChainStorage(new BlobStore(root.resolve("blobs"))),
+                new OffChainStorage(new ChunkStore(new BlobStore(root.resolve("chunks")), 256, 1024, 4096)) }) {
+            Document scan = new Document();
+            scan.setName("bill-of-lading.png");
+            onDisk.storeStream(scan, Channels.newChannel(new ByteArrayInputStream(image)));
+
+            assertArrayEquals(image, scan.getContentBytes());
+            assertTrue(scan.verifyHash(), "hash of the raw bytes");
+            assertTrue(onDisk.verify(scan));
+            String hash = scan.getHashValue();
+            scan.generateHash();
+            assertEquals(hash, scan.getHashValue());
+        }
+    }
+
+    @Test
+    void storeStream_withoutBlobStore_buffersContent() {
+        Document streamed = new Document();
+        storage.storeStream(streamed, Channels.newChannel(
+                new ByteArrayInputStream("customs form".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals("customs form", streamed.getContent());
+        assertTrue(streamed.verifyHash());
+        assertSame(streamed, storage.getFileByHash(streamed.getHashValue()));
+    }
+
+    @Test
+    void storeStream_withoutBlobStore_keepsBinaryContentIntact() {
+        // not valid UTF-8: decoding it as text would replace these bytes
+        byte[] image = {(byte) 0x89, 'P', 'N', 'G', (byte) 0xFF, (byte) 0xFE, 0, (byte) 0xC3};
+        Document scan = new Document();
+        storage.storeStream(scan, Channels.newChannel(new ByteArrayInputStream(image)));
+
+        assertArrayEquals(image, scan.getContentBytes());
+        assertEquals(Sha256.toHex(Sha256.digest(image)), scan.getHashValue());
+        assertTrue(storage.verify(scan));
+        assertEquals(image.length, storage.contentSize(scan));
+    }
+}
@@ -0,0 +1,133 @@
+package test;
+
+import controller.RegistrySnapshot;
+import controller.ShipmentLifecycleController;
+import external.BlockchainNetwork;
+import external.OffChainStorage;
+import gateway.BlockchainNetworkGateway;
+import gateway.OffChainStorageAdapter;
+import model.Document;
+import model.Shipment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for registry snapshots and the snapshot + ledger tail restart.
+ */
+public class RegistrySnapshotTest {
+
+    @TempDir
+    Path dir;
+    private BlockchainNetworkGateway gateway;
+    private OffChainStorageAdapter storage;
+
+    @BeforeEach
+    void setup() {
+        gateway = new BlockchainNetworkGateway(new BlockchainNetwork());
+        storage = new OffChainStorageAdapter(new OffChainStorage());
+    }
+
+    @Test
+    void writeAndRead_roundTripsShipmentsWithSharedStrings() throws IOException {
+        ShipmentLifecycleController controller = TestControllers.lifecycle(gateway, storage);
+        Shipment a = controller.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        controller.createShipment(null, "S2", "Toronto", "Lima", "Copper");
+        controller.updateShipmentStatus(a, "IN_TRANSIT");
+        Document invoice = controller.uploadDocument(a, "invoice.pdf", "total 100");
+
+        Path file = dir.resolve("registry.snap");
+        controller.snapshot(file);
+        RegistrySnapshot loaded = RegistrySnapshot.read(file);
+
+        Shipment s1 = loaded.getShipments().get("S1");
+        assertEquals("Toronto", s1.getOrigin());
+        assertEquals("Oslo", s1.getDestination());
+        assertEquals("IN_TRANSIT", s1.getStatus());
+        assertEquals(a.getDispatchDate(), s1.getDispatchDate());
+        assertEquals(a.getHistory().size(), s1.getHistory().size());
+        assertEquals(a.getHistory().get(2).getMessage(), s1.getHistory().get(2).getMessage());
+        assertEquals(1, s1.getDocuments().size());
+        assertEquals(invoice.getHashValue(), s1.getDocuments().get(0).getHashValue());
+        assertSame(s1.getOrigin(), loaded.getShipments().get("S2").getOrigin(), "strings are deduplicated");
+        assertEquals(gateway.getLedgerSize(), loaded.getSequence());
+    }
+
+    @Test
+    void restoreFromSnapshot_replaysOnlyTheLedgerTail() throws IOException {
+        ShipmentLifecycleController before = TestControllers.lifecycle(gateway, storage);
+        Shipment a = before.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        before.uploadDocument(a, "invoice.pdf", "total 100");
+        Path file = dir.resolve("registry.snap");
+        before.snapshot(file);
+        int historyAtSnapshot = a.getHistory().size();
+
+        // written after the snapshot: only on the ledger
+        before.updateShipmentStatus(a, "IN_TRANSIT");
+        before.createShipment(null, "S2", "Lima", "Perth", "Copper");
+
+        ShipmentLifecycleController after = TestControllers.lifecycle(gateway, storage);
+        assertEquals(2, after.restoreFromSnapshot(file));
+
+        Shipment s1 = after.findShipmentById("S1");
+        assertEquals("Oslo", s1.getDestination(), "from the snapshot");
+        assertEquals("IN_TRANSIT", s1.getStatus(), "from the ledger tail");
+        assertEquals(historyAtSnapshot + 1, s1.getHistory().size(), "nothing is applied twice");
+        assertTrue(s1.getDocuments().get(0).verifyHash(), "linked to the stored document");
+        assertEquals("CREATED", after.findShipmentById("S2").getStatus());
+    }
+
+    @Test
+    void read_rejectsOtherFiles() throws IOException {
+        Path file = dir.resolve("not-a-snapshot");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> RegistrySnapshot.read(file));
+    }
+
+    @Test
+    void read_rejectsTruncatedFiles() throws IOException {
+        ShipmentLifecycleController controller = TestControllers.lifecycle(gateway, storage);
+        Shipment a = controller.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        controller.updateShipmentStatus(a, "IN_TRANSIT");
+        Path file = dir.resolve("registry.snap");
+        controller.snapshot(file);
+        byte[] whole = Files.readAllBytes(file);
+
+        Path cut = dir.resolve("cut.snap");
+        for (int length = 28; length < whole.length; length++) {
+            Files.write(cut, Arrays.copyOf(whole, length));
+            assertThrows(IOException.class, () -> RegistrySnapshot.read(cut), "cut at " + length);
+        }
+        // a body that runs into the string table
+        ByteBuffer.wrap(whole).putInt(16, 50);
+        Files.write(cut, whole);
+        assertThrows(IOException.class, () -> RegistrySnapshot.read(cut));
+    }
+
+    @Test
+    void periodicSnapshots_reportFailuresToTheCaller() throws Exception {
+        ShipmentLifecycleController controller = TestControllers.lifecycle(gateway, storage);
+        controller.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        Path taken = Files.createDirectory(dir.resolve("taken")); // a directory cannot be replaced by a file
+        Files.write(taken.resolve("keep"), new byte[1]);
+
+        CompletableFuture<Exception> failure = new CompletableFuture<>();
+        controller.startPeriodicSnapshots(taken, 5, failure::complete);
+        try {
+            Exception e = failure.get(5, TimeUnit.SECONDS);
+            assertTrue(e instanceof IOException, e.toString());
+        } finally {
+            controller.stopPeriodicSnapshots();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package test;
+
+import external.Block;
+import external.BlockchainNetwork;
+import external.ChainValidationReport;
+import external.LedgerRecord;
+import external.MerkleProof;
+import external.SegmentLog;
+import external.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the memory-mapped SegmentLog and the persistent ledger on top of it.
+ */
+public class SegmentLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendAndRead_rollsOverSegments() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, 128, 0)) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i, log.appendString("STATUS#S" + i + "#IN_TRANSIT"));
+            }
+            assertTrue(log.getSegmentCount() > 1);
+            assertEquals("STATUS#S0#IN_TRANSIT", log.readString(0));
+            assertEquals("STATUS#S49#IN_TRANSIT", log.readString(49));
+            assertThrows(IllegalArgumentException.class, () -> log.append(new byte[200]));
+        }
+    }
+
+    @Test
+    void reopen_keepsOnlySyncedRecords() throws IOException {
+        SegmentLog log = new SegmentLog(dir, 1024, 0);
+        log.appendString("CREATE#S1");
+        log.appendString("CREATE#S2");
+        log.sync();
+        log.appendString("CREATE#S3"); // never synced
+
+        SegmentLog reopened = new SegmentLog(dir, 1024, 0);
+        assertEquals(2, reopened.size());
+        assertEquals("CREATE#S2", reopened.readString(1));
+
+        reopened.appendString("CREATE#S4");
+        assertEquals("CREATE#S4", reopened.readString(2));
+        reopened.close();
+    }
+
+    @Test
+    void truncate_dropsRecordsAcrossSegmentsAndRestart() throws IOException {
+        SegmentLog log = new SegmentLog(dir, 128, 0);
+        for (int i = 0; i < 50; i++) {
+            log.appendString("STATUS#S" + i + "#IN_TRANSIT");
+        }
+        log.sync();
+        log.truncate(3);
+        assertEquals(3, log.size());
+        assertEquals(3, log.appendString("CREATE#S3"));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.truncate(5));
+        log.close();
+
+        try (SegmentLog reopened = new SegmentLog(dir, 128, 0)) {
+            assertEquals(4, reopened.size());
+            assertEquals("STATUS#S2#IN_TRANSIT", reopened.readString(2));
+            assertEquals("CREATE#S3", reopened.readString(3));
+        }
+    }
+
+    @Test
+    void persistentNetwork_survivesRestart() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 2);
+        network.connect();
+        network.storeTransaction("CREATE#S1");
+        network.storeTransaction("STATUS#S1#IN_TRANSIT");
+        network.storeTransaction("CREATE#S2");
+        network.sealBlock();
+        List<Block> before = network.getBlocks();
+        String lastHash = network.getLatestBlock().getHash();
+        network.close();
+
+        BlockchainNetwork restarted = BlockchainNetwork.open(dir, 2);
+        restarted.connect();
+        assertEquals(before.size(), restarted.getBlocks().size());
+        assertEquals(lastHash, restarted.getLatestBlock().getHash());
+        assertTrue(restarted.validateBlock(lastHash));
+        assertEquals(List.of("CREATE#S1", "STATUS#S1#IN_TRANSIT"), restarted.queryLedger("S1"));
+        restarted.close();
+    }
+
+    @Test
+    void reopenedNetwork_indexesOldAndNewEntriesOnFirstLookup() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 4);
+        network.connect();
+        for (int i = 0; i < 10; i++) {
+            network.storeTransaction("STATUS#S" + (i % 3) + "#IN_TRANSIT");
+        }
+        network.close();
+
+        BlockchainNetwork restarted = BlockchainNetwork.open(dir, 4);
+        restarted.connect();
+        restarted.storeTransaction("CREATE#S1");
+        assertEquals(4, restarted.queryLedger("S1").size());
+        restarted.storeTransaction("STATUS#S1#DELIVERED");
+        assertEquals("STATUS#S1#DELIVERED", restarted.queryLedger("S1").get(4));
+        restarted.close();
+
+        SegmentLog log = SegmentLog.open(dir.resolve("transactions"));
+        log.close();
+        assertThrows(IllegalStateException.class, () -> log.read(0));
+    }
+
+    @Test
+    void persistentLedger_storesTypedEntriesInBinary() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 2);
+        network.connect();
+        network.storeTransaction("STATUS#S1042#IN_TRANSIT");
+        network.storeTransaction("INSURANCE_CLAIM: S1042 | late");
+        network.storeTransaction("S1042 free-form note");
+        network.sealBlock();
+        long commitTime = network.readLedgerRecords(0, 1).get(0).getTimestamp();
+        network.close();
+
+        try (SegmentLog log = SegmentLog.open(dir.resolve("transactions"))) {
+            // 8 bytes of transaction plus the commit time as a varint
+            int timeBytes = (64 - Long.numberOfLeadingZeros(commitTime) + 6) / 7;
+            assertEquals(8 + timeBytes, log.read(0).remaining());
+        }
+        BlockchainNetwork restarted = BlockchainNetwork.open(dir, 2);
+        restarted.connect();
+        assertEquals(List.of("STATUS#S1042#IN_TRANSIT", "INSURANCE_CLAIM: S1042 | late", "S1042 free-form note"),
+                restarted.queryLedger("S1042"));
+        restarted.close();
+    }
+
+    @Test
+    void validateChain_findsTheEarliestTamperedBlock() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 4);
+        network.connect();
+        for (int i = 0; i < 4_000; i++) {
+            network.storeTransaction(String.format("note %04d ok", i)); // free-form: stored as text
+        }
+        network.close();
+
+        Path segment = dir.resolve("transactions").resolve("segment-00000000.log");
+        byte[] bytes = Files.readAllBytes(segment);
+        for (String target : new String[] { "note 3001 ok", "note 1234 ok" }) {
+            byte[] t = target.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i + t.length <= bytes.length; i++) {
+                if (Arrays.equals(bytes, i, i + t.length, t, 0, t.length)) {
+                    bytes[i + t.length - 2] = 'O';
+                    break;
+                }
+            }
+        }
+        Files.write(segment, bytes);
+
+        BlockchainNetwork reopened = BlockchainNetwork.open(dir, 4);
+        reopened.connect();
+        ChainValidationReport report = reopened.validateChain();
+        assertFalse(report.isValid());
+        assertEquals(1234 / 4, report.getFailedHeight());
+        assertEquals(ChainValidationReport.Reason.MERKLE_ROOT, report.getReason());
+        assertTrue(report.getBlocksChecked() < report.getBlockCount(), "stops early");
+        reopened.close();
+    }
+
+    @Test
+    void commitTimes_surviveRestart() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 3);
+        network.connect();
+        for (int i = 0; i < 10; i++) {
+            network.storeTransaction(i % 2 == 0 ? "CREATE#S" + i : "free-form " + i);
+        }
+        List<String> before = network.queryLedgerByTimeRange(0, Long.MAX_VALUE, null)
+                .map(LedgerRecord::toString).collect(Collectors.toList());
+        network.close();
+
+        BlockchainNetwork restarted = BlockchainNetwork.open(dir, 3);
+        restarted.connect();
+        assertEquals(before, restarted.queryLedgerByTimeRange(0, Long.MAX_VALUE, null)
+                .map(LedgerRecord::toString).collect(Collectors.toList()));
+        assertEquals(5, restarted.queryLedgerByTimeRange(0, Long.MAX_VALUE, Transaction.Type.CREATE).count());
+        restarted.close();
+    }
+
+    @Test
+    void coldOpen_readsOnlyBlocksWhoseBloomFilterMatches() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 16);
+        network.connect();
+        for (int i = 0; i < 2_000; i++) {
+            network.storeTransaction("STATUS#S" + (i % 400) + "#IN_TRANSIT");
+        }
+        network.storeTransaction("note about S7"); // no shipment ID: its block is always read
+        network.sealBlock();
+        List<String> expected = network.queryLedger("S7");
+        network.close();
+
+        BlockchainNetwork cold = BlockchainNetwork.openCold(dir, 16, 0.01);
+        cold.connect();
+        assertTrue(cold.isBloomLookup());
+        assertEquals(expected, cold.queryLedger("S7"));
+        assertTrue(cold.getBloomBlocksSkipped() > 100, "skipped " + cold.getBloomBlocksSkipped());
+        assertTrue(cold.getBloomBlocksRead() < 15, "read " + cold.getBloomBlocksRead());
+        List<MerkleProof> proofs = cold.getMerkleProofs("S7");
+        assertEquals(5, proofs.size());
+        assertTrue(proofs.get(4).verify(cold.getBlock(proofs.get(4).getBlockHash())));
+        assertNotNull(cold.getMerkleProof("note about S7"));
+        cold.close();
+    }
+
+    @Test
+    void coldOpen_rebuildsMissingBloomFilters() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 4);
+        network.connect();
+        for (int i = 0; i < 40; i++) {
+            network.storeTransaction("CREATE#S" + i);
+        }
+        network.close();
+        assertFalse(Files.exists(dir.resolve("blooms")), "only Bloom lookup mode keeps filters");
+
+        BlockchainNetwork cold = BlockchainNetwork.openCold(dir, 4, 0.05);
+        cold.connect();
+        assertEquals(List.of("CREATE#S17"), cold.queryLedger("S17"));
+        cold.storeTransaction("CREATE#S40");
+        cold.close();
+
+        // sealed while opened without filters
+        BlockchainNetwork warm = BlockchainNetwork.open(dir, 4);
+        warm.connect();
+        for (int i = 41; i < 48; i++) {
+            warm.storeTransaction("CREATE#S" + i);
+        }
+        warm.close();
+
+        cold = BlockchainNetwork.openCold(dir, 4, 0.05);
+        cold.connect();
+        assertEquals(List.of("CREATE#S45"), cold.queryLedger("S45"));
+        assertEquals(1, cold.getBloomBlocksRead());
+        cold.close();
+    }
+
+    @Test
+    void coldOpen_rebuildsFiltersBuiltAtAnotherRate() throws IOException {
+        BlockchainNetwork network = BlockchainNetwork.open(dir, 64);
+        network.connect();
+        for (int i = 0; i < 1_600; i++) {
+            network.storeTransaction("CREATE#S" + i);
+        }
+        network.close();
+
+        BlockchainNetwork loose = BlockchainNetwork.openCold(dir, 64, 0.5);
+        loose.connect();
+        for (int i = 0; i < 400; i++) {
+            loose.queryLedger("X" + i);
+        }
+        long looseReads = loose.getBloomBlocksRead();
+        loose.close();
+
+        BlockchainNetwork tight = BlockchainNetwork.openCold(dir, 64, 0.001);
+        tight.connect();
+        for (int i = 0; i < 400; i++) {
+            tight.queryLedger("X" + i);
+        }
+        assertTrue(tight.getBloomBlocksRead() < looseReads / 10,
+                tight.getBloomBlocksRead() + " vs " + looseReads + " false positives");
+        assertEquals(List.of("CREATE#S123"), tight.queryLedger("S123"));
+        tight.close();
+
+        try (SegmentLog blooms = SegmentLog.open(dir.resolve("blooms"))) {
+            assertEquals(25, blooms.size(), "stale filters are replaced, not added to");
+        }
+    }
+}
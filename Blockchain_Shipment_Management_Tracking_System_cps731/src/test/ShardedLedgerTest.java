@@ -0,0 +1,288 @@
+package test;
+
+import controller.RegistrySnapshot;
+import controller.ShipmentLifecycleController;
+import external.Block;
+import external.BlockchainNetwork;
+import external.ShardCheckpoint;
+import gateway.ShardRecord;
+import gateway.ShardRouter;
+import gateway.ShardedLedgerGateway;
+import model.Shipment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for routing the ledger over several shards.
+ */
+public class ShardedLedgerTest {
+
+    private static final int SHARDS = 4;
+
+    private List<BlockchainNetwork> shards;
+    private ShardedLedgerGateway gateway;
+
+    @BeforeEach
+    void setup() {
+        shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new BlockchainNetwork(4));
+        }
+        gateway = new ShardedLedgerGateway(shards);
+        gateway.connect();
+    }
+
+    @Test
+    void router_spreadsShipmentsAndMovesFewWhenAShardIsAdded() {
+        ShardRouter four = new ShardRouter(4);
+        ShardRouter five = new ShardRouter(5);
+        int[] counts = new int[4];
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            int shard = four.shardFor("S" + i);
+            counts[shard]++;
+            if (five.shardFor("S" + i) != shard) {
+                moved++;
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 1_500 && count < 3_500, "uneven: " + count);
+        }
+        assertTrue(moved > 1_000 && moved < 3_000, "moved " + moved); // about 1/5
+        assertEquals(four.shardFor("S42"), four.shardForEntry("STATUS#S42#IN_TRANSIT"));
+        assertEquals(four.shardFor("no shipment here"), four.shardForEntry("no shipment here"));
+    }
+
+    @Test
+    void shipmentHistory_livesOnOneShard() {
+        for (int i = 0; i < 40; i++) {
+            assertTrue(gateway.sendTransaction("CREATE#S" + i));
+            assertTrue(gateway.sendTransaction("STATUS#S" + i + "#IN_TRANSIT"));
+        }
+        long total = 0;
+        for (long size : gateway.getLedgerSizes()) {
+            total += size;
+        }
+        assertEquals(80, total);
+
+        String id = "S7";
+        BlockchainNetwork home = shards.get(gateway.shardOf(id));
+        assertEquals(List.of("CREATE#S7", "STATUS#S7#IN_TRANSIT"), gateway.queryLedger(id));
+        assertEquals(2, home.queryLedger(id).size());
+        for (BlockchainNetwork shard : shards) {
+            if (shard != home) {
+                assertTrue(shard.queryLedger(id).isEmpty());
+            }
+        }
+        gateway.sealPendingBlocks();
+        assertTrue(gateway.verifyInclusion(gateway.getInclusionProof("STATUS#S7#IN_TRANSIT")));
+    }
+
+    @Test
+    void searchAllShards_findsFreeFormEntriesThatQueryLedgerLeavesOnOtherShards() throws InterruptedException {
+        gateway.sendTransaction("CREATE#S7");
+        List<String> notes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(1);
+            String note = "note " + i + " about S7";
+            notes.add(note);
+            gateway.sendTransaction(note);
+        }
+        Thread.sleep(1);
+        gateway.sendTransaction("STATUS#S7#DELIVERED");
+
+        BlockchainNetwork home = gateway.getShard(gateway.shardOf("S7"));
+        long notesAway = notes.stream().filter(n -> home.queryLedger("S7").indexOf(n) < 0).count();
+        assertTrue(notesAway > 0, "some notes are stored on other shards");
+        assertEquals(home.queryLedger("S7"), gateway.queryLedger("S7"), "only the home shard is read");
+
+        List<String> expected = new ArrayList<>();
+        expected.add("CREATE#S7");
+        expected.addAll(notes);
+        expected.add("STATUS#S7#DELIVERED");
+        assertEquals(expected, gateway.searchAllShards("S7").stream()
+                .map(ShardRecord::getEntry).collect(Collectors.toList()));
+
+        gateway.sealPendingBlocks();
+        assertTrue(gateway.verifyInclusion(gateway.getInclusionProof(notes.get(3))));
+    }
+
+    @Test
+    void positions_arePerShardAndReadBack() {
+        for (int i = 0; i < 40; i++) {
+            gateway.sendTransaction("CREATE#S" + i);
+        }
+        long[] sizes = gateway.getLedgerSizes();
+        for (ShardRecord record : gateway.queryLedgerRecords("S9")) {
+            assertEquals(gateway.shardOf("S9"), record.getShard());
+            assertTrue(record.getSequence() < sizes[record.getShard()]);
+            assertEquals(record.getEntry(), gateway.readLedgerRecords(record.getShard(), record.getSequence(), 1)
+                    .get(0).getEntry());
+        }
+        assertEquals(1, gateway.queryLedgerRecords("S9").size());
+    }
+
+    @Test
+    void controllers_runOnShardsAndRestartFromASnapshot(@TempDir Path dir) throws IOException {
+        ShipmentLifecycleController before = TestControllers.lifecycle(gateway);
+        for (int i = 0; i < 20; i++) {
+            Shipment shipment = before.createShipment(null, "S" + i, "Oslo", "Lima", "Crates");
+            before.updateShipmentStatus(shipment, "IN_TRANSIT");
+        }
+        for (long size : gateway.getLedgerSizes()) {
+            assertTrue(size > 0, "every shard takes some shipments");
+        }
+        Path file = dir.resolve("registry.snap");
+        before.snapshot(file);
+        assertEquals(SHARDS, RegistrySnapshot.read(file).getShardSequences().length);
+        before.updateShipmentStatus(before.findShipmentById("S3"), "DELIVERED");
+
+        ShipmentLifecycleController replayed = TestControllers.lifecycle(gateway);
+        assertEquals(20, replayed.rebuildFromLedger());
+        assertEquals("DELIVERED", replayed.findShipmentById("S3").getStatus());
+        assertEquals("IN_TRANSIT", replayed.findShipmentById("S4").getStatus());
+
+        ShipmentLifecycleController restored = TestControllers.lifecycle(gateway);
+        assertEquals(20, restored.restoreFromSnapshot(file));
+        assertEquals("DELIVERED", restored.findShipmentById("S3").getStatus());
+        assertEquals(before.findShipmentById("S3").getHistory().size(),
+                restored.findShipmentById("S3").getHistory().size(), "the tail is applied once");
+        assertEquals("Oslo", restored.findShipmentById("S4").getOrigin());
+    }
+
+    @Test
+    void checkpoints_linkShardHeadsAndDetectRewrites() {
+        for (int i = 0; i < 10; i++) {
+            gateway.sendTransaction("CREATE#S" + i);
+        }
+        ShardCheckpoint first = gateway.checkpoint();
+        for (int i = 10; i < 30; i++) {
+            gateway.sendTransaction("CREATE#S" + i);
+        }
+        ShardCheckpoint second = gateway.checkpoint();
+
+        assertEquals(ShardCheckpoint.GENESIS_HASH, first.getPreviousHash());
+        assertEquals(first.getHash(), second.getPreviousHash());
+        long covered = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            assertEquals(0, shards.get(i).getPendingCount(), "checkpoint seals pending entries");
+            covered += second.getShardSize(i);
+        }
+        assertEquals(30, covered);
+        assertTrue(gateway.validateCheckpoints());
+
+        // an auditor's copy of the chain checks out against these shards only
+        List<ShardCheckpoint> chain = gateway.getCheckpoints();
+        ShardedLedgerGateway same = new ShardedLedgerGateway(shards);
+        same.connect();
+        assertTrue(same.validateCheckpoints(chain));
+
+        int home = gateway.shardOf("S1");
+        BlockchainNetwork rewritten = new BlockchainNetwork(4);
+        rewritten.connect();
+        rewritten.storeTransaction("CREATE#S1");
+        rewritten.sealBlock();
+        List<BlockchainNetwork> forged = new ArrayList<>(shards);
+        forged.set(home, rewritten);
+        ShardedLedgerGateway forgedGateway = new ShardedLedgerGateway(forged);
+        forgedGateway.connect();
+        assertFalse(forgedGateway.validateCheckpoints(chain));
+    }
+
+    @Test
+    void checkpoints_arePersistedAndContinuedAfterReopen(@TempDir Path dir) throws IOException {
+        ShardedLedgerGateway durable = ShardedLedgerGateway.open(dir, SHARDS, 4);
+        durable.connect();
+        for (int i = 0; i < 10; i++) {
+            durable.sendTransaction("CREATE#S" + i);
+        }
+        durable.checkpoint();
+        durable.sendTransaction("STATUS#S1#IN_TRANSIT");
+        ShardCheckpoint last = durable.checkpoint();
+        List<ShardCheckpoint> chain = durable.getCheckpoints();
+        durable.close();
+
+        ShardedLedgerGateway reopened = ShardedLedgerGateway.open(dir, SHARDS, 4);
+        reopened.connect();
+        List<ShardCheckpoint> loaded = reopened.getCheckpoints();
+        assertEquals(chain.size(), loaded.size());
+        for (int i = 0; i < chain.size(); i++) {
+            assertEquals(chain.get(i).getHash(), loaded.get(i).getHash());
+        }
+        assertTrue(reopened.validateCheckpoints());
+        assertEquals(last.getHash(), reopened.checkpoint().getPreviousHash());
+        assertEquals(List.of("CREATE#S1", "STATUS#S1#IN_TRANSIT"), reopened.queryLedger("S1"));
+        reopened.close();
+    }
+
+    @Test
+    void periodicCheckpoints_reportFailuresToTheCaller() throws InterruptedException {
+        BlockchainNetwork broken = new BlockchainNetwork(4) {
+            @Override
+            public synchronized Block sealBlock() {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        List<BlockchainNetwork> withBroken = new ArrayList<>(shards);
+        withBroken.set(1, broken);
+        ShardedLedgerGateway failing = new ShardedLedgerGateway(withBroken);
+        failing.connect();
+        CountDownLatch failed = new CountDownLatch(2);
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        failing.startPeriodicCheckpoints(1, e -> {
+            failures.add(e);
+            failed.countDown();
+        });
+        assertTrue(failed.await(5, TimeUnit.SECONDS), "the schedule keeps running");
+        failing.stopPeriodicCheckpoints();
+        assertEquals("disk full", failures.get(0).getMessage());
+    }
+
+    @Test
+    void blocks_areMergedByCommitTime() throws InterruptedException {
+        for (int i = 0; i < 40; i++) {
+            gateway.sendTransaction("CREATE#S" + i);
+            if (i % 5 == 4) {
+                gateway.sealPendingBlocks();
+                Thread.sleep(1);
+            }
+        }
+        List<Block> blocks = gateway.getBlocks();
+        int total = 0;
+        for (BlockchainNetwork shard : shards) {
+            total += shard.getBlocks().size();
+        }
+        assertEquals(total, blocks.size());
+        for (int i = 1; i < blocks.size(); i++) {
+            assertTrue(blocks.get(i - 1).getTimestamp() <= blocks.get(i).getTimestamp(), "block " + i);
+        }
+    }
+
+    @Test
+    void timeRange_mergesShardsByCommitTime() throws InterruptedException {
+        for (int i = 0; i < 12; i++) {
+            gateway.sendTransaction("STATUS#S" + i + "#IN_TRANSIT");
+            Thread.sleep(2);
+        }
+        List<ShardRecord> records = gateway.queryLedgerByTimeRange(0, Long.MAX_VALUE, null)
+                .collect(Collectors.toList());
+        assertEquals(12, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+        }
+        assertEquals("STATUS#S0#IN_TRANSIT", records.get(0).getEntry());
+        assertEquals("STATUS#S11#IN_TRANSIT", records.get(11).getEntry());
+    }
+}
@@ -8,25 +8,32 @@ import external.PaymentService;
 import gateway.BlockchainNetworkGateway;
 import gateway.OffChainStorageAdapter;
 import gateway.PaymentServiceAdapter;
+import model.Document;
+import model.LedgerProof;
 import model.Report;
 import model.Shipment;
 import model.Shipper;
 import model.SmartContract;
+import model.VerificationReport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class ShipmentComplianceControllerTest {
 
     private ShipmentComplianceController controller;
     private ShipmentLifecycleController lifecycle;
+    private BlockchainNetworkGateway gateway;
 
     @BeforeEach
     void setup() {
 
         BlockchainNetwork network = new BlockchainNetwork();
-        BlockchainNetworkGateway gateway = new BlockchainNetworkGateway(network);
+        gateway = new BlockchainNetworkGateway(network);
         OffChainStorage offChainStorage = new OffChainStorage();
         OffChainStorageAdapter offChainAdapter = new OffChainStorageAdapter(offChainStorage);
         PaymentService paymentService = new PaymentService(); 
@@ -50,6 +57,15 @@ public class ShipmentComplianceControllerTest {
         return s;
     }
 
+    @Test
+    void testCheckInsuranceClaimAsync() {
+        Shipment s = lifecycle.createShipment(makeShipper(), "S120", "X", "Y", "Glass");
+        assertEquals("No insurance claim needed.", controller.checkInsuranceClaimAsync(s).join());
+
+        s.setStatus("DAMAGED");
+        assertTrue(controller.checkInsuranceClaimAsync(s).join().contains("AUTO-TRIGGERED"));
+    }
+
     @Test
     void testQueryShipmentStatus() {
         Shipper shipper = makeShipper();
@@ -88,6 +104,24 @@ public class ShipmentComplianceControllerTest {
         String text = r.toString();
         assertTrue(text.contains("Audit trail"));
         assertTrue(text.contains("IN_TRANSIT"));
+
+        // the report does not seal: CREATE# + STATUS# are still pending
+        assertEquals(2, r.getProofs().size());
+        assertTrue(r.getProofs().stream().allMatch(LedgerProof::isPending));
+        assertTrue(text.contains("not yet in a block (unproven)"));
+        assertEquals(0, gateway.getBlocks().size());
+
+        gateway.sealPendingBlocks();
+        Report sealed = controller.generateAuditTrail(s);
+        assertEquals(2, sealed.getProofs().size());
+        for (LedgerProof proof : sealed.getProofs()) {
+            // the proof and header carried by the report are enough to re-check it
+            assertFalse(proof.isPending());
+            assertTrue(proof.getProof().verify(proof.getHeader()));
+            assertTrue(sealed.toString().contains("merkle root: " + proof.getProof().getMerkleRoot()));
+        }
+        assertTrue(sealed.toString().contains("(verified)"));
+        assertTrue(sealed.toString().contains("leaf index: 1"));
     }
 
     @Test
@@ -107,4 +141,40 @@ public class ShipmentComplianceControllerTest {
         assertTrue(result.contains("Dispute filed"));
         assertTrue(result.contains("S222"));
     }
+
+    @Test
+    void testVerifyDocumentsReportsFailuresInOrder() {
+        Shipper shipper = makeShipper();
+        Shipment a = lifecycle.createShipment(shipper, "S500", "X", "Y", "Test");
+        Shipment b = lifecycle.createShipment(shipper, "S501", "X", "Y", "Test");
+        for (int i = 0; i < 700; i++) {
+            lifecycle.uploadDocument(i % 2 == 0 ? a : b, "doc-" + i + ".txt", "content " + i);
+        }
+        Document tampered = b.getDocuments().get(100);
+        tampered.setContent("forged");
+        Document missing = new Document("never-uploaded.pdf", "deadbeef");
+        a.addDocument(missing);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        controller.setVerificationPool(pool);
+        AtomicLong lastProgress = new AtomicLong();
+        VerificationReport report = controller.verifyDocuments(
+                lifecycle.getAllShipments().values(),
+                (verified, total) -> lastProgress.accumulateAndGet(verified, Math::max));
+        pool.shutdown();
+
+        assertEquals(701, report.getDocumentCount());
+        assertEquals(701, lastProgress.get());
+        assertEquals(2, report.getFailures().size());
+        assertEquals(699, report.getPassedCount());
+        for (VerificationReport.Failure f : report.getFailures()) {
+            if (f.getShipmentID().equals("S500")) {
+                assertEquals("never-uploaded.pdf", f.getDocumentName());
+                assertEquals(VerificationReport.Reason.NOT_STORED, f.getReason());
+            } else {
+                assertEquals(tampered.getName(), f.getDocumentName());
+                assertEquals(VerificationReport.Reason.HASH_MISMATCH, f.getReason());
+            }
+        }
+    }
 }
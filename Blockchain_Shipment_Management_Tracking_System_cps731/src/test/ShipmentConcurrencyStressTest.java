@@ -0,0 +1,136 @@
+package test;
+
+import controller.ShipmentLifecycleController;
+import external.BlockchainNetwork;
+import external.OffChainStorage;
+import external.PaymentService;
+import gateway.BlockchainNetworkGateway;
+import gateway.OffChainStorageAdapter;
+import gateway.PaymentServiceAdapter;
+import model.Event;
+import model.Shipment;
+import model.SmartContract;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded stress test for ShipmentLifecycleController:
+ * many writers update a shared set of shipments at once, and afterwards
+ * no history event or ledger entry may be missing, and each shipment's
+ * history must list its status updates in the same order as the ledger.
+ */
+public class ShipmentConcurrencyStressTest {
+
+    private static final int SHIPMENTS = 32;
+    private static final int UPDATES_PER_THREAD = 500;
+
+    private BlockchainNetworkGateway gateway;
+    private ShipmentLifecycleController controller;
+
+    @BeforeEach
+    void setup() {
+        gateway = new BlockchainNetworkGateway(new BlockchainNetwork());
+        controller = new ShipmentLifecycleController(gateway,
+                new OffChainStorageAdapter(new OffChainStorage()),
+                new PaymentServiceAdapter(new PaymentService()),
+                new SmartContract());
+        for (int i = 0; i < SHIPMENTS; i++) {
+            controller.createShipment(null, "S" + i, "A", "B", "stress");
+        }
+    }
+
+    @Test
+    void concurrentStatusUpdates_loseNoEventsAndKeepOrder() throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        AtomicIntegerArray updates = runWriters(threads, new ConcurrentHashMap<>());
+
+        for (int i = 0; i < SHIPMENTS; i++) {
+            String id = "S" + i;
+            Shipment s = controller.findShipmentById(id);
+
+            // constructor event + "created by" event + one per status update
+            assertEquals(2 + updates.get(i), s.getHistory().size(), "history of " + id);
+
+            List<String> ledgerStatuses = new ArrayList<>();
+            for (String entry : gateway.queryLedger(id)) {
+                if (entry.startsWith("STATUS#")) {
+                    ledgerStatuses.add(entry.substring(entry.lastIndexOf('#') + 1));
+                }
+            }
+            List<String> historyStatuses = new ArrayList<>();
+            for (Event e : s.getHistory()) {
+                if (e.getMessage().startsWith("Status updated to: ")) {
+                    historyStatuses.add(e.getMessage().substring("Status updated to: ".length()));
+                }
+            }
+            assertEquals(updates.get(i), ledgerStatuses.size(), "ledger entries of " + id);
+            assertEquals(ledgerStatuses, historyStatuses, "update order of " + id);
+        }
+    }
+
+    @Test
+    void manyWriters_storeEachUpdateExactlyOnceOnItsShipment() throws InterruptedException {
+        Map<String, String> targets = new ConcurrentHashMap<>();
+        runWriters(16, targets);
+
+        Map<String, String> seen = new HashMap<>();
+        for (int i = 0; i < SHIPMENTS; i++) {
+            String id = "S" + i;
+            for (String entry : gateway.queryLedger(id)) {
+                if (!entry.startsWith("STATUS#")) {
+                    continue;
+                }
+                String status = entry.substring(entry.lastIndexOf('#') + 1);
+                assertNull(seen.put(status, id), "duplicate ledger entry " + entry);
+                assertEquals(targets.get(status), id, "shipment of " + status);
+            }
+        }
+        assertEquals(targets.keySet(), seen.keySet(), "lost updates");
+    }
+
+    /**
+     * Each writer updates random shipments with statuses unique to the
+     * update; targets maps each status to its shipment. Returns the number
+     * of updates per shipment.
+     */
+    private AtomicIntegerArray runWriters(int threads, Map<String, String> targets) throws InterruptedException {
+        AtomicIntegerArray updates = new AtomicIntegerArray(SHIPMENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    Random random = new Random(writer);
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                        int target = random.nextInt(SHIPMENTS);
+                        Shipment s = controller.findShipmentById("S" + target);
+                        String status = "T" + writer + "_" + i;
+                        targets.put(status, "S" + target);
+                        controller.updateShipmentStatus(s, status);
+                        updates.incrementAndGet(target);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        return updates;
+    }
+}
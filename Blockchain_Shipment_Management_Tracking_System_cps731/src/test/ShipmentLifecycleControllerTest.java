@@ -15,6 +15,11 @@ import controller.ShipmentLifecycleController;
 import external.PaymentService;
 import gateway.PaymentServiceAdapter;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -116,5 +121,76 @@ public class ShipmentLifecycleControllerTest {
         assertEquals(1, s.getDocuments().size());
         assertEquals("invoice.pdf", d.getName());
     }
-}
 
+    /**
+     * Test: A streamed upload is hashed like the same content given as a String.
+     */
+    @Test
+    void testUploadDocumentFromStream() {
+        Shipment s = controller.createShipment(shipper, "S301", "A", "B", "Test");
+
+        Document d = controller.uploadDocument(s, "scan.txt",
+                new ByteArrayInputStream("test-data".getBytes(StandardCharsets.UTF_8)));
+        Document same = new Document();
+        same.setContent("test-data");
+        same.generateHash();
+
+        assertNotNull(d);
+        assertEquals(same.getHashValue(), d.getHashValue());
+        assertEquals(1, s.getDocuments().size());
+    }
+
+    /**
+     * Test: Confirming delivery writes the ledger entry and releases the
+     * payment (both now run asynchronously) before returning.
+     */
+    @Test
+    void testConfirmDeliveryReleasesPayment() {
+        Shipment s = controller.createShipment(shipper, "S400", "A", "B", "Test");
+
+        String msg = controller.confirmDelivery(s);
+
+        assertEquals("DELIVERED", s.getStatus());
+        assertTrue(msg.contains("Payment released"));
+        assertEquals(1, s.getDocuments().size()); // the receipt
+    }
+
+    /**
+     * Test: The upload is awaited after the shipment's lock is released
+     * (the upload below needs that lock to finish), and its failure reaches
+     * the caller unwrapped.
+     */
+    @Test
+    void testUploadIsAwaitedOutsideTheLockAndFailsUnwrapped() throws Exception {
+        Shipment s = controller.createShipment(shipper, "S401", "A", "B", "Test");
+        OffChainStorageAdapter offline = new OffChainStorageAdapter(new OffChainStorage()) {
+            @Override
+            public CompletableFuture<String> uploadFileAsync(Document document) {
+                CompletableFuture<String> upload = new CompletableFuture<>();
+                new Thread(() -> {
+                    s.withLock(() -> null);
+                    upload.completeExceptionally(new IllegalStateException("storage offline"));
+                }).start();
+                return upload;
+            }
+        };
+        ShipmentLifecycleController uploads = new ShipmentLifecycleController(
+                new BlockchainNetworkGateway(new BlockchainNetwork()), offline,
+                new PaymentServiceAdapter(new PaymentService()), new SmartContract());
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                uploads.uploadDocument(s, "invoice.pdf", "INVOICE");
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        caller.start();
+        caller.join(5_000);
+
+        assertFalse(caller.isAlive());
+        assertTrue(failure.get() instanceof IllegalStateException);
+        assertEquals("storage offline", failure.get().getMessage());
+    }
+}
@@ -0,0 +1,141 @@
+package test;
+
+import controller.ShipmentLifecycleController;
+import controller.ShipmentProjector;
+import external.BlockchainNetwork;
+import gateway.BlockchainNetworkGateway;
+import model.Event;
+import model.Shipment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for rebuilding shipments by replaying the ledger.
+ */
+public class ShipmentProjectorTest {
+
+    private BlockchainNetworkGateway gateway;
+
+    @BeforeEach
+    void setup() {
+        gateway = new BlockchainNetworkGateway(new BlockchainNetwork(4));
+        gateway.connect();
+    }
+
+    @Test
+    void rebuildFromLedger_restoresStatusAndHistory() {
+        ShipmentLifecycleController before = TestControllers.lifecycle(gateway);
+        Shipment a = before.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        before.createShipment(null, "S2", "Lima", "Perth", "Copper");
+        before.updateShipmentStatus(a, "IN_TRANSIT");
+        before.confirmDelivery(a);
+        gateway.sendTransaction("S3:CREATED"); // free-form entry, not a shipment event
+
+        // "restart": a fresh controller on the same ledger
+        ShipmentLifecycleController after = TestControllers.lifecycle(gateway);
+        assertEquals(2, after.rebuildFromLedger());
+
+        Shipment s1 = after.findShipmentById("S1");
+        assertEquals("DELIVERED", s1.getStatus());
+        assertNotNull(s1.getActualDeliveryDate());
+        assertEquals(3, s1.getHistory().size());
+        assertEquals("Status updated to: IN_TRANSIT", s1.getHistory().get(1).getMessage());
+        assertEquals("CREATED", after.findShipmentById("S2").getStatus());
+        assertEquals(1, after.getProjector().getSkippedCount());
+
+        // already-present shipments are left alone
+        assertEquals(0, after.rebuildFromLedger());
+        assertSame(s1, after.findShipmentById("S1"));
+    }
+
+    @Test
+    void rebuild_stampsEventsWithCommitTimes() throws InterruptedException {
+        gateway.sendTransaction("CREATE#S1");
+        gateway.sendTransaction("STATUS#S1#IN_TRANSIT"); // block size 4: both still pending
+        List<Event> first = new ShipmentProjector(gateway).rebuild().get("S1").getHistory();
+
+        Thread.sleep(5);
+        gateway.sealPendingBlocks();
+        List<Event> second = new ShipmentProjector(gateway).rebuild().get("S1").getHistory();
+
+        assertEquals(2, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getTimestamp(), second.get(i).getTimestamp(), "event " + i);
+        }
+    }
+
+    @Test
+    void restore_continuesFromCheckpointAndLeavesItUnchanged() {
+        for (int i = 0; i < 50; i++) {
+            gateway.sendTransaction("CREATE#S" + i);
+            gateway.sendTransaction("STATUS#S" + i + "#PICKED_UP");
+        }
+        ShipmentProjector first = new ShipmentProjector(gateway, 20, 40);
+        first.catchUp();
+        ShipmentProjector.Checkpoint checkpoint = first.getCheckpoint();
+        assertEquals(80, checkpoint.getSequence());
+        assertEquals("PICKED_UP", checkpoint.getShipments().get("S0").getStatus());
+
+        for (int i = 0; i < 50; i++) {
+            gateway.sendTransaction("STATUS#S" + i + "#IN_TRANSIT");
+        }
+        ShipmentProjector resumed = new ShipmentProjector(gateway, 16, 1_000);
+        resumed.restore(checkpoint);
+        assertEquals(70, resumed.catchUp(), "only the tail after the checkpoint is replayed");
+
+        Map<String, Shipment> fromCheckpoint = resumed.rebuild();
+        Map<String, Shipment> fromGenesis = new ShipmentProjector(gateway).rebuild();
+        assertEquals(50, fromCheckpoint.size());
+        for (Map.Entry<String, Shipment> e : fromGenesis.entrySet()) {
+            Shipment replayed = fromCheckpoint.get(e.getKey());
+            assertEquals(e.getValue().getStatus(), replayed.getStatus());
+            assertEquals(e.getValue().getHistory().size(), replayed.getHistory().size());
+        }
+        assertEquals("IN_TRANSIT", fromCheckpoint.get("S0").getStatus());
+        assertEquals("PICKED_UP", checkpoint.getShipments().get("S0").getStatus(),
+                "checkpointed shipments are copied before they change");
+    }
+
+    @Test
+    void persistedCheckpoint_survivesRestartSoOnlyTheTailIsReplayed(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("projection.snap");
+        List<Exception> failures = new ArrayList<>();
+        ShipmentLifecycleController before = TestControllers.lifecycle(gateway);
+        before.persistCheckpoints(file, failures::add);
+        Shipment a = before.createShipment(null, "S1", "Toronto", "Oslo", "Pallets");
+        before.rebuildFromLedger();
+        assertTrue(Files.exists(file), "the rebuilt projection is checkpointed to disk");
+
+        before.updateShipmentStatus(a, "IN_TRANSIT");
+        before.createShipment(null, "S2", "Lima", "Perth", "Copper");
+
+        // "restart": a fresh controller reading the same checkpoint file
+        ShipmentLifecycleController after = TestControllers.lifecycle(gateway);
+        after.persistCheckpoints(file, failures::add);
+        assertEquals(2, after.rebuildFromLedger());
+        assertEquals(2, after.getProjector().getAppliedCount(), "only the two entries after the checkpoint");
+        assertEquals("IN_TRANSIT", after.findShipmentById("S1").getStatus());
+        assertEquals(2, after.findShipmentById("S1").getHistory().size());
+        assertEquals("CREATED", after.findShipmentById("S2").getStatus());
+        assertTrue(failures.isEmpty());
+
+        // an unreadable checkpoint is reported and the ledger replayed from genesis
+        Files.write(file, new byte[] { 1, 2, 3 });
+        ShipmentLifecycleController damaged = TestControllers.lifecycle(gateway);
+        damaged.persistCheckpoints(file, failures::add);
+        assertEquals(2, damaged.rebuildFromLedger());
+        assertEquals(3, damaged.getProjector().getAppliedCount());
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof IOException);
+    }
+}
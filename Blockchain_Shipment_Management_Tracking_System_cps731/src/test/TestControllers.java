@@ -0,0 +1,30 @@
+package test;
+
+import controller.ShipmentLifecycleController;
+import external.OffChainStorage;
+import external.PaymentService;
+import gateway.LedgerGateway;
+import gateway.OffChainStorageAdapter;
+import gateway.PaymentServiceAdapter;
+import model.SmartContract;
+
+/**
+ * Controllers wired to in-memory services, for tests that start several
+ * controllers (e.g. a "restart") on one ledger.
+ */
+final class TestControllers {
+
+    private TestControllers() {
+    }
+
+    /** A lifecycle controller on gateway with its own off-chain storage. */
+    static ShipmentLifecycleController lifecycle(LedgerGateway gateway) {
+        return lifecycle(gateway, new OffChainStorageAdapter(new OffChainStorage()));
+    }
+
+    /** A lifecycle controller on gateway and storage. */
+    static ShipmentLifecycleController lifecycle(LedgerGateway gateway, OffChainStorageAdapter storage) {
+        return new ShipmentLifecycleController(gateway, storage,
+                new PaymentServiceAdapter(new PaymentService()), new SmartContract());
+    }
+}
@@ -0,0 +1,62 @@
+package test;
+
+import external.Transaction;
+import external.TransactionCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for typed transactions and their binary encoding.
+ */
+public class TransactionTest {
+
+    @Test
+    void toString_matchesLegacyLedgerStrings() {
+        assertEquals("CREATE#S1", Transaction.create("S1").toString());
+        assertEquals("STATUS#S1#IN_TRANSIT", Transaction.status("S1", "IN_TRANSIT").toString());
+        assertEquals("CLEARANCE#S1#APPROVE", Transaction.clearance("S1", "APPROVE").toString());
+        assertEquals("INSURANCE_CLAIM: S1 | lost at sea", Transaction.insuranceClaim("S1", "lost at sea").toString());
+    }
+
+    @Test
+    void parse_roundTripsCanonicalEntriesOnly() {
+        for (String entry : new String[] { "CREATE#S1", "DELIVERED#X-9", "STATUS#S1#ON HOLD",
+                "INSURANCE_CLAIM: S1 | a | b", "INSURANCE_CLAIM: S1" }) {
+            assertEquals(entry, Transaction.parse(entry).toString());
+        }
+        assertNull(Transaction.parse("S100:CREATED"));
+        assertNull(Transaction.parse("CREATE#S1#extra"));
+        assertNull(Transaction.parse("STATUS#S1"));
+        assertNull(Transaction.parse("CREATE#"));
+        assertNull(Transaction.parse("INSURANCE_CLAIM#S1#x"));
+    }
+
+    @Test
+    void encode_roundTripsAndIsCompact() {
+        Transaction[] samples = {
+            Transaction.status("S1042", "IN_TRANSIT"),
+            Transaction.create("S007"),
+            Transaction.create("order-12-b"),
+            Transaction.status("SHIP99", "HELD AT PORT"),
+            Transaction.insuranceClaim("S5", "Payment failed: ü"),
+            new Transaction(Transaction.Type.DISPUTE, "S3", null)
+        };
+        for (Transaction tx : samples) {
+            byte[] encoded = TransactionCodec.encode(tx);
+            assertTrue(TransactionCodec.isEncoded(ByteBuffer.wrap(encoded)));
+            assertEquals(tx, TransactionCodec.decode(ByteBuffer.wrap(encoded)));
+            assertEquals(tx.toString(), TransactionCodec.decodeToString(ByteBuffer.wrap(encoded).asReadOnlyBuffer()));
+        }
+
+        Transaction tx = Transaction.status("S1042", "IN_TRANSIT");
+        assertEquals(8, TransactionCodec.encode(tx).length);
+        byte[] timed = TransactionCodec.encode(tx, 1_700_000_000_000L);
+        assertEquals(1_700_000_000_000L, TransactionCodec.timestampOf(ByteBuffer.wrap(timed)));
+        assertEquals(tx, TransactionCodec.decode(ByteBuffer.wrap(timed)));
+        assertThrows(IllegalArgumentException.class,
+                () -> TransactionCodec.decode(ByteBuffer.wrap("CREATE#S1".getBytes())));
+    }
+}
@@ -6,8 +6,10 @@ import external.BlockchainNetwork;
 import external.OffChainStorage;
 import external.PaymentService;
 import gateway.BlockchainNetworkGateway;
+import gateway.LedgerGateway;
 import gateway.OffChainStorageAdapter;
 import gateway.PaymentServiceAdapter;
+import gateway.ShardedLedgerGateway;
 import model.*;
 
 import javax.swing.*;
@@ -24,6 +26,9 @@ import java.util.List;
  */
 public class LoginFrame extends JFrame {
 
+    // ledger shards, e.g. -Dledger.shards=4; 1 runs on a single ledger
+    private static final int LEDGER_SHARDS = Integer.getInteger("ledger.shards", 1);
+
     private final JTextField usernameField;
     private final JPasswordField passwordField;
     private final JLabel statusLabel;
@@ -32,7 +37,7 @@ public class LoginFrame extends JFrame {
 
     // Shared “in-memory backend” so MainUI doesn’t recreate everything
     private final BlockchainNetwork blockchainNetwork;
-    private final BlockchainNetworkGateway blockchainGateway;
+    private final LedgerGateway blockchainGateway;
     private final OffChainStorage offChainStorage;
     private final OffChainStorageAdapter offChainAdapter;
     private final PaymentService paymentService; 
@@ -44,7 +49,16 @@ public class LoginFrame extends JFrame {
     public LoginFrame() {
         // ---------- Backend wiring (single instance for whole app) ----------
         blockchainNetwork = new BlockchainNetwork();
-        blockchainGateway = new BlockchainNetworkGateway(blockchainNetwork);
+        if (LEDGER_SHARDS > 1) {
+            List<BlockchainNetwork> shards = new ArrayList<>();
+            shards.add(blockchainNetwork);
+            for (int i = 1; i < LEDGER_SHARDS; i++) {
+                shards.add(new BlockchainNetwork());
+            }
+            blockchainGateway = new ShardedLedgerGateway(shards);
+        } else {
+            blockchainGateway = new BlockchainNetworkGateway(blockchainNetwork);
+        }
 
         offChainStorage = new OffChainStorage();
         offChainAdapter = new OffChainStorageAdapter(offChainStorage);
@@ -55,11 +69,13 @@ public class LoginFrame extends JFrame {
         smartContract = new SmartContract();
 
         if (lifecycleController == null) { 
-                lifecycleController = new ShipmentLifecycleController(
-                blockchainGateway,
-                offChainAdapter,
-                paymentAdapter,
-                smartContract);
+            lifecycleController = new ShipmentLifecycleController(
+                    blockchainGateway,
+                    offChainAdapter,
+                    paymentAdapter,
+                    smartContract);
+            // restore shipments already recorded on the ledger
+            lifecycleController.rebuildFromLedger();
         }
 
         if (complianceController == null) { 
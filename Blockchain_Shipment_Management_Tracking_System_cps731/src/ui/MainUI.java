@@ -5,7 +5,8 @@ import controller.ShipmentLifecycleController;
 import external.BlockchainNetwork;
 import external.OffChainStorage;
 import external.PaymentService;
-import gateway.BlockchainNetworkGateway;
+import gateway.AsyncExecutors;
+import gateway.LedgerGateway;
 import gateway.OffChainStorageAdapter;
 import gateway.PaymentServiceAdapter;
 import model.*;
@@ -19,6 +20,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * MainUI
@@ -33,7 +36,7 @@ public class MainUI extends JFrame {
 
     // Shared backend objects (passed from LoginFrame)
     private final BlockchainNetwork blockchainNetwork;
-    private final BlockchainNetworkGateway blockchainGateway;
+    private final LedgerGateway blockchainGateway;
     private final OffChainStorage offChainStorage;
     private final OffChainStorageAdapter offChainAdapter;
     private final PaymentService paymentService; 
@@ -87,7 +90,7 @@ public class MainUI extends JFrame {
     public MainUI(
             User user,
             BlockchainNetwork blockchainNetwork,
-            BlockchainNetworkGateway blockchainGateway,
+            LedgerGateway blockchainGateway,
             OffChainStorage offChainStorage,
             OffChainStorageAdapter offChainAdapter,
             PaymentService paymentService,
@@ -354,6 +357,30 @@ public class MainUI extends JFrame {
         activityLogArea.setCaretPosition(activityLogArea.getDocument().getLength());
     }
 
+    /** Run the insurance-claim check off the EDT and log its outcome. */
+    private void checkInsuranceClaimAsync(Shipment shipment) {
+        complianceController.checkInsuranceClaimAsync(shipment)
+                .whenComplete((claimMsg, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        showAsyncError("Insurance claim check for " + shipment.getShipmentID(), error);
+                    } else {
+                        log(claimMsg);
+                    }
+                }));
+    }
+
+    /** Log and show a background task's failure; call on the EDT. */
+    private void showAsyncError(String action, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        log(action + " failed: " + cause.getMessage());
+        JOptionPane.showMessageDialog(this,
+                action + " failed:\n" + cause.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
     // ---------- Helper for label + field rows (left-aligned) ----------
 
     private JTextField createLabeledField(JPanel container, String label,
@@ -566,8 +593,7 @@ public class MainUI extends JFrame {
 
         String result = complianceController.queryShipmentStatus(shipment);
         log("Track shipment " + shipmentId + " → " + result);
-        String claimMsg = complianceController.checkInsuranceClaim(shipment);
-        log(claimMsg);
+        checkInsuranceClaimAsync(shipment);
 
         JOptionPane.showMessageDialog(this,
                 result,
@@ -745,8 +771,7 @@ public class MainUI extends JFrame {
 
         String result = lifecycleController.updateShipmentStatus(shipment, newStatus);
         log(result);
-        String claimMsg = complianceController.checkInsuranceClaim(shipment);
-        log(claimMsg);
+        checkInsuranceClaimAsync(shipment);
         JOptionPane.showMessageDialog(this, result, "Status updated",
                 JOptionPane.INFORMATION_MESSAGE);
     }
@@ -936,20 +961,26 @@ public class MainUI extends JFrame {
             return;
         }
 
-        // Call controller
-        String result = lifecycleController.confirmDelivery(shipment);
-        log(result);
-        if (result.contains("Payment released")) {
-            JOptionPane.showMessageDialog(
-                    this,
-                    "Payment has been processed and receipt stored.",
-                    "Payment Released",
-                    JOptionPane.INFORMATION_MESSAGE
-            );
-        }
-        String claimMsg = complianceController.checkInsuranceClaim(shipment);
-        log(claimMsg);
-        JOptionPane.showMessageDialog(this, result);
+        // Call controller off the EDT: it waits on the ledger write and payment
+        CompletableFuture.supplyAsync(() -> lifecycleController.confirmDelivery(shipment),
+                        AsyncExecutors.defaultExecutor())
+                .whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        showAsyncError("Confirm delivery for " + shipmentId, error);
+                        return;
+                    }
+                    log(result);
+                    if (result.contains("Payment released")) {
+                        JOptionPane.showMessageDialog(
+                                this,
+                                "Payment has been processed and receipt stored.",
+                                "Payment Released",
+                                JOptionPane.INFORMATION_MESSAGE
+                        );
+                    }
+                    checkInsuranceClaimAsync(shipment);
+                    JOptionPane.showMessageDialog(this, result);
+                }));
         cdShipmentIdField.setText("");
     }
 
@@ -1046,8 +1077,7 @@ public class MainUI extends JFrame {
 
         String result = complianceController.logDispute(shipment, description);
         log(result);
-        String claimMsg = complianceController.checkInsuranceClaim(shipment);
-        log(claimMsg);
+        checkInsuranceClaimAsync(shipment);
 
         JOptionPane.showMessageDialog(this, result);
 